@@ -0,0 +1,81 @@
+package benchmarks;
+
+import com.alerts.AlertTriggerCondition;
+import com.alerts.AlertTriggeredPerson;
+import com.alerts.BloodPressureAlert;
+import com.alerts.BloodSaturationAlert;
+import com.alerts.ECGDataAlert;
+import com.alerts.HypotensiveHypoxemiaAlert;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@code AlertTriggerCondition.evaluate} implementation over one patient's
+ * history, as called by {@code AlertGenerator.evaluateData}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertConditionBenchmark {
+
+    @Param({"Systolic", "Diastolic", "Saturation", "HypotensiveHypoxemia", "ECG", "AlertButton"})
+    public String condition;
+
+    @Param({"10000", "100000"})
+    public int historySize;
+
+    private AlertTriggerCondition trigger;
+    private List<PatientRecord> records;
+
+    @Setup
+    public void setUp() {
+        switch (condition) {
+            case "Systolic": trigger = new BloodPressureAlert(true); break;
+            case "Diastolic": trigger = new BloodPressureAlert(false); break;
+            case "Saturation": trigger = new BloodSaturationAlert(); break;
+            case "HypotensiveHypoxemia": trigger = new HypotensiveHypoxemiaAlert(); break;
+            case "ECG": trigger = new ECGDataAlert(); break;
+            default: trigger = new AlertTriggeredPerson(); break;
+        }
+        // a realistic mix: mostly ECG and saturation, blood pressure every minute
+        Patient patient = new Patient(1);
+        long t = 1_700_000_000_000L;
+        for (int i = 0; i < historySize; i++) {
+            t += 500;
+            patient.addRecord(Math.sin(i), "ECG", t);
+            if (i % 2 == 0) {
+                patient.addRecord(95 + i % 4, "OxygenSaturation", t);
+            }
+            if (i % 120 == 0) {
+                patient.addRecord(110 + i % 20, "SystolicPressure", t);
+                patient.addRecord(75 + i % 10, "DiastolicPressure", t);
+            }
+            if (i % 1000 == 0) {
+                patient.addRecord(i % 2000 == 0 ? 1 : 0, "AlertButton", t);
+            }
+        }
+        records = patient.getRecords(0, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return trigger.evaluate(1, records).size();
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import com.dataManagement.DataReaderImpl;
+import com.dataManagement.DataStorage;
+import com.dataManagement.MappedFileDataReader;
+import com.dataManagement.SnapshotDataReader;
+import com.dataManagement.SnapshotWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for {@code DataReaderImpl.readData} and the parallel
+ * {@code MappedFileDataReader.readData} to import a large generated CSV file
+ * into an empty {@code DataStorage}, and for {@code SnapshotDataReader} to load
+ * the same data from a binary snapshot. The mapped reader runs once with one thread
+ * and once with a thread per processor, which shows how parsing and applying scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DataReaderBenchmark {
+    private static final String[] TYPES = {"ECG", "OxygenSaturation", "SystolicPressure", "DiastolicPressure"};
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Path csv;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = Files.createTempFile("readData", ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("patientId,measurementValue,recordType,timestamp\n");
+            for (int i = 0; i < rows; i++) {
+                out.write((1 + i % 100) + "," + (90 + (i % 1000) / 100.0) + "," + TYPES[i % TYPES.length]
+                        + "," + (1_700_000_000_000L + i) + "\n");
+            }
+        }
+        DataStorage storage = new DataStorage();
+        new DataReaderImpl(csv.toString()).readData(storage);
+        snapshot = Files.createTempFile("readData", ".snap");
+        SnapshotWriter.write(storage, snapshot);
+        System.out.println("CSV " + Files.size(csv) + " bytes, snapshot " + Files.size(snapshot) + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public DataStorage readData() throws IOException {
+        DataStorage storage = new DataStorage();
+        new DataReaderImpl(csv.toString()).readData(storage);
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage readDataMapped() throws IOException {
+        DataStorage storage = new DataStorage();
+        new MappedFileDataReader(csv.toString(), Runtime.getRuntime().availableProcessors(), 4L * 1024 * 1024)
+                .readData(storage);
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage readDataMappedOneThread() throws IOException {
+        DataStorage storage = new DataStorage();
+        new MappedFileDataReader(csv.toString(), 1, 4L * 1024 * 1024).readData(storage);
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage readSnapshot() throws IOException {
+        DataStorage storage = new DataStorage();
+        new SnapshotDataReader(snapshot.toString()).readData(storage);
+        return storage;
+    }
+}
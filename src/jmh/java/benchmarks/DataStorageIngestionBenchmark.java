@@ -0,0 +1,66 @@
+package benchmarks;
+
+import com.dataManagement.DataStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@code DataStorage.addPatientData} with eight threads writing at once.
+ * With {@code shared} false, each thread writes to its own patients out of
+ * {@code patients}, so the threads never contend for a patient and the benchmark shows
+ * how ingestion scales across patients. With {@code shared} true, every thread cycles
+ * through all {@code patients} patients, so with few patients the threads keep writing
+ * to the same ones and the benchmark shows the cost of contended patient locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Threads(8)
+public class DataStorageIngestionBenchmark {
+
+    @Param({"8", "1000"})
+    public int patients;
+
+    @Param({"false", "true"})
+    public boolean shared;
+
+    private DataStorage storage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        storage = new DataStorage();
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger threads = new AtomicInteger();
+        private final int thread = threads.getAndIncrement();
+        long timestamp = 1_700_000_000_000L;
+        int next;
+    }
+
+    @Benchmark
+    public void addPatientData(Writer writer) {
+        int patientId = shared
+                ? 1 + writer.next++ % patients
+                : 1 + (writer.thread + 8 * writer.next++) % patients;
+        storage.addPatientData(patientId, 0.5, "ECG", writer.timestamp++);
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@code Patient.getRecords} for a fixed one-minute window while the
+ * patient's history grows from 10 thousand to 10 million ECG records.
+ * With binary-searched bounds the latency should stay flat as history grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PatientQueryBenchmark {
+    private static final long T0 = 1_700_000_000_000L;
+    private static final int WINDOW_MS = 60_000;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int historySize;
+
+    private Patient patient;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        patient = new Patient(1);
+        for (int i = 0; i < historySize; i++) {
+            patient.addRecord(Math.sin(i), "ECG", T0 + i);
+        }
+    }
+
+    @Benchmark
+    public int queryWindow() {
+        long windowStart = T0 + (query++ * 7919L) % Math.max(1, historySize - WINDOW_MS);
+        List<PatientRecord> records = patient.getRecords(windowStart, windowStart + WINDOW_MS - 1);
+        return records.size();
+    }
+
+    @Benchmark
+    public double iterateWindow() {
+        long windowStart = T0 + (query++ * 7919L) % Math.max(1, historySize - WINDOW_MS);
+        double sum = 0;
+        for (PatientRecord record : patient.getRecords(windowStart, windowStart + WINDOW_MS - 1)) {
+            sum += record.getMeasurementValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.WebSocketPatientClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing and storing one sample in {@code WebSocketPatientClient.onMessage},
+ * as a text line and as a binary sample.
+ * The client is never connected; messages are passed to it directly.
+ * Timestamps only increase until the message set wraps around, at which point the
+ * client gets a fresh storage so every sample stays an in-order append.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class WebSocketMessageBenchmark {
+    private static final int DISTINCT_MESSAGES = 1 << 16;
+
+    private WebSocketPatientClient client;
+    private String[] messages;
+    private ByteBuffer[] binaryMessages;
+    private ByteBuffer typeDefinition;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        messages = new String[DISTINCT_MESSAGES];
+        for (int i = 0; i < DISTINCT_MESSAGES; i++) {
+            messages[i] = (1 + i % 50) + "," + (0.25 + i / 1000.0) + ",ECG," + (1_700_000_000_000L + i);
+        }
+        binaryMessages = new ByteBuffer[DISTINCT_MESSAGES];
+        for (int i = 0; i < DISTINCT_MESSAGES; i++) {
+            binaryMessages[i] = ByteBuffer.allocate(23).order(ByteOrder.LITTLE_ENDIAN)
+                    .put((byte) 0).putInt(1 + i % 50).putShort((short) 0)
+                    .putDouble(0.25 + i / 1000.0).putLong(1_700_000_000_000L + i);
+            binaryMessages[i].flip();
+        }
+        byte[] name = "ECG".getBytes(StandardCharsets.UTF_8);
+        typeDefinition = ByteBuffer.allocate(5 + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 1).putShort((short) 0).putShort((short) name.length).put(name);
+        typeDefinition.flip();
+    }
+
+    @Benchmark
+    public void onMessage() throws Exception {
+        int index = next++ & (DISTINCT_MESSAGES - 1);
+        if (index == 0) {
+            client = new WebSocketPatientClient(new URI("ws://localhost:1"), new DataStorage());
+        }
+        client.onMessage(messages[index]);
+    }
+
+    @Benchmark
+    public void onBinaryMessage() throws Exception {
+        int index = next++ & (DISTINCT_MESSAGES - 1);
+        if (index == 0) {
+            client = new WebSocketPatientClient(new URI("ws://localhost:1"), new DataStorage(), true);
+            client.onMessage(typeDefinition);
+        }
+        client.onMessage(binaryMessages[index]);
+    }
+}
@@ -0,0 +1,137 @@
+package benchmarks;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the {@code WriteAheadLog}: ingestion throughput with and without the log, from
+ * one thread and from eight threads writing different patients, and the time to recover a storage from a log of {@code records} readings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class WriteAheadLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ingestion {
+        @Param({"false", "true"})
+        public boolean logEnabled;
+
+        DataStorage storage;
+        WriteAheadLog log;
+        Path dir;
+        long timestamp = 1_700_000_000_000L;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            storage = new DataStorage();
+            if (logEnabled) {
+                dir = Files.createTempDirectory("wal-bench");
+                log = new WriteAheadLog(storage, dir);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            if (log != null) {
+                log.close();
+                delete(dir);
+                log = null;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger threads = new AtomicInteger();
+        private final int thread = threads.getAndIncrement();
+        long timestamp = 1_700_000_000_000L;
+        int next;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({"1000000"})
+        public int records;
+
+        Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("wal-bench");
+            DataStorage storage = new DataStorage();
+            try (WriteAheadLog log = new WriteAheadLog(storage, dir)) {
+                for (int i = 0; i < records; i++) {
+                    storage.addPatientData(1 + i % 100, i, i % 2 == 0 ? "ECG" : "Saturation",
+                            1_700_000_000_000L + i);
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void removeEmptySegments() throws IOException {
+            // every recovery opens a fresh segment; keep the directory as it was
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(path -> path.toFile().length() == 0).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(dir);
+        }
+    }
+
+    @Benchmark
+    public void addPatientData(Ingestion state) {
+        state.storage.addPatientData(1 + state.next++ % 1000, 0.5, "ECG", state.timestamp++);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addPatientDataConcurrently(Ingestion state, Writer writer) {
+        int patientId = 1 + (writer.thread + 8 * writer.next++) % 1000;
+        state.storage.addPatientData(patientId, 0.5, "ECG", writer.timestamp++);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DataStorage recover(Recovery state) throws IOException {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = new WriteAheadLog(storage, state.dir)) {
+            return storage;
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.alerts;
+
+import com.dataManagement.Patient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs {@link AlertGenerator#evaluateData} for many patients in parallel.
+ *
+ * Patients are split into shards that are evaluated on a bounded {@link ForkJoinPool};
+ * the generator collects the alerts in a thread-safe sink. Each pass reports its wall
+ * time so the speed-up over a single-threaded loop can be observed.
+ */
+public class AlertEvaluationScheduler implements AutoCloseable {
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private final AlertGenerator alertGenerator;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a scheduler with one worker per available processor.
+     *
+     * @param alertGenerator the generator used to evaluate each patient
+     */
+    public AlertEvaluationScheduler(AlertGenerator alertGenerator) {
+        this(alertGenerator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a scheduler with a fixed number of workers.
+     *
+     * @param alertGenerator the generator used to evaluate each patient
+     * @param parallelism    the number of worker threads
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public AlertEvaluationScheduler(AlertGenerator alertGenerator, int parallelism) {
+        this.alertGenerator = alertGenerator;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Evaluates all given patients once and waits until every shard has finished.
+     *
+     * @param patients the patients to evaluate
+     * @return the statistics of this pass
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public PassResult evaluateAll(List<Patient> patients) throws InterruptedException {
+        long start = System.nanoTime();
+        int alertsBefore = alertGenerator.getAlertCount();
+
+        int shardCount = Math.max(1, Math.min(patients.size(), pool.getParallelism() * SHARDS_PER_THREAD));
+        int shardSize = (patients.size() + shardCount - 1) / shardCount;
+        List<Callable<Void>> shards = new ArrayList<>();
+        for (int from = 0; from < patients.size(); from += shardSize) {
+            List<Patient> shard = patients.subList(from, Math.min(from + shardSize, patients.size()));
+            shards.add(() -> {
+                for (Patient patient : shard) {
+                    alertGenerator.evaluateData(patient);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(shards)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Alert evaluation failed", e.getCause());
+            }
+        }
+
+        long wallNanos = System.nanoTime() - start;
+        int alerts = alertGenerator.getAlertCount() - alertsBefore;
+        return new PassResult(patients.size(), alerts, wallNanos);
+    }
+
+    /**
+     * Stops the worker threads. Passes that are already running are completed.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Statistics of one evaluation pass.
+     */
+    public static class PassResult {
+        private final int patientCount;
+        private final int alertCount;
+        private final long wallNanos;
+
+        PassResult(int patientCount, int alertCount, long wallNanos) {
+            this.patientCount = patientCount;
+            this.alertCount = alertCount;
+            this.wallNanos = wallNanos;
+        }
+
+        public int getPatientCount() {
+            return patientCount;
+        }
+
+        public int getAlertCount() {
+            return alertCount;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Evaluated " + patientCount + " patients in " + wallNanos / 1_000_000 + " ms, "
+                    + alertCount + " alerts";
+        }
+    }
+}
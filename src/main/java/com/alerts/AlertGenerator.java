@@ -8,17 +8,24 @@ import com.dataManagement.PatientRecord;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
  * and generating alerts when certain predefined conditions are met. This class
  * relies on a {@link DataStorage} instance to access patient data and evaluate
  * it against specific health criteria.
+ *
+ * {@link #evaluateData} may be called for different patients from several threads
+ * at once, e.g. by an {@link AlertEvaluationScheduler}.
  */
 public class AlertGenerator {
     private final DataStorage dataStorage;
     private final List<AlertTriggerCondition> triggerConditions;
-    private final List<Alert> generatedAlerts;
+    private final Queue<Alert> generatedAlerts;
+    private final AtomicInteger alertCount = new AtomicInteger();
 
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}.
@@ -37,7 +44,7 @@ public class AlertGenerator {
      */
     public AlertGenerator(DataStorage dataStorage) {
         this.dataStorage = dataStorage;
-        this.generatedAlerts = new ArrayList<>();
+        this.generatedAlerts = new ConcurrentLinkedQueue<>();
         this.triggerConditions = Arrays.asList(
                 new BloodPressureAlert(true),          // Systolic
                 new BloodPressureAlert(false),         // Diastolic
@@ -83,8 +90,18 @@ public class AlertGenerator {
         System.out.println("Attention! Patient " + alert.getPatientId() + ": "
                 + alert.getCondition() + " at " + alert.getTimestamp());
         generatedAlerts.add(alert);
+        alertCount.incrementAndGet();
     }
     public List<Alert> getGeneratedAlerts() {
         return new ArrayList<>(generatedAlerts);
     }
+
+    /**
+     * Returns the number of alerts generated so far without copying them.
+     *
+     * @return the number of generated alerts
+     */
+    public int getAlertCount() {
+        return alertCount.get();
+    }
 }
@@ -3,6 +3,7 @@ package com.alerts;
 import com.dataManagement.PatientRecord;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Monitors patient “AlertButton” events and generates an alert whenever the
@@ -14,7 +15,7 @@ import java.util.List;
  * for each event with the corresponding timestamp.
  */
 
-public class AlertTriggeredPerson implements AlertTriggerCondition {
+public class AlertTriggeredPerson implements AlertTriggerCondition, StreamingAlertCondition {
 
     /**
      * Evaluates a list of {@link PatientRecord}s for alert-button actions.
@@ -52,4 +53,22 @@ public class AlertTriggeredPerson implements AlertTriggerCondition {
         }
         return alerts;
     }
+
+    /**
+     * Emits a press or release alert for a single new alert-button reading.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue 1.0 for a press, anything else for a release
+     * @param recordType       the type of record; other types are ignored
+     * @param timestamp        the time of the event
+     * @param sink             receives the alert
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp,
+                       Consumer<Alert> sink) {
+        if ("AlertButton".equals(recordType)) {
+            String action = measurementValue == 1.0 ? "pressed" : "released";
+            sink.accept(new Alert(String.valueOf(patientId), "Alert button " + action, timestamp));
+        }
+    }
 }
@@ -3,6 +3,9 @@ package com.alerts;
 import com.dataManagement.PatientRecord;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Monitors either systolic or diastolic blood pressure for critical threshold
@@ -14,10 +17,12 @@ import java.util.List;
  * Additionally, it detects an increasing or decreasing trend when three consecutive
  * readings change by more than 10 mmHg in the same direction.
  *
+ * In streaming mode only the last two readings of each patient are kept.
  */
 
-public class BloodPressureAlert implements AlertTriggerCondition{
+public class BloodPressureAlert implements AlertTriggerCondition, StreamingAlertCondition {
     private final boolean systolic;     //we made it final boolean so If it is true the bp is systolic otherwise diastolic
+    private final Map<Integer, double[]> lastTwoReadings = new ConcurrentHashMap<>(); // {older, newer}, NaN if missing
 
     public BloodPressureAlert(boolean systolic) {
         this.systolic = systolic;
@@ -93,5 +98,45 @@ public class BloodPressureAlert implements AlertTriggerCondition{
 
         return alerts;
     }
+
+    /**
+     * Checks a single new reading against the critical thresholds and, together
+     * with the two previous readings of the same patient, against the trend rule.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record; other types are ignored
+     * @param timestamp        the time of the reading
+     * @param sink             receives the alerts triggered by this reading
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp,
+                       Consumer<Alert> sink) {
+        String type = systolic ? "SystolicPressure" : "DiastolicPressure";
+        if (!type.equals(recordType)) {
+            return;
+        }
+        double v3 = measurementValue;
+        if (systolic && (v3 > 180 || v3 < 90)) {
+            sink.accept(new Alert(String.valueOf(patientId),
+                    "Critical threshold breached for Systolic: " + v3 + " mmHg", timestamp));
+        } else if (!systolic && (v3 > 120 || v3 < 60)) {
+            sink.accept(new Alert(String.valueOf(patientId),
+                    "Critical threshold breached for Diastolic: " + v3 + " mmHg", timestamp));
+        }
+
+        double[] last = lastTwoReadings.computeIfAbsent(patientId, k -> new double[]{Double.NaN, Double.NaN});
+        double v1 = last[0];
+        double v2 = last[1];
+        if (v2 - v1 > 10 && v3 - v2 > 10) {
+            String condition = type + " increasing trend (" + v1 + "->" + v2 + "->" + v3 + ")";
+            sink.accept(new Alert(String.valueOf(patientId), condition, timestamp));
+        } else if (v1 - v2 > 10 && v2 - v3 > 10) {
+            String condition = type + " decreasing trend (" + v1 + "->" + v2 + "->" + v3 + ")";
+            sink.accept(new Alert(String.valueOf(patientId), condition, timestamp));
+        }
+        last[0] = v2;
+        last[1] = v3;
+    }
 }
 
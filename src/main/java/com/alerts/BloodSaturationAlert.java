@@ -3,6 +3,9 @@ package com.alerts;
 import com.dataManagement.PatientRecord;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Monitors a patient’s oxygen saturation measurements and generates alerts
@@ -16,10 +19,12 @@ import java.util.List;
  * The time window for detecting rapid drops is defined by {@link #MS},
  * which converts 10 minutes into milliseconds (since timestamps are in ms).
  *
+ * In streaming mode only the previous reading of each patient is kept.
  */
 
-public class BloodSaturationAlert implements AlertTriggerCondition {
+public class BloodSaturationAlert implements AlertTriggerCondition, StreamingAlertCondition {
     private static final long MS = 10 * 60 * 1000;  //timestap is measured in ms so it is converted to ms
+    private final Map<Integer, PatientRecord> previousReadings = new ConcurrentHashMap<>();
 
     /**
      * Evaluates a list of {@link PatientRecord}s to detect oxygen saturation issues.
@@ -69,4 +74,35 @@ public class BloodSaturationAlert implements AlertTriggerCondition {
 
         return alerts;
     }
+
+    /**
+     * Checks a single new saturation reading for low saturation and for a rapid
+     * drop compared to the patient's previous reading.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record; other types are ignored
+     * @param timestamp        the time of the reading
+     * @param sink             receives the alerts triggered by this reading
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp,
+                       Consumer<Alert> sink) {
+        if (!"OxygenSaturation".equals(recordType)) {
+            return;
+        }
+        if (measurementValue < 92) {
+            String cond = "Low Oxygen Saturation: " + measurementValue + "%";
+            sink.accept(new Alert(String.valueOf(patientId), cond, timestamp));
+        }
+        PatientRecord prev = previousReadings.put(patientId,
+                new PatientRecord(patientId, measurementValue, recordType, timestamp));
+        if (prev != null && timestamp - prev.getTimestamp() <= MS &&
+                prev.getMeasurementValue() - measurementValue >= 5) {
+            String cond = "Rapid Oxygen Saturation Drop: "
+                    + prev.getMeasurementValue() + "% to "
+                    + measurementValue;
+            sink.accept(new Alert(String.valueOf(patientId), cond, timestamp));
+        }
+    }
 }
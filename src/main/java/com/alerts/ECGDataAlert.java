@@ -3,6 +3,9 @@ package com.alerts;
 import com.dataManagement.PatientRecord;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Checks ECG data for abnormal spikes using a sliding-window approach.
@@ -12,23 +15,62 @@ import java.util.ArrayList;
  * over a fixed window. If the most recent ECG measurement in the window exceeds
  * the average by a configurable threshold factor, an alert is generated.
  *
+ * Optionally, a z-score threshold can be set as well: a measurement whose distance
+ * from the mean of the preceding window is more than that many standard deviations
+ * is also reported.
  *
- *  Window size: {@value #SLIDE_WINDOW_SIZE} records
- *  Threshold factor: {@value #THRESHOLD_FACTOR}× the window average
+ * The window is kept in a {@link RollingWindow}, so each sample costs the same whatever
+ * the window size; windows of thousands of samples (several seconds of 250 Hz ECG) are fine.
+ *
+ *  Default window size: {@value #SLIDE_WINDOW_SIZE} records
+ *  Default threshold factor: {@value #THRESHOLD_FACTOR}× the window average
+ *  Default z-score threshold: disabled
+ *
+ * In streaming mode each patient keeps its own window, and every abnormal reading is reported.
  */
-public class ECGDataAlert implements AlertTriggerCondition {
+public class ECGDataAlert implements AlertTriggerCondition, StreamingAlertCondition {
 
     private static final int SLIDE_WINDOW_SIZE = 5;
     private static final double THRESHOLD_FACTOR = 1.5;
 
+    private final int windowSize;
+    private final double thresholdFactor;
+    private final double zScoreThreshold;
+    private final Map<Integer, RollingWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a detector with the default window size and threshold factor and no z-score check.
+     */
+    public ECGDataAlert() {
+        this(SLIDE_WINDOW_SIZE, THRESHOLD_FACTOR, 0);
+    }
+
+    /**
+     * Creates a detector with a custom configuration.
+     *
+     * @param windowSize      the number of ECG samples in the sliding window
+     * @param thresholdFactor a sample above this factor times the window average is abnormal
+     * @param zScoreThreshold a sample more than this many standard deviations away from the
+     *                        mean of the preceding window is abnormal; 0 disables the check
+     * @throws IllegalArgumentException if {@code windowSize} is not positive
+     */
+    public ECGDataAlert(int windowSize, double thresholdFactor, double zScoreThreshold) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.thresholdFactor = thresholdFactor;
+        this.zScoreThreshold = zScoreThreshold;
+    }
+
     /**
      * Evaluates a list of patient records for ECG anomalies.
      *
      * Only records whose {@code getRecordType()} equals "ECG" are considered.
-     * Once at least {@value #SLIDE_WINDOW_SIZE} ECG measurements are collected,
-     * a sliding window average is computed. If the latest measurement in the window
-     * exceeds the sliding average multiplied by {@value #THRESHOLD_FACTOR}, an
-     * {@link Alert} is created for that timestamp and the evaluation stops.
+     * Once a full window of ECG measurements is collected, a sliding window average
+     * is maintained. If the latest measurement in the window exceeds the sliding
+     * average multiplied by the threshold factor (or breaks the z-score threshold,
+     * if set), an {@link Alert} is created for that timestamp and the evaluation stops.
      *
      * @param patientId the unique identifier of the patient whose records are being evaluated
      * @param records   the complete list of {@link PatientRecord}s for this patient;
@@ -40,29 +82,68 @@ public class ECGDataAlert implements AlertTriggerCondition {
     @Override
     public List<Alert> evaluate(int patientId, List<PatientRecord> records) {
         List<Alert> alerts = new ArrayList<>();
-        List<PatientRecord> ecgRecords = new ArrayList<>();
+        RollingWindow window = new RollingWindow(windowSize);
         for (PatientRecord r : records) {
-            if ("ECG".equals(r.getRecordType())) {
-                ecgRecords.add(r);
-            }
-        }
-
-        if (ecgRecords.size() < SLIDE_WINDOW_SIZE) return alerts;
-
-        for (int i = SLIDE_WINDOW_SIZE - 1; i < ecgRecords.size(); i++) {
-            double sum = 0.0;
-            for (int j = i - SLIDE_WINDOW_SIZE + 1; j <= i; j++) {
-                sum += ecgRecords.get(j).getMeasurementValue();
+            if (!"ECG".equals(r.getRecordType())) {
+                continue;
             }
-            double avg = sum / SLIDE_WINDOW_SIZE;
-            PatientRecord curr = ecgRecords.get(i);
-            double value = curr.getMeasurementValue();
-            if (value > avg * THRESHOLD_FACTOR) {
-                String cond = "Measured abnormally high ECG record!";
-                alerts.add(new Alert(String.valueOf(patientId), cond, curr.getTimestamp()));
+            String cond = check(window, r.getMeasurementValue());
+            if (cond != null) {
+                alerts.add(new Alert(String.valueOf(patientId), cond, r.getTimestamp()));
                 break;
             }
         }
         return alerts;
     }
+
+    /**
+     * Adds a value to the window and checks it against the configured thresholds.
+     *
+     * @return the alert condition, or {@code null} if the value is normal or the window
+     *         is not yet full
+     */
+    private String check(RollingWindow window, double value) {
+        String cond = null;
+        if (zScoreThreshold > 0 && window.isFull()) {
+            double deviation = window.standardDeviation();
+            if (deviation > 0) {
+                double z = (value - window.mean()) / deviation;
+                if (Math.abs(z) > zScoreThreshold) {
+                    cond = "Measured abnormal ECG record! (z-score " + String.format("%.2f", z) + ")";
+                }
+            }
+        }
+        window.add(value);
+        if (!window.isFull()) {
+            return null;
+        }
+        if (value > window.mean() * thresholdFactor) {
+            cond = "Measured abnormally high ECG record!";
+        }
+        return cond;
+    }
+
+    /**
+     * Adds a single new ECG reading to the patient's window and emits an alert if it
+     * exceeds the window average (including itself) by the threshold factor, or breaks
+     * the z-score threshold if one is set.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the ECG value
+     * @param recordType       the type of record; non-ECG records are ignored
+     * @param timestamp        the time of the reading
+     * @param sink             receives the alert, if triggered
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp,
+                       Consumer<Alert> sink) {
+        if (!"ECG".equals(recordType)) {
+            return;
+        }
+        RollingWindow window = windows.computeIfAbsent(patientId, k -> new RollingWindow(windowSize));
+        String cond = check(window, measurementValue);
+        if (cond != null) {
+            sink.accept(new Alert(String.valueOf(patientId), cond, timestamp));
+        }
+    }
 }
@@ -3,6 +3,9 @@ package com.alerts;
 import com.dataManagement.PatientRecord;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 /**
  * Checks for hypotensive hypoxemia by evaluating the latest systolic blood pressure
  * and oxygen saturation records for a patient.
@@ -15,8 +18,11 @@ import java.util.ArrayList;
  *   Systolic pressure threshold: 90 mmHg
  *   Oxygen saturation threshold: 92 %
  *
+ * In streaming mode the latest values of each patient are kept, and an alert is
+ * emitted when the condition starts to hold, not again for every reading while it lasts.
  */
-public class HypotensiveHypoxemiaAlert implements AlertTriggerCondition {
+public class HypotensiveHypoxemiaAlert implements AlertTriggerCondition, StreamingAlertCondition {
+    private final Map<Integer, double[]> latestReadings = new ConcurrentHashMap<>(); // {systolic, saturation, active}
 
     /**
      * Evaluates a list of patient records to detect hypotensive hypoxemia.
@@ -58,4 +64,37 @@ public class HypotensiveHypoxemiaAlert implements AlertTriggerCondition {
         }
         return alerts;
     }
+
+    /**
+     * Updates the patient's latest systolic pressure or saturation and emits an alert
+     * if both thresholds are now breached and were not at the previous reading.
+     * No alert is emitted until both record types have been seen.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record; other types are ignored
+     * @param timestamp        the time of the reading
+     * @param sink             receives the alert, if triggered
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp,
+                       Consumer<Alert> sink) {
+        int slot;
+        if ("SystolicPressure".equals(recordType)) {
+            slot = 0;
+        } else if ("OxygenSaturation".equals(recordType)) {
+            slot = 1;
+        } else {
+            return;
+        }
+        double[] latest = latestReadings.computeIfAbsent(patientId, k -> new double[]{Double.NaN, Double.NaN, 0});
+        latest[slot] = measurementValue;
+        boolean breached = latest[0] < 90 && latest[1] < 92;
+        if (breached && latest[2] == 0) {
+            String cond = "Hypotensive Hypoxemia: systolic=" + latest[0]
+                    + " mmHg, saturation=" + latest[1] + "%";
+            sink.accept(new Alert(String.valueOf(patientId), cond, timestamp));
+        }
+        latest[2] = breached ? 1 : 0;
+    }
 }
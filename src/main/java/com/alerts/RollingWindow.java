@@ -0,0 +1,106 @@
+package com.alerts;
+
+/**
+ * Fixed-size ring buffer of the most recent values with a running sum and sum of squares,
+ * so the mean and variance of the window are available in constant time per sample,
+ * whatever the window size.
+ *
+ * The running sums are recomputed from the buffer once per full turn of the ring to keep
+ * floating-point drift bounded on long streams. Not thread-safe.
+ */
+public class RollingWindow {
+    private final double[] values;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private double sum;
+    private double sumOfSquares;
+
+    /**
+     * Creates an empty window.
+     *
+     * @param size the number of most recent values to keep
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public RollingWindow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        }
+        this.values = new double[size];
+    }
+
+    /**
+     * Adds a value, evicting the oldest one if the window is full.
+     *
+     * @param value the new value
+     */
+    public void add(double value) {
+        double evicted = values[next];
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (count < values.length) {
+            count++;
+            evicted = 0.0;
+        }
+        sum += value - evicted;
+        sumOfSquares += value * value - evicted * evicted;
+        if (++sinceRecompute == values.length) {
+            recompute();
+        }
+    }
+
+    private void recompute() {
+        double s = 0.0;
+        double sq = 0.0;
+        for (int i = 0; i < count; i++) {
+            s += values[i];
+            sq += values[i] * values[i];
+        }
+        sum = s;
+        sumOfSquares = sq;
+        sinceRecompute = 0;
+    }
+
+    public boolean isFull() {
+        return count == values.length;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the mean of the values in the window.
+     *
+     * @return the mean, or {@code NaN} if the window is empty
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the population variance of the values in the window.
+     *
+     * @return the variance, or {@code NaN} if the window is empty
+     */
+    public double variance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        return Math.max(0.0, sumOfSquares / count - mean * mean);
+    }
+
+    /**
+     * Returns the population standard deviation of the values in the window.
+     *
+     * @return the standard deviation, or {@code NaN} if the window is empty
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+}
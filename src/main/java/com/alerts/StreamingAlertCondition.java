@@ -0,0 +1,28 @@
+package com.alerts;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental counterpart of {@link AlertTriggerCondition}. Instead of re-reading a
+ * patient's whole history, an implementation is fed each new reading once and keeps
+ * whatever per-patient state it needs (last values, running sums, ...) between calls.
+ *
+ * Every alert is therefore emitted exactly once, and the cost of a reading does not
+ * depend on the length of the patient's history.
+ *
+ * Calls for the same patient never overlap (see
+ * {@link com.dataManagement.PatientDataListener}); calls for different patients may
+ * run concurrently.
+ */
+public interface StreamingAlertCondition {
+    /**
+     * Processes one new reading and reports any alerts it triggers.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time of the reading, in milliseconds since UNIX epoch
+     * @param sink             receives the alerts triggered by this reading
+     */
+    void accept(int patientId, double measurementValue, String recordType, long timestamp, Consumer<Alert> sink);
+}
@@ -0,0 +1,78 @@
+package com.alerts;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.PatientDataListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Streaming alternative to {@link AlertGenerator}. It registers itself as a
+ * {@link PatientDataListener} on a {@link DataStorage} and passes each new reading
+ * to a set of {@link StreamingAlertCondition}s as soon as it is stored.
+ *
+ * Unlike {@link AlertGenerator#evaluateData}, it never refetches history: each
+ * reading is evaluated once, at constant cost, and each alert is triggered once.
+ */
+public class StreamingAlertGenerator implements PatientDataListener {
+    private final DataStorage dataStorage;
+    private final List<StreamingAlertCondition> triggerConditions;
+    private final Queue<Alert> generatedAlerts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a {@code StreamingAlertGenerator} with the same conditions as
+     * {@link AlertGenerator} and starts listening to the given storage.
+     *
+     * @param dataStorage the data storage whose new readings are evaluated
+     */
+    public StreamingAlertGenerator(DataStorage dataStorage) {
+        this(dataStorage, Arrays.asList(
+                new BloodPressureAlert(true),          // Systolic
+                new BloodPressureAlert(false),         // Diastolic
+                new BloodSaturationAlert(),
+                new HypotensiveHypoxemiaAlert(),
+                new ECGDataAlert(),
+                new AlertTriggeredPerson()
+        ));
+    }
+
+    /**
+     * Constructs a {@code StreamingAlertGenerator} with custom conditions and starts
+     * listening to the given storage.
+     *
+     * @param dataStorage       the data storage whose new readings are evaluated
+     * @param triggerConditions the conditions to feed with each reading
+     */
+    public StreamingAlertGenerator(DataStorage dataStorage, List<StreamingAlertCondition> triggerConditions) {
+        this.dataStorage = dataStorage;
+        this.triggerConditions = triggerConditions;
+        dataStorage.addListener(this);
+    }
+
+    @Override
+    public void onPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        for (StreamingAlertCondition condition : triggerConditions) {
+            condition.accept(patientId, measurementValue, recordType, timestamp, this::triggerAlert);
+        }
+    }
+
+    /**
+     * Stops listening to the storage. Alerts generated so far are kept.
+     */
+    public void stop() {
+        dataStorage.removeListener(this);
+    }
+
+    private void triggerAlert(Alert alert) {
+        System.out.println("Attention! Patient " + alert.getPatientId() + ": "
+                + alert.getCondition() + " at " + alert.getTimestamp());
+        generatedAlerts.add(alert);
+    }
+
+    public List<Alert> getGeneratedAlerts() {
+        return new ArrayList<>(generatedAlerts);
+    }
+}
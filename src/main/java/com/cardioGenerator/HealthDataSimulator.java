@@ -1,7 +1,5 @@
 package com.cardioGenerator;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.cardioGenerator.generators.AlertGenerator;
@@ -10,11 +8,13 @@ import com.cardioGenerator.generators.BloodPressureDataGenerator;
 import com.cardioGenerator.generators.BloodSaturationDataGenerator;
 import com.cardioGenerator.generators.BloodLevelsDataGenerator;
 import com.cardioGenerator.generators.ECGDataGenerator;
+import com.cardioGenerator.generators.PatientDataGenerator;
 import com.cardioGenerator.outputs.*;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -22,17 +22,26 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 
 /**Launches a simulation of patient health data generation. This class is responsible for for initializing a data generator for specific amount 
- * of patients.  This program simulates data in real time using a scheduled execution service 
+ * of patients.  This program simulates data in real time using a {@link TickScheduler}
  * generating different metrics for a patient such as blood saturation, blood pressure and ECG.  
+ * All patients are driven by one worker thread per core, so large patient counts do not
+ * need a thread per generator.
  * 
  * @author Oleksandr Trutenko 
  */
 public class HealthDataSimulator {
 
     private static int patientCount = 50; // Default number of patients
-    private static ScheduledExecutorService scheduler;
+    private static final long TICK_MILLIS = 100;
+    private static TickScheduler scheduler;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
+    private static AsyncOutputStrategy.BackpressurePolicy asyncPolicy; // null keeps the output synchronous
+    private static Long seed; // null gives different data on every run
+    private static int webSocketBatchRecords = 1; // 1 sends every sample as its own message
+    private static final long WEBSOCKET_BATCH_MILLIS = 10;
+    private static int webSocketReplayRecords; // 0 keeps no history for reconnecting clients
+    private static int webSocketPort;
+    private static Random random = new Random();
     private static HealthDataSimulator instance; //instance variable
 
 
@@ -54,13 +63,24 @@ public class HealthDataSimulator {
     public static void main(String[] args) throws IOException {
 
         parseArguments(args);
+        if (outputStrategy == null) {
+            outputStrategy = new WebSocketOutputStrategy(webSocketPort, webSocketBatchRecords, WEBSOCKET_BATCH_MILLIS,
+                    webSocketReplayRecords);
+        }
+        if (seed != null) {
+            random = new Random(seed);
+        }
+        if (asyncPolicy != null) {
+            outputStrategy = new AsyncOutputStrategy(outputStrategy, 1 << 16, asyncPolicy);
+        }
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        scheduler = new TickScheduler(Runtime.getRuntime().availableProcessors(), TICK_MILLIS);
 
         List<Integer> patientIds = initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        Collections.shuffle(patientIds, random); // Randomize the order of patient IDs
 
         scheduleTasksForPatients(patientIds);
+        scheduler.start();
     }
     
     /**Sets up command-line arguments to set patient count and output strategy.
@@ -100,8 +120,9 @@ public class HealthDataSimulator {
                         } else if (outputArg.startsWith("websocket:")) {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(10));
-                                // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
+                                // The WebSocket output is created in main, once --ws-batch and --ws-replay are known
+                                outputStrategy = null;
+                                webSocketPort = port;
                                 System.out.println("WebSocket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println(
@@ -121,6 +142,53 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
+                case "--async":
+                    if (i + 1 < args.length) {
+                        String policyArg = args[++i];
+                        try {
+                            asyncPolicy = AsyncOutputStrategy.BackpressurePolicy.valueOf(
+                                    policyArg.toUpperCase().replace('-', '_'));
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Unknown backpressure policy '" + policyArg
+                                    + "'. Output stays synchronous.");
+                        }
+                    }
+                    break;
+                case "--ws-batch":
+                    if (i + 1 < args.length) {
+                        try {
+                            webSocketBatchRecords = Integer.parseInt(args[++i]);
+                            if (webSocketBatchRecords < 1) {
+                                throw new NumberFormatException();
+                            }
+                        } catch (NumberFormatException e) {
+                            webSocketBatchRecords = 1;
+                            System.err.println("Error: Invalid batch size. Samples are sent one by one.");
+                        }
+                    }
+                    break;
+                case "--ws-replay":
+                    if (i + 1 < args.length) {
+                        try {
+                            webSocketReplayRecords = Integer.parseInt(args[++i]);
+                            if (webSocketReplayRecords < 0) {
+                                throw new NumberFormatException();
+                            }
+                        } catch (NumberFormatException e) {
+                            webSocketReplayRecords = 0;
+                            System.err.println("Error: Invalid replay size. Reconnecting clients get no replay.");
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Data will differ on every run.");
+                        }
+                    }
+                    break;
                 default:
                     System.err.println("Unknown option '" + args[i] + "'");
                     printHelp();
@@ -140,6 +208,12 @@ public class HealthDataSimulator {
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
         System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("  --async <policy>         Hand output to a background thread through a bounded buffer.");
+        System.out.println("                           When the buffer is full: 'block', 'drop-oldest' or 'drop-newest'.");
+        System.out.println("  --ws-batch <count>       Send up to <count> WebSocket samples per message, at least every "
+                + WEBSOCKET_BATCH_MILLIS + " ms.");
+        System.out.println("  --ws-replay <count>      Keep the last <count> WebSocket samples to replay to reconnecting clients.");
+        System.out.println("  --seed <number>          Generate the same data on every run with this seed.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
@@ -157,32 +231,37 @@ public class HealthDataSimulator {
         }
         return patientIds;
     }
-    /**Schedules a data distribution task for each of the patients in patientIds list.
+    /**Schedules data generation for each of the patients in patientIds list.
+     * Generators with the same period are grouped, so each patient is visited once per period.
      * 
      * @param patientIds A list of patient IDs.
      */
     private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        // every generator gets its own seed, derived from the run's seed if one was given
+        SplittableRandom seeds = seed != null ? new SplittableRandom(seed) : new SplittableRandom();
+        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount, seeds.nextLong());
+        BloodSaturationDataGenerator bloodSaturationDataGenerator =
+                new BloodSaturationDataGenerator(patientCount, seeds.nextLong());
+        BloodPressureDataGenerator bloodPressureDataGenerator =
+                new BloodPressureDataGenerator(patientCount, seeds.nextLong());
+        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount, seeds.nextLong());
+        AlertGenerator alertGenerator = new AlertGenerator(patientCount, seeds.nextLong());
 
-        for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
-        }
+        scheduleGroup(List.of(ecgDataGenerator, bloodSaturationDataGenerator), 1, TimeUnit.SECONDS, patientIds);
+        scheduleGroup(List.of(bloodPressureDataGenerator), 1, TimeUnit.MINUTES, patientIds);
+        scheduleGroup(List.of(bloodLevelsDataGenerator), 2, TimeUnit.MINUTES, patientIds);
+        scheduleGroup(List.of(alertGenerator), 20, TimeUnit.SECONDS, patientIds);
     }
-    /**Helper method for scheduleTasksForPatients to schedule only one task with a randomized frequency of executions.
+    /**Helper method for scheduleTasksForPatients to schedule generators sharing one period.
+     * Each patient starts at a random point within the period.
      * 
-     * @param task - task to be executed.
-     * @param period - the frequency of task executions.
+     * @param generators - generators to be executed.
+     * @param period - the frequency of executions.
      * @param timeUnit - the time unit for one period.
+     * @param patientIds - the patients to generate data for.
      */
-    private static void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+    private static void scheduleGroup(List<PatientDataGenerator> generators, long period, TimeUnit timeUnit,
+                                      List<Integer> patientIds) {
+        scheduler.schedule(generators, timeUnit.toMillis(period), patientIds, random, outputStrategy);
     }
 }
@@ -0,0 +1,158 @@
+package com.cardioGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cardioGenerator.generators.PatientDataGenerator;
+import com.cardioGenerator.outputs.OutputStrategy;
+
+/**Drives the generators of all patients from a small, fixed number of threads.
+ * Generators that share a period are registered together as one group. Each group is a
+ * timing wheel with one slot per tick of its period: every patient is placed in a random
+ * slot, so the work of a period is spread evenly over its ticks instead of all patients
+ * firing at once. On every tick a single timer thread takes the current slot of each
+ * group and splits its patients among the worker threads, which run all generators of
+ * the group for each patient in turn.
+ *
+ * A patient's generators of one group never run concurrently with each other, and a slot
+ * is only started again once its previous run has finished.
+ *
+ * @author Oleksandr Trutenko
+ */
+public class TickScheduler implements AutoCloseable {
+
+    private final int threads;
+    private final long tickMillis;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final List<Group> groups = new ArrayList<>();
+    private final AtomicLong skippedSlots = new AtomicLong();
+    private long tick;
+
+    /** One set of generators sharing a period. */
+    private static final class Group {
+        final PatientDataGenerator[] generators;
+        final OutputStrategy outputStrategy;
+        final int[][] slots;
+        final AtomicInteger[] running;
+
+        Group(PatientDataGenerator[] generators, OutputStrategy outputStrategy, int[][] slots) {
+            this.generators = generators;
+            this.outputStrategy = outputStrategy;
+            this.slots = slots;
+            this.running = new AtomicInteger[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                running[i] = new AtomicInteger();
+            }
+        }
+    }
+
+    /**Creates a scheduler; nothing runs until {@link #start()} is called.
+     *
+     * @param threads - the number of worker threads, e.g. one per core.
+     * @param tickMillis - the resolution of the wheel; periods are rounded to whole ticks.
+     */
+    public TickScheduler(int threads, long tickMillis) {
+        if (threads <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Thread count and tick must be positive");
+        }
+        this.threads = threads;
+        this.tickMillis = tickMillis;
+        // the timer keeps the JVM alive while the simulation runs
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "tick-timer"));
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "tick-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**Registers generators that run for every patient once per period.
+     *
+     * @param generators - the generators of the group, run in this order for each patient.
+     * @param periodMillis - how often each patient is generated.
+     * @param patientIds - the patients to generate.
+     * @param random - decides the slot of each patient within the period.
+     * @param outputStrategy - where the generators send their data.
+     */
+    public synchronized void schedule(List<? extends PatientDataGenerator> generators, long periodMillis,
+                                      List<Integer> patientIds, Random random, OutputStrategy outputStrategy) {
+        int slotCount = (int) Math.max(1, periodMillis / tickMillis);
+        List<List<Integer>> slots = new ArrayList<>();
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        for (int patientId : patientIds) {
+            slots.get(random.nextInt(slotCount)).add(patientId);
+        }
+        int[][] slotArrays = new int[slotCount][];
+        for (int i = 0; i < slotCount; i++) {
+            slotArrays[i] = slots.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        groups.add(new Group(generators.toArray(new PatientDataGenerator[0]), outputStrategy, slotArrays));
+    }
+
+    /** Starts ticking. */
+    public void start() {
+        timer.scheduleAtFixedRate(this::tick, 0, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void tick() {
+        for (Group group : groups) {
+            int slot = (int) (tick % group.slots.length);
+            int[] patients = group.slots[slot];
+            if (patients.length == 0) {
+                continue;
+            }
+            AtomicInteger running = group.running[slot];
+            if (running.get() > 0) {
+                // the previous turn of this slot is still running: the workers are overloaded
+                skippedSlots.incrementAndGet();
+                continue;
+            }
+            int shards = Math.min(threads, patients.length);
+            int shardSize = (patients.length + shards - 1) / shards;
+            for (int from = 0; from < patients.length; from += shardSize) {
+                int start = from;
+                int end = Math.min(from + shardSize, patients.length);
+                running.incrementAndGet();
+                workers.execute(() -> {
+                    try {
+                        for (int i = start; i < end; i++) {
+                            for (PatientDataGenerator generator : group.generators) {
+                                generator.generate(patients[i], group.outputStrategy);
+                            }
+                        }
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            }
+        }
+        tick++;
+    }
+
+    /**Returns how many slot turns were skipped because the previous turn had not finished.
+     * A growing number means the workers cannot keep up with the patient count.
+     *
+     * @return the number of skipped slot turns.
+     */
+    public long getSkippedSlots() {
+        return skippedSlots.get();
+    }
+
+    /** Stops ticking; runs in progress are completed. */
+    @Override
+    public void close() {
+        timer.shutdown();
+        workers.shutdown();
+    }
+}
@@ -1,6 +1,6 @@
 package com.cardioGenerator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.cardioGenerator.outputs.OutputStrategy;
     /**This class represents an alert generator for patient monitoring system and implements PatientDataGenerator interface.
@@ -12,13 +12,22 @@ import com.cardioGenerator.outputs.OutputStrategy;
 
 public class AlertGenerator implements PatientDataGenerator {
 
-    public static final Random randomGenerator = new Random();
+    private final SplittableRandom[] randoms;
     private boolean[] AlertStates; // false = resolved, true = pressed
 
     /** Craetes an array of boolean values that contains the alert events. Sets the size for the array by what is given in patientCount.
      * @param patientCount - represents amount of patients in the medical system.
      */
     public AlertGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /** Creates an alert generator whose alerts are the same for every run with the same seed.
+     * @param patientCount - represents amount of patients in the medical system.
+     * @param seed - the seed of the patients' random sources.
+     */
+    public AlertGenerator(int patientCount, long seed) {
+        randoms = PatientRandoms.split(new SplittableRandom(seed), patientCount);
         AlertStates = new boolean[patientCount + 1];
     }
 
@@ -34,6 +43,7 @@ public class AlertGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom randomGenerator = randoms[patientId];
             if (AlertStates[patientId]) {
                 if (randomGenerator.nextDouble() < 0.9) { // 90% chance to resolve
                     AlertStates[patientId] = false;
@@ -1,16 +1,26 @@
 package com.cardioGenerator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.cardioGenerator.outputs.OutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /** Creates a generator whose baselines and variations are the same for every run with the same seed.
+     * @param patientCount - the total amount of patients.
+     * @param seed - the seed of the patients' random sources.
+     */
+    public BloodLevelsDataGenerator(int patientCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -22,21 +32,22 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
             baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
             baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
         }
+        randoms = PatientRandoms.split(random, patientCount);
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             // Generate values around the baseline for realism
             double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
             double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
             double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
-                    Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.CHOLESTEROL, cholesterol);
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.WHITE_BLOOD_CELLS, whiteCells);
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.RED_BLOOD_CELLS, redCells);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
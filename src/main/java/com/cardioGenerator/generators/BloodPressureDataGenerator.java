@@ -1,16 +1,26 @@
 package com.cardioGenerator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.cardioGenerator.outputs.OutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
     public BloodPressureDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /** Creates a generator whose baselines and variations are the same for every run with the same seed.
+     * @param patientCount - the total amount of patients.
+     * @param seed - the seed of the patients' random sources.
+     */
+    public BloodPressureDataGenerator(int patientCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
         lastSystolicValues = new int[patientCount + 1];
         lastDiastolicValues = new int[patientCount + 1];
 
@@ -19,11 +29,13 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
             lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
             lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
         }
+        randoms = PatientRandoms.split(random, patientCount);
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
             int diastolicVariation = random.nextInt(5) - 2;
             int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
@@ -34,10 +46,10 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
             lastSystolicValues[patientId] = newSystolicValue;
             lastDiastolicValues[patientId] = newDiastolicValue;
 
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
-                    Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
-                    Double.toString(newDiastolicValue));
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.SYSTOLIC_PRESSURE,
+                    newSystolicValue);
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.DIASTOLIC_PRESSURE,
+                    newDiastolicValue);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
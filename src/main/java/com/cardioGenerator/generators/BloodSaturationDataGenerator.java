@@ -1,15 +1,16 @@
 package com.cardioGenerator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.cardioGenerator.outputs.OutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
  /**This class generates simulated blood saturation for patients in a health monitoring system where each patient is initialized with a slightly randomized healthy baseline.
  * The generator maintains the last known saturation value for each patient and introduces small variations on each call to simulate real-time monitoring.
  * 
  * @author Oleksandr Trutenko
  */
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
     private int[] lastSaturationValues;
     /** Constructs a new blood saturation data generator.
      *  Initialize each patient a baseline from 95 to 100 %.
@@ -17,12 +18,22 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     */
 
     public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+    /** Constructs a blood saturation data generator whose baselines and variations are the same
+     *  for every run with the same seed.
+     * @param patientCount - the total amount of patients.
+     * @param seed - the seed of the patients' random sources.
+    */
+    public BloodSaturationDataGenerator(int patientCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
             lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
         }
+        randoms = PatientRandoms.split(random, patientCount);
     }
     /**Generates a blood saturation value for specific patient and outputs it using a giving output strategy.
      * Saturation level ranges over time and are clamped between 90% and 100%.
@@ -36,14 +47,14 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
             // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+            int variation = randoms[patientId].nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
             int newSaturationValue = lastSaturationValues[patientId] + variation;
 
             // Ensure the saturation stays within a realistic and healthy range
             newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
             lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
-                    Double.toString(newSaturationValue) + "%");
+            // the value is a percentage; it is sent as a plain number so consumers can parse it directly
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.SATURATION, newSaturationValue);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
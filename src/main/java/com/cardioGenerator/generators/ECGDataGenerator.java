@@ -1,15 +1,25 @@
 package com.cardioGenerator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import com.cardioGenerator.outputs.OutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
 
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
     public ECGDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /** Creates a generator whose random variations are the same for every run with the same seed.
+     * @param patientCount - the total amount of patients.
+     * @param seed - the seed of the patients' random sources.
+     */
+    public ECGDataGenerator(int patientCount, long seed) {
+        randoms = PatientRandoms.split(new SplittableRandom(seed), patientCount);
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
@@ -22,7 +32,7 @@ public class ECGDataGenerator implements PatientDataGenerator {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
             double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
+            outputStrategy.output(patientId, System.currentTimeMillis(), SampleType.ECG, ecgValue);
             lastEcgValues[patientId] = ecgValue;
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
@@ -32,6 +42,7 @@ public class ECGDataGenerator implements PatientDataGenerator {
 
     private double simulateEcgWaveform(int patientId, double lastEcgValue) {
         // Simplified ECG waveform generation based on sinusoids
+        SplittableRandom random = randoms[patientId];
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
         double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
@@ -0,0 +1,38 @@
+package com.cardioGenerator.generators;
+
+import java.util.SplittableRandom;
+
+/**Creates the random sources of a generator, one per patient.
+ * Each patient gets its own {@link SplittableRandom} split from a root seeded generator,
+ * so threads generating different patients never share random state, and the values of
+ * every patient are the same on every run with the same seed, whatever thread generates them.
+ *
+ * @author Oleksandr Trutenko
+ */
+final class PatientRandoms {
+
+    private PatientRandoms() {
+    }
+
+    /**Returns a seed for generators that are not given one.
+     *
+     * @return a seed that differs between runs.
+     */
+    static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**Splits one random source per patient off the root.
+     *
+     * @param root - the seeded root source.
+     * @param patientCount - the total amount of patients; patient IDs start at 1.
+     * @return the sources, indexed by patient ID.
+     */
+    static SplittableRandom[] split(SplittableRandom root, int patientCount) {
+        SplittableRandom[] randoms = new SplittableRandom[patientCount + 1];
+        for (int i = 1; i <= patientCount; i++) {
+            randoms[i] = root.split();
+        }
+        return randoms;
+    }
+}
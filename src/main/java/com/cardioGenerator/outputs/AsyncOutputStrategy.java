@@ -0,0 +1,299 @@
+package com.cardioGenerator.outputs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/** Decorator that decouples data generation from a slow output.
+ * Calls to {@link #output} put the event in a bounded lock-free ring buffer and return;
+ * a dedicated consumer thread takes events out in batches and passes them to the
+ * wrapped strategy, in the order each producer thread added them.
+ *
+ * When the buffer is full the {@link BackpressurePolicy} decides what happens: the
+ * producer waits, the oldest buffered event is dropped, or the new event is dropped.
+ * The queue depth and the number of dropped events can be read at any time.
+ *
+ * Numeric values are buffered as primitives and handed to the wrapped strategy's numeric
+ * {@code output}, so a producer never formats a number; only a text output does, on the
+ * consumer thread.
+ *
+ * The ring buffer follows Dmitry Vyukov's bounded queue: each slot carries a sequence
+ * number that tells producers and consumers whether it is free or filled, so neither
+ * side takes a lock.
+ *
+ * @author Oleksandr Trutenko
+ */
+public class AsyncOutputStrategy implements OutputStrategy, AutoCloseable {
+
+    /** What {@link #output} does when the buffer is full. */
+    public enum BackpressurePolicy {
+        /** Wait until the consumer has made room. */
+        BLOCK,
+        /** Drop the oldest buffered event to make room for the new one. */
+        DROP_OLDEST,
+        /** Drop the new event. */
+        DROP_NEWEST
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FULL_PARK_NANOS = 50_000;
+
+    private final OutputStrategy delegate;
+    private final BackpressurePolicy policy;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final String[] labels;
+    private final String[] values;
+    private final double[] numbers;
+    private final boolean[] numeric;
+    private final SampleType[] types;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final Thread consumer;
+    private volatile boolean consumerIdle;
+    private volatile boolean closed;
+
+    /** Creates an asynchronous output with a buffer of 65536 events that blocks when full.
+     *
+     * @param delegate - the strategy that receives the events.
+     */
+    public AsyncOutputStrategy(OutputStrategy delegate) {
+        this(delegate, 1 << 16, BackpressurePolicy.BLOCK);
+    }
+
+    /** Creates an asynchronous output.
+     *
+     * @param delegate - the strategy that receives the events.
+     * @param capacity - the number of events the buffer holds, rounded up to a power of two.
+     * @param policy - what to do when the buffer is full.
+     */
+    public AsyncOutputStrategy(OutputStrategy delegate, int capacity, BackpressurePolicy policy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.delegate = delegate;
+        this.policy = policy;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.patientIds = new int[size];
+        this.timestamps = new long[size];
+        this.labels = new String[size];
+        this.values = new String[size];
+        this.numbers = new double[size];
+        this.numeric = new boolean[size];
+        this.types = new SampleType[size];
+        this.consumer = new Thread(this::drainLoop, "async-output");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        enqueue(patientId, timestamp, label, null, data, 0, false);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        enqueue(patientId, timestamp, label, null, null, value, true);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, SampleType type, double value) {
+        enqueue(patientId, timestamp, null, type, null, value, true);
+    }
+
+    private void enqueue(int patientId, long timestamp, String label, SampleType type, String data, double number,
+                         boolean isNumber) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                while (!offer(patientId, timestamp, label, type, data, number, isNumber)) {
+                    if (closed) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                    LockSupport.unpark(consumer);
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!offer(patientId, timestamp, label, type, data, number, isNumber)) {
+                    if (poll(false)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+                if (!offer(patientId, timestamp, label, type, data, number, isNumber)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown policy " + policy);
+        }
+        if (consumerIdle) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private boolean offer(int patientId, long timestamp, String label, SampleType type, String value,
+                          double number, boolean isNumber) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    patientIds[slot] = patientId;
+                    timestamps[slot] = timestamp;
+                    labels[slot] = label;
+                    types[slot] = type;
+                    values[slot] = value;
+                    numbers[slot] = number;
+                    numeric[slot] = isNumber;
+                    // publishes the fields to the consumer
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /** Takes the oldest event out of the buffer and passes it on or discards it.
+     *
+     * @return false if the buffer was empty.
+     */
+    private boolean poll(boolean deliver) {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    int patientId = patientIds[slot];
+                    long timestamp = timestamps[slot];
+                    String label = labels[slot];
+                    SampleType type = types[slot];
+                    String value = values[slot];
+                    double number = numbers[slot];
+                    boolean isNumber = numeric[slot];
+                    labels[slot] = null;
+                    types[slot] = null;
+                    values[slot] = null;
+                    // hands the slot back to producers
+                    sequences.set(slot, position + mask + 1);
+                    if (deliver) {
+                        deliver(patientId, timestamp, label, type, value, number, isNumber);
+                    }
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    private void deliver(int patientId, long timestamp, String label, SampleType type, String value,
+                         double number, boolean isNumber) {
+        try {
+            if (type != null) {
+                delegate.output(patientId, timestamp, type, number);
+            } else if (isNumber) {
+                delegate.output(patientId, timestamp, label, number);
+            } else {
+                delegate.output(patientId, timestamp, label, value);
+            }
+            delivered.incrementAndGet();
+        } catch (RuntimeException e) {
+            String name = type != null ? type.getLabel() : label;
+            System.err.println("Error in output of " + name + " data for patient " + patientId + ": " + e.getMessage());
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            int batch = 0;
+            while (batch < BATCH_SIZE && poll(true)) {
+                batch++;
+            }
+            if (batch > 0) {
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            consumerIdle = true;
+            if (getQueueDepth() == 0 && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            consumerIdle = false;
+        }
+    }
+
+    /** Returns the number of events waiting in the buffer.
+     *
+     * @return the current queue depth.
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /** Returns the number of events dropped because the buffer was full or the output was closed.
+     *
+     * @return the number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Returns the number of events passed to the wrapped strategy.
+     *
+     * @return the number of delivered events.
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** Stops accepting events, delivers the buffered ones and closes the wrapped
+     * strategy if it can be closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // events from producers that passed the closed check just before close
+        while (poll(true)) {
+            // delivered by poll
+        }
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                System.err.println("Error closing output: " + e.getMessage());
+            }
+        }
+    }
+}
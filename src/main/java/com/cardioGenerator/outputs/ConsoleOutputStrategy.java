@@ -5,4 +5,15 @@ public class ConsoleOutputStrategy implements OutputStrategy {
     public void output(int patientId, long timestamp, String label, String data) {
         System.out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
     }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        // same line as above, without parsing a format string for every sample
+        StringBuilder line = new StringBuilder(80)
+                .append("Patient ID: ").append(patientId)
+                .append(", Timestamp: ").append(timestamp)
+                .append(", Label: ").append(label)
+                .append(", Data: ").append(value);
+        System.out.println(line);
+    }
 }
@@ -2,34 +2,79 @@ package com.cardioGenerator.outputs; //no underscores in package names
 
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 /** This class writes a patient data to different text files for each data category.
- * Each category is stored in its own file with patient ID, timestamp and value. 
+ * Each category is stored in its own file with patient ID, timestamp and value.
  * Files are created under specific base directory.
- * 
+ *
+ * Each file is opened once and kept open. Lines are buffered per label and written
+ * when the buffer reaches a size limit, and at a fixed interval by a background thread,
+ * so data is never more than one interval old on disk. Many threads may write the same
+ * label at once. Buffered lines are written by {@link #close()}, which also runs from
+ * a shutdown hook when the JVM exits. Lines output during or after {@link #close()}, or
+ * for a label whose file cannot be opened, are dropped and counted, see
+ * {@link #getDroppedCount()}; a file opened while the output closes is closed again.
+ *
  * @author Oleksandr Trutenko
  */
 
-public class FileOutputStrategy implements OutputStrategy {         //class name should be UpperCamelCase
+public class FileOutputStrategy implements OutputStrategy, AutoCloseable {         //class name should be UpperCamelCase
+
+    private static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
 
     private String baseDirectory;   //variable must be lowerCamelCase
+    private final int flushBytes;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook = new Thread(this::close, "file-output-shutdown");
+    private volatile boolean closed;
+    private final AtomicLong dropped = new AtomicLong();
 
-    public final ConcurrentHashMap<String, String> fileMap = new ConcurrentHashMap<>();   //it should be lowerCamelCase
-     /** Creates a file output strategy for the given directory. 
-     * 
+    public final ConcurrentHashMap<String, LabelFile> fileMap = new ConcurrentHashMap<>();   //it should be lowerCamelCase
+     /** Creates a file output strategy for the given directory that writes its buffers
+     * every 64 KiB or every second.
+     *
      * @param baseDirectory - the directory where the output files will be saved.
      */
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+     /** Creates a file output strategy with custom flush limits.
+     *
+     * @param baseDirectory - the directory where the output files will be saved.
+     * @param flushBytes - the buffered size of one label that triggers a write.
+     * @param flushIntervalMillis - the longest time a line stays buffered.
+     */
+    public FileOutputStrategy(String baseDirectory, int flushBytes, long flushIntervalMillis) {
+        if (flushBytes <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush limits must be positive");
+        }
         this.baseDirectory = baseDirectory; //no space between
+        this.flushBytes = flushBytes;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "file-output-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
     /** Adds patient data to a file associated with the data label.
-     *  Each line is appended in a specific format: 
+     *  Each line is appended in a specific format:
      * patient ID, timestamp, label, data.
-     * 
+     *
      * @param patientID - a unique identification of a patient.
      * @param timestamp - the timestamp of data.
      * @param label - the type of data to output.
@@ -37,30 +82,169 @@ public class FileOutputStrategy implements OutputStrategy {         //class name
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        LabelFile file = fileFor(patientId, label);
+        //4.5.1 The primary goal for line wrapping is to have clear code, not necessarily code that fits in the smallest number of lines.
+        if (file != null && !file.append(patientId, timestamp, label, data, flushBytes)) {
+            drop(patientId, label);
+        }
+    }
+    /** Adds a numeric value in the same format, writing the digits straight into the label's buffer.
+     *
+     * @param patientId - a unique identification of a patient.
+     * @param timestamp - the timestamp of data.
+     * @param label - the type of data to output.
+     * @param value - the measured value.
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        LabelFile file = fileFor(patientId, label);
+        if (file != null && !file.append(patientId, timestamp, label, value, flushBytes)) {
+            drop(patientId, label);
+        }
+    }
+
+    private LabelFile fileFor(int patientId, String label) {
+        if (closed) {
+            drop(patientId, label);
+            return null;
+        }
+        LabelFile file;
         try {
-            // Create the directory
+            file = fileMap.computeIfAbsent(label, this::open);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            dropped.incrementAndGet();
+            return null;
+        }
+        if (closed) {
+            // close() may have gone over the files before this one was added; close() sets the
+            // flag first, so either it sees the file or this thread sees the flag
+            file.close();
+        }
+        return file;
+    }
+
+    private void drop(int patientId, String label) {
+        dropped.incrementAndGet();
+        System.err.println("Output is closed, dropping " + label + " data for patient " + patientId);
+    }
+
+    private LabelFile open(String label) {
+        Path path = Paths.get(baseDirectory, label + ".txt");
+        try {
+            // Create the directory once per label instead of once per line
             Files.createDirectories(Paths.get(baseDirectory));
+            return new LabelFile(path, FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND));
         } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
+            throw new IllegalStateException("Error opening file " + path + ": " + e.getMessage(), e);
+        }
+    }
+    /** Writes the buffered lines of every label to disk. */
+    public void flush() {
+        for (LabelFile file : fileMap.values()) {
+            file.flush();
+        }
+    }
+    /** Returns the number of lines dropped because the output was closed or a file could not be opened.
+     *
+     * @return the number of dropped lines.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    /** Writes the buffered lines and closes all files. Called by the shutdown hook at exit. */
+    @Override
+    public void close() {
+        if (closed) {
             return;
         }
-        // Set the FilePath variable
-        //lowerCamelCase
-        //4.5.1 The primary goal for line wrapping is to have clear code, not necessarily code that fits in the smallest number of lines.
-        String filePath = fileMap.computeIfAbsent(label, k ->
-                Paths.get(baseDirectory, label + ".txt").toString());
-
-        // Write the data to the file
-        try (
-                PrintWriter out = new PrintWriter(
-                        Files.newBufferedWriter(Paths.get(filePath),
-                                StandardOpenOption.CREATE,
-                                StandardOpenOption.APPEND)))
-        {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
-                    patientId, timestamp, label, data);      //4.5.1 where to break to avoid much text on a line
-        } catch (Exception e) {
-            System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+        closed = true;
+        flusher.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already running as the shutdown hook
+        }
+        for (LabelFile file : fileMap.values()) {
+            file.close();
+        }
+    }
+
+    /** An open file of one label with its buffered lines. */
+    public static final class LabelFile {
+        private final Path path;
+        private final FileChannel channel;
+        private final StringBuilder pending = new StringBuilder();
+        private boolean closed;
+
+        LabelFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /** Buffers a line; returns false, keeping nothing, if the file is closed. */
+        synchronized boolean append(int patientId, long timestamp, String label, String data, int flushBytes) {
+            if (closed) {
+                return false;
+            }
+            appendPrefix(patientId, timestamp, label).append(data).append(System.lineSeparator());
+            flushIfFull(flushBytes);
+            return true;
+        }
+
+        synchronized boolean append(int patientId, long timestamp, String label, double value, int flushBytes) {
+            if (closed) {
+                return false;
+            }
+            appendPrefix(patientId, timestamp, label).append(value).append(System.lineSeparator());
+            flushIfFull(flushBytes);
+            return true;
+        }
+
+        private StringBuilder appendPrefix(int patientId, long timestamp, String label) {
+            return pending.append("Patient ID: ").append(patientId)
+                    .append(", Timestamp: ").append(timestamp)
+                    .append(", Label: ").append(label)
+                    .append(", Data: ");
+        }
+
+        private void flushIfFull(int flushBytes) {
+            if (pending.length() >= flushBytes) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (pending.length() == 0 || !channel.isOpen()) {
+                return;
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pending));
+            pending.setLength(0);
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + path + ": " + e.getMessage());
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + path + ": " + e.getMessage());
+            }
         }
     }
 }
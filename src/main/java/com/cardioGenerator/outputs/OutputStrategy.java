@@ -12,4 +12,27 @@ public interface OutputStrategy {
      * @param data - The actual data as a string.
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /** Outputs a numeric health data report for a specific patient.
+     * Generators call this for measurements so the value is only turned into text by
+     * outputs that need text; by default it is formatted with {@link Double#toString(double)}.
+     * @param patientId - identificator of a patient.
+     * @param timestamp - The time the data was generated.
+     * @param label - A label to describe a type of data.
+     * @param value - The measured value.
+     */
+    default void output(int patientId, long timestamp, String label, double value) {
+        output(patientId, timestamp, label, Double.toString(value));
+    }
+
+    /** Outputs a typed numeric health data report for a specific patient.
+     * This is what the generators use; by default it is written with the label of the type.
+     * @param patientId - identificator of a patient.
+     * @param timestamp - The time the data was generated.
+     * @param type - The type of the sample.
+     * @param value - The measured value.
+     */
+    default void output(int patientId, long timestamp, SampleType type, double value) {
+        output(patientId, timestamp, type.getLabel(), value);
+    }
 }
@@ -0,0 +1,29 @@
+package com.cardioGenerator.outputs;
+/**Types of numeric samples produced by the generators, each with the label used in text outputs.
+ * Passing the type instead of a label string lets an output encode a sample without
+ * looking at or copying the label.
+ *
+ * @author Oleksandr Trutenko
+ */
+public enum SampleType {
+    ECG("ECG"),
+    SATURATION("Saturation"),
+    SYSTOLIC_PRESSURE("SystolicPressure"),
+    DIASTOLIC_PRESSURE("DiastolicPressure"),
+    CHOLESTEROL("Cholesterol"),
+    WHITE_BLOOD_CELLS("WhiteBloodCells"),
+    RED_BLOOD_CELLS("RedBloodCells");
+
+    private final String label;
+
+    SampleType(String label) {
+        this.label = label;
+    }
+
+    /** Returns the label of this type in text outputs, e.g. "SystolicPressure".
+     * @return the label.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
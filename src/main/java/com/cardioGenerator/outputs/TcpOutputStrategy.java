@@ -1,61 +1,356 @@
 package com.cardioGenerator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 /**This class is used for creating of a TCP output. It implements OutputStrategy interface.
- * This application starts a server socket and waits for a client to connect.
- * If connected, shows the outputed data of a patient in a specific format:
- * 
+ * This application starts a server socket and accepts any number of clients.
+ * Every connected client receives the outputed data of a patient in a specific format:
+ *
  * Patient ID, timestamp, label and data.
+ *
+ * One selector thread accepts clients and writes to them; generator threads never touch
+ * a socket. Each line is encoded once and copied into a bounded outbound buffer per
+ * client, and the selector thread writes everything a client has buffered in one call,
+ * so many lines share one system call. A client that reads too slowly to keep its buffer
+ * from filling up is handled by the {@link SlowClientPolicy}: its new lines are dropped,
+ * or it is disconnected.
+ *
  * @author Oleksandr Trutenko
- * 
+ *
  */
-public class TcpOutputStrategy implements OutputStrategy {
+public class TcpOutputStrategy implements OutputStrategy, AutoCloseable {
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
-    /**Starts a TCP server socket on the given port and wait for a client connection.
-     * 
+    /** What happens to a client whose outbound buffer is full. */
+    public enum SlowClientPolicy {
+        /** Drop the lines that do not fit; the client stays connected and misses them. */
+        DROP,
+        /** Disconnect the client, so it knows it missed data and can reconnect. */
+        DISCONNECT
+    }
+
+    private static final int DEFAULT_CLIENT_BUFFER_BYTES = 1 << 20;
+    private static final ThreadLocal<LineEncoder> ENCODERS = ThreadLocal.withInitial(LineEncoder::new);
+
+    private final int clientBufferBytes;
+    private final SlowClientPolicy policy;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Queue<Client> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final AtomicLong disconnectedClients = new AtomicLong();
+    private final ByteBuffer discard = ByteBuffer.allocate(1024);
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean closed;
+
+    /**Starts a TCP server on the given port that buffers up to 1 MiB per client and
+     * disconnects clients that fall further behind.
+     *
      * @param port - The TCP port to listen on.
      */
     public TcpOutputStrategy(int port) {
+        this(port, DEFAULT_CLIENT_BUFFER_BYTES, SlowClientPolicy.DISCONNECT);
+    }
+    /**Starts a TCP server on the given port.
+     *
+     * @param port - The TCP port to listen on, or 0 for any free port.
+     * @param clientBufferBytes - how many bytes may wait for one client.
+     * @param policy - what to do with a client whose buffer is full.
+     */
+    public TcpOutputStrategy(int port, int clientBufferBytes, SlowClientPolicy policy) {
+        if (clientBufferBytes <= 0) {
+            throw new IllegalArgumentException("Client buffer size must be positive");
+        }
+        this.clientBufferBytes = clientBufferBytes;
+        this.policy = policy;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("TCP Server started on port " + getPort());
+
+            // Accept and write to clients in a new thread to not block the generators
+            Thread selectorThread = new Thread(this::selectLoop, "tcp-output");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-    /**Sends a patient data line to a connected client via TCP.
-     * It only sends output if the client is connected and ready. 
-     * 
+    /**Sends a patient data line to all connected clients via TCP.
+     * It only sends output if a client is connected.
+     *
      * @param patientID - patient identification.
      * @param timestamp - timestamp of the data.
      * @param label - data label.
      * @param data - actual data value.
-     * 
+     *
      * @return a formated data via TCP.
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clients.isEmpty()) {
+            return;
+        }
+        LineEncoder encoder = ENCODERS.get();
+        encoder.line.append(patientId).append(',').append(timestamp)
+                .append(',').append(label).append(',').append(data);
+        send(encoder);
+    }
+    /**Sends a numeric patient data line in the same format, appending the value directly.
+     *
+     * @param patientId - patient identification.
+     * @param timestamp - timestamp of the data.
+     * @param label - data label.
+     * @param value - the measured value.
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        LineEncoder encoder = ENCODERS.get();
+        encoder.line.append(patientId).append(',').append(timestamp)
+                .append(',').append(label).append(',').append(value);
+        send(encoder);
+    }
+
+    private void send(LineEncoder encoder) {
+        ByteBuffer bytes = encoder.encode();
+        for (Client client : clients) {
+            switch (client.offer(bytes)) {
+                case QUEUED_FIRST:
+                    pendingWrites.add(client);
+                    selector.wakeup();
+                    break;
+                case FULL:
+                    if (policy == SlowClientPolicy.DISCONNECT) {
+                        disconnect(client);
+                    }
+                    droppedLines.incrementAndGet();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    if (key.isReadable()) {
+                        read((Client) key.attachment());
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write((Client) key.attachment());
+                    }
+                }
+                Client client;
+                while ((client = pendingWrites.poll()) != null) {
+                    write(client);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            Client client = new Client(channel, clientBufferBytes);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            System.out.println("Client connected: " + channel.getRemoteAddress());
+        } catch (IOException e) {
+            System.err.println("Error accepting TCP client: " + e.getMessage());
+        }
+    }
+
+    /** Clients send nothing; reading only notices when one has gone away. */
+    private void read(Client client) {
+        try {
+            discard.clear();
+            if (client.channel.read(discard) < 0) {
+                disconnect(client);
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    /** Writes what the client has buffered, and asks to be told when it can take more if not all of it fit. */
+    private void write(Client client) {
+        try {
+            boolean drained = client.write();
+            if (client.key.isValid()) {
+                client.key.interestOps(SelectionKey.OP_READ | (drained ? 0 : SelectionKey.OP_WRITE));
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (clients.remove(client)) {
+            disconnectedClients.incrementAndGet();
+            try {
+                client.channel.close();
+            } catch (IOException e) {
+                // already gone
+            }
+        }
+    }
+    /**Returns the port the server listens on.
+     *
+     * @return the local port, or -1 if the server could not be started.
+     */
+    public int getPort() {
+        return serverChannel != null && serverChannel.socket().isBound() ? serverChannel.socket().getLocalPort() : -1;
+    }
+    /**Returns the number of connected clients.
+     *
+     * @return the number of clients.
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+    /**Returns how many lines could not be buffered for a client because its buffer was full.
+     *
+     * @return the number of dropped lines, counted once per client.
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+    /**Returns how many clients were disconnected, because they were too slow or their connection failed.
+     *
+     * @return the number of disconnected clients.
+     */
+    public long getDisconnectedClients() {
+        return disconnectedClients.get();
+    }
+    /** Stops accepting clients and closes all connections. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Client client : clients) {
+            clients.remove(client);
+            try {
+                client.channel.close();
+            } catch (IOException e) {
+                // already gone
+            }
+        }
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Result of buffering a line for one client. */
+    private enum Offer { QUEUED, QUEUED_FIRST, FULL }
+
+    /** A connected client and the bytes waiting to be written to it. */
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer outbound;
+        SelectionKey key;
+
+        Client(SocketChannel channel, int capacity) {
+            this.channel = channel;
+            this.outbound = ByteBuffer.allocate(capacity);
+        }
+
+        /** Copies a whole line into the buffer, or nothing if it does not fit. */
+        synchronized Offer offer(ByteBuffer line) {
+            if (line.remaining() > outbound.remaining()) {
+                return Offer.FULL;
+            }
+            boolean wasEmpty = outbound.position() == 0;
+            outbound.put(line.array(), line.position(), line.remaining());
+            return wasEmpty ? Offer.QUEUED_FIRST : Offer.QUEUED;
+        }
+
+        /** Writes as much as the socket takes; returns true if nothing is left. */
+        synchronized boolean write() throws IOException {
+            outbound.flip();
+            try {
+                channel.write(outbound);
+            } finally {
+                outbound.compact();
+            }
+            return outbound.position() == 0;
+        }
+    }
+
+    /** Builds one line per thread and encodes it without creating a string. */
+    private static final class LineEncoder {
+        private static final String NEWLINE = System.lineSeparator();
+
+        final StringBuilder line = new StringBuilder(64);
+        private ByteBuffer bytes = ByteBuffer.allocate(256);
+
+        ByteBuffer encode() {
+            line.append(NEWLINE);
+            int length = line.length();
+            if (bytes.capacity() < length * 3) {
+                bytes = ByteBuffer.allocate(length * 3);
+            }
+            bytes.clear();
+            for (int i = 0; i < length; i++) {
+                char c = line.charAt(i);
+                if (c >= 0x80) {
+                    // rare non-ASCII text: let the charset handle it
+                    bytes.clear();
+                    bytes.put(line.toString().getBytes(StandardCharsets.UTF_8));
+                    break;
+                }
+                bytes.put((byte) c);
+            }
+            line.setLength(0);
+            bytes.flip();
+            return bytes;
         }
     }
 }
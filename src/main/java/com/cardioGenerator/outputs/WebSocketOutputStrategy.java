@@ -1,42 +1,567 @@
 package com.cardioGenerator.outputs;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+/**Broadcasts patient data to all connected WebSocket clients.
+ * Each sample is one text line in the order {@code WebSocketPatientClient} reads:
+ * patient ID, value, label, timestamp. Numeric samples are appended to the line as
+ * they are, so the value is formatted once and can be parsed back directly.
+ *
+ * Clients that ask for the {@value #BINARY_PROTOCOL} subprotocol in their handshake get
+ * numeric samples as binary messages instead. All numbers are little-endian; a message
+ * starts with a kind byte:
+ * <ul>
+ *     <li>{@value #SAMPLES}: samples, each an {@code int} patient ID, a {@code short} type code,
+ *     a {@code double} value and a {@code long} timestamp, 22 bytes in total.</li>
+ *     <li>{@value #TYPES}: type definitions, each a {@code short} type code, a {@code short}
+ *     name length and the UTF-8 name.</li>
+ * </ul>
+ * A client receives the definitions of all known types when it connects, and the
+ * definition of a new type before its first sample. Text data such as alerts has no
+ * binary form and is only sent to text clients. Clients without the subprotocol keep
+ * receiving text.
+ *
+ * A server created with a history size keeps the most recent numeric samples in a bounded
+ * history. A client that reconnects after losing its connection can send the timestamp it
+ * wants to resume from in the {@value #REPLAY_HEADER} handshake header; it is then sent
+ * every sample of the history from that time on, in its own format, before any new sample.
+ * The replay is encoded and sent outside the lock the generators take, so they are not held
+ * up by it. Text data is not kept. Without a history, which is the default, samples are not
+ * even encoded while no client is connected.
+ *
+ * By default every sample is sent as its own message. In batching mode samples are
+ * collected and sent as one message of newline-separated lines, or of packed binary
+ * samples, when a batch holds the configured number of samples, or when it is older
+ * than the configured interval. A message is encoded once and broadcast to all
+ * connections of its kind. A full batch is swapped out under the lock and queued; it is
+ * encoded and broadcast after the lock is released, by whichever thread gets to send
+ * first, so a generator is not held up by another one's sending. Messages leave the
+ * queue in the order they were queued, each to the connections open when it was queued.
+ *
+ * @author Oleksandr Trutenko
+ */
+public class WebSocketOutputStrategy implements OutputStrategy, AutoCloseable {
 
-public class WebSocketOutputStrategy implements OutputStrategy {
+    /** The subprotocol a client requests to receive binary samples. */
+    public static final String BINARY_PROTOCOL = "patient-samples-binary-v1";
+    /** Kind byte of a binary message holding samples. */
+    public static final byte SAMPLES = 0;
+    /** Kind byte of a binary message holding type definitions. */
+    public static final byte TYPES = 1;
+    /** Size of one sample in a binary message. */
+    public static final int SAMPLE_BYTES = Integer.BYTES + Short.BYTES + Double.BYTES + Long.BYTES;
+    /** The handshake header holding the timestamp from which a reconnecting client wants samples replayed. */
+    public static final String REPLAY_HEADER = "X-Patient-Replay-Since";
 
-    private WebSocketServer server;
+    private static final int REPLAY_CHUNK_RECORDS = 1024;
 
+    private SimpleWebSocketServer server;
+    private final int batchRecords;
+    private final Object batchLock = new Object();
+    private StringBuilder batch = new StringBuilder();
+    private int batchCount;
+    private ByteBuffer binaryBatch;
+    private int binaryBatchCount;
+    private final Map<String, Short> typeCodes = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private final Set<WebSocket> textConnections = ConcurrentHashMap.newKeySet();
+    private final Set<WebSocket> binaryConnections = ConcurrentHashMap.newKeySet();
+    private final Queue<Outgoing> outgoing = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final int historyCapacity;
+    private final int[] historyPatientIds;
+    private final short[] historyCodes;
+    private final double[] historyValues;
+    private final long[] historyTimestamps;
+    private int historyHead;
+    private int historySize;
+    /** The number of samples ever recorded, so a position in the history survives it wrapping around. */
+    private long historyEnd;
+
+    /**Starts a WebSocket server that sends every sample as its own message.
+     * @param port - the port to listen on.
+     */
     public WebSocketOutputStrategy(int port) {
+        this(port, 1, 0);
+    }
+
+    /**Starts a WebSocket server that sends samples in batches, without a history for replay.
+     * @param port - the port to listen on.
+     * @param batchRecords - the most samples in one message; 1 sends every sample on its own.
+     * @param batchMillis - the longest time a sample waits for its batch to fill up.
+     */
+    public WebSocketOutputStrategy(int port, int batchRecords, long batchMillis) {
+        this(port, batchRecords, batchMillis, 0);
+    }
+
+    /**Starts a WebSocket server that sends samples in batches and keeps a history for replay.
+     * @param port - the port to listen on.
+     * @param batchRecords - the most samples in one message; 1 sends every sample on its own.
+     * @param batchMillis - the longest time a sample waits for its batch to fill up.
+     * @param historyRecords - the number of recent samples kept for reconnecting clients; 0 keeps none.
+     */
+    public WebSocketOutputStrategy(int port, int batchRecords, long batchMillis, int historyRecords) {
+        if (batchRecords <= 0 || (batchRecords > 1 && batchMillis <= 0) || historyRecords < 0) {
+            throw new IllegalArgumentException("Batch size and interval must be positive, history not negative");
+        }
+        this.batchRecords = batchRecords;
+        this.historyCapacity = historyRecords;
+        this.historyPatientIds = new int[historyRecords];
+        this.historyCodes = new short[historyRecords];
+        this.historyValues = new double[historyRecords];
+        this.historyTimestamps = new long[historyRecords];
+        this.binaryBatch = newBinaryBatch();
+        // the generators' types get fixed codes, other labels are numbered as they appear
+        for (SampleType type : SampleType.values()) {
+            typeCode(type.getLabel());
+        }
         server = new SimpleWebSocketServer(new InetSocketAddress(port));
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        // clients may connect as soon as the constructor returns
+        try {
+            server.started.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (batchRecords > 1) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "websocket-output-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, batchMillis, batchMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (textConnections.isEmpty()) {
+            return;
         }
+        synchronized (batchLock) {
+            startLine().append(patientId).append(',').append(data)
+                    .append(',').append(label).append(',').append(timestamp);
+            endLine();
+        }
+        send();
     }
 
-    private static class SimpleWebSocketServer extends WebSocketServer {
+    @Override
+    public void output(int patientId, long timestamp, String label, double value) {
+        if (historyCapacity == 0 && textConnections.isEmpty() && binaryConnections.isEmpty()) {
+            return;
+        }
+        synchronized (batchLock) {
+            short code = typeCode(label);
+            record(patientId, timestamp, code, value);
+            if (!binaryConnections.isEmpty()) {
+                appendBinary(patientId, timestamp, code, value);
+            }
+            if (!textConnections.isEmpty()) {
+                startLine().append(patientId).append(',').append(value)
+                        .append(',').append(label).append(',').append(timestamp);
+                endLine();
+            }
+        }
+        send();
+    }
 
-        public SimpleWebSocketServer(InetSocketAddress address) {
-            super(address);
+    @Override
+    public void output(int patientId, long timestamp, SampleType type, double value) {
+        // the codes of the sample types are their ordinals, see the constructor
+        if (historyCapacity == 0 && textConnections.isEmpty() && binaryConnections.isEmpty()) {
+            return;
+        }
+        synchronized (batchLock) {
+            record(patientId, timestamp, (short) type.ordinal(), value);
+            if (!binaryConnections.isEmpty()) {
+                appendBinary(patientId, timestamp, (short) type.ordinal(), value);
+            }
+            if (!textConnections.isEmpty()) {
+                startLine().append(patientId).append(',').append(value)
+                        .append(',').append(type.getLabel()).append(',').append(timestamp);
+                endLine();
+            }
+        }
+        send();
+    }
+
+    /** Keeps a sample in the history, replacing the oldest one when it is full. Called with the batch lock held. */
+    private void record(int patientId, long timestamp, short code, double value) {
+        if (historyCapacity == 0) {
+            return;
+        }
+        int index = (historyHead + historySize) % historyCapacity;
+        if (historySize == historyCapacity) {
+            historyHead = (historyHead + 1) % historyCapacity;
+        } else {
+            historySize++;
+        }
+        historyPatientIds[index] = patientId;
+        historyCodes[index] = code;
+        historyValues[index] = value;
+        historyTimestamps[index] = timestamp;
+        historyEnd++;
+    }
+
+    /** Samples copied out of the history, so they can be sent without holding the batch lock. */
+    private static final class HistoryCopy {
+        final int[] patientIds;
+        final short[] codes;
+        final double[] values;
+        final long[] timestamps;
+        /** The history position after the last sample looked at. */
+        final long end;
+
+        HistoryCopy(int size, long end) {
+            patientIds = new int[size];
+            codes = new short[size];
+            values = new double[size];
+            timestamps = new long[size];
+            this.end = end;
+        }
+    }
+
+    /**
+     * Copies the samples recorded from a history position on whose timestamp is at least
+     * {@code since}. Samples the history no longer holds are skipped. Called with the batch lock held.
+     */
+    private HistoryCopy copyHistory(long from, long since) {
+        long oldest = historyEnd - historySize;
+        int skip = (int) (Math.max(from, oldest) - oldest);
+        int count = 0;
+        for (int i = skip; i < historySize; i++) {
+            if (historyTimestamps[(historyHead + i) % historyCapacity] >= since) {
+                count++;
+            }
+        }
+        HistoryCopy copy = new HistoryCopy(count, historyEnd);
+        int n = 0;
+        for (int i = skip; i < historySize; i++) {
+            int index = (historyHead + i) % historyCapacity;
+            if (historyTimestamps[index] >= since) {
+                copy.patientIds[n] = historyPatientIds[index];
+                copy.codes[n] = historyCodes[index];
+                copy.values[n] = historyValues[index];
+                copy.timestamps[n] = historyTimestamps[index];
+                n++;
+            }
+        }
+        return copy;
+    }
+
+    /** Encodes copied samples in chunks and queues them for one client. */
+    private static void replay(WebSocket conn, boolean binary, HistoryCopy copy, List<String> names) {
+        StringBuilder lines = new StringBuilder();
+        ByteBuffer samples = ByteBuffer.allocate(1 + REPLAY_CHUNK_RECORDS * SAMPLE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        samples.put(SAMPLES);
+        int chunk = 0;
+        for (int i = 0; i < copy.timestamps.length; i++) {
+            if (binary) {
+                samples.putInt(copy.patientIds[i]).putShort(copy.codes[i])
+                        .putDouble(copy.values[i]).putLong(copy.timestamps[i]);
+            } else {
+                if (chunk > 0) {
+                    lines.append('\n');
+                }
+                lines.append(copy.patientIds[i]).append(',').append(copy.values[i])
+                        .append(',').append(names.get(copy.codes[i])).append(',').append(copy.timestamps[i]);
+            }
+            if (++chunk == REPLAY_CHUNK_RECORDS) {
+                sendReplay(conn, binary, lines, samples);
+                chunk = 0;
+            }
+        }
+        if (chunk > 0) {
+            sendReplay(conn, binary, lines, samples);
+        }
+    }
+
+    private static void sendReplay(WebSocket conn, boolean binary, StringBuilder lines, ByteBuffer samples) {
+        if (binary) {
+            samples.flip();
+            conn.send(samples);
+            samples.clear();
+            samples.put(SAMPLES);
+        } else {
+            conn.send(lines.toString());
+            lines.setLength(0);
+        }
+    }
+
+    private StringBuilder startLine() {
+        if (batchCount > 0) {
+            batch.append('\n');
+        }
+        return batch;
+    }
+
+    private void endLine() {
+        if (++batchCount >= batchRecords) {
+            queueBatches();
+        }
+    }
+
+    private void appendBinary(int patientId, long timestamp, short code, double value) {
+        binaryBatch.putInt(patientId).putShort(code).putDouble(value).putLong(timestamp);
+        if (++binaryBatchCount >= batchRecords) {
+            queueBatches();
+        }
+    }
+
+    private ByteBuffer newBinaryBatch() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + batchRecords * SAMPLE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(SAMPLES);
+        return buffer;
+    }
+
+    /** Returns the code of a label, defining it for binary clients on first use. Called with the batch lock held. */
+    private short typeCode(String label) {
+        Short code = typeCodes.get(label);
+        if (code != null) {
+            return code;
+        }
+        if (typeNames.size() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many data labels for the binary protocol");
+        }
+        // samples already batched must not wait behind the definition
+        queueBatches();
+        short newCode = (short) typeNames.size();
+        typeCodes.put(label, newCode);
+        typeNames.add(label);
+        if (!binaryConnections.isEmpty()) {
+            outgoing.add(new Outgoing(typeDefinitions(newCode, newCode + 1), binaryConnections));
+        }
+        return newCode;
+    }
+
+    private ByteBuffer typeDefinitions(int from, int to) {
+        List<byte[]> names = new ArrayList<>();
+        int size = 1;
+        for (int code = from; code < to; code++) {
+            byte[] name = typeNames.get(code).getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += 2 * Short.BYTES + name.length;
+        }
+        ByteBuffer message = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        message.put(TYPES);
+        for (int code = from; code < to; code++) {
+            byte[] name = names.get(code - from);
+            message.putShort((short) code).putShort((short) name.length).put(name);
+        }
+        message.flip();
+        return message;
+    }
+
+    /** A message waiting to be sent, with the connections that were open when it was queued. */
+    private static final class Outgoing {
+        /** A {@code CharSequence} for text connections or a {@code ByteBuffer} for binary ones. */
+        final Object message;
+        final List<WebSocket> connections;
+
+        Outgoing(Object message, Set<WebSocket> connections) {
+            this.message = message;
+            this.connections = new ArrayList<>(connections);
+        }
+    }
+
+    /**
+     * Swaps the samples collected so far out of the batches and queues them as one message per
+     * kind of connection. Called with the batch lock held; the batches are encoded when they are sent.
+     */
+    private void queueBatches() {
+        if (batchCount > 0) {
+            if (!textConnections.isEmpty()) {
+                outgoing.add(new Outgoing(batch, textConnections));
+                batch = new StringBuilder(batch.capacity());
+            } else {
+                batch.setLength(0);
+            }
+            batchCount = 0;
+        }
+        if (binaryBatchCount > 0) {
+            if (!binaryConnections.isEmpty()) {
+                binaryBatch.flip();
+                outgoing.add(new Outgoing(binaryBatch, binaryConnections));
+                binaryBatch = newBinaryBatch();
+            } else {
+                binaryBatch.clear();
+                binaryBatch.put(SAMPLES);
+            }
+            binaryBatchCount = 0;
+        }
+    }
+
+    /**
+     * Sends the queued messages unless another thread already is, in which case that thread
+     * sends them too. Called without the batch lock.
+     */
+    private void send() {
+        // a message queued while the sending thread lets go of the lock is picked up by the next round
+        while (!outgoing.isEmpty() && sendLock.tryLock()) {
+            try {
+                sendQueued();
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    /** Broadcasts the queued messages in order. Called with the send lock held. */
+    private void sendQueued() {
+        Outgoing next;
+        while ((next = outgoing.poll()) != null) {
+            // one frame for all connections, built once
+            if (next.message instanceof ByteBuffer) {
+                server.broadcast((ByteBuffer) next.message, next.connections);
+            } else {
+                server.broadcast(next.message.toString(), next.connections);
+            }
+        }
+    }
+
+    /** Sends the samples collected so far as one message per kind of connection, and waits until they are sent. */
+    public void flush() {
+        synchronized (batchLock) {
+            queueBatches();
+        }
+        sendLock.lock();
+        try {
+            sendQueued();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**Returns the number of clients currently connected.
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        return textConnections.size() + binaryConnections.size();
+    }
+
+    /**Returns the number of connected clients that receive binary messages.
+     * @return the number of binary connections.
+     */
+    public int getBinaryConnectionCount() {
+        return binaryConnections.size();
+    }
+
+    /** Sends the pending batch, closes all connections and stops the server. */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+        try {
+            server.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class SimpleWebSocketServer extends WebSocketServer {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        SimpleWebSocketServer(InetSocketAddress address) {
+            // offers the binary subprotocol; the empty protocol accepts clients that ask for none
+            super(address, Collections.<Draft>singletonList(new Draft_6455(Collections.emptyList(),
+                    List.<IProtocol>of(new Protocol(BINARY_PROTOCOL), new Protocol("")))));
         }
 
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
+            boolean binary = BINARY_PROTOCOL.equals(conn.getProtocol().getProvidedProtocol());
+            long since = Long.MIN_VALUE;
+            if (handshake.hasFieldValue(REPLAY_HEADER)) {
+                try {
+                    since = Long.parseLong(handshake.getFieldValue(REPLAY_HEADER).trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring invalid " + REPLAY_HEADER + " header from "
+                            + conn.getRemoteSocketAddress());
+                }
+            }
+            HistoryCopy earlier;
+            List<String> names;
+            int knownTypes;
+            synchronized (batchLock) {
+                knownTypes = typeNames.size();
+                if (binary) {
+                    // the client must know every code before it gets samples
+                    conn.send(typeDefinitions(0, knownTypes));
+                }
+                if (since == Long.MIN_VALUE || historyCapacity == 0) {
+                    addConnection(conn, binary);
+                    return;
+                }
+                earlier = copyHistory(0, since);
+                names = binary ? null : new ArrayList<>(typeNames);
+            }
+            // the bulk of the replay is encoded without holding up the generators
+            replay(conn, binary, earlier, names);
+            synchronized (batchLock) {
+                // the pending batch goes to the other clients now, and to this one with the rest of the replay
+                queueBatches();
+                if (binary && typeNames.size() > knownTypes) {
+                    conn.send(typeDefinitions(knownTypes, typeNames.size()));
+                }
+                HistoryCopy later = copyHistory(earlier.end, since);
+                replay(conn, binary, later, typeNames);
+                // from now on the client gets live samples, after everything replayed
+                addConnection(conn, binary);
+                System.out.println("Replayed " + (earlier.timestamps.length + later.timestamps.length)
+                        + " samples since " + since + " to " + conn.getRemoteSocketAddress());
+            }
+            send();
+        }
+
+        private void addConnection(WebSocket conn, boolean binary) {
+            if (!conn.isOpen()) {
+                // closed during the replay; onClose has already run
+                return;
+            }
+            if (binary) {
+                binaryConnections.add(conn);
+            } else {
+                textConnections.add(conn);
+            }
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            textConnections.remove(conn);
+            binaryConnections.remove(conn);
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
         }
 
@@ -48,11 +573,16 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         @Override
         public void onError(WebSocket conn, Exception ex) {
             ex.printStackTrace();
+            if (conn == null) {
+                // the server itself failed, e.g. the port is taken
+                started.countDown();
+            }
         }
 
         @Override
         public void onStart() {
             System.out.println("Server started successfully");
+            started.countDown();
         }
     }
 }
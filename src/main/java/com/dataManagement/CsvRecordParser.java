@@ -0,0 +1,326 @@
+package com.dataManagement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses patient CSV data straight from a byte buffer, either read from a stream or
+ * supplied by the caller (e.g. a memory-mapped region of a file).
+ *
+ * The header line decides which column holds {@code patientId}, {@code measurementValue},
+ * {@code recordType} and {@code timestamp}, as before. Data rows are scanned byte by byte:
+ * numbers are parsed in place and record types are resolved to their
+ * {@link RecordTypeTable} code through a {@link RecordTypeCache}, so a row does not
+ * create any intermediate strings or arrays.
+ * Fields are trimmed like {@link String#trim()} and blank lines are skipped.
+ *
+ * Errors are reported the same way as the previous {@code split}-based reader: a bad
+ * number throws {@link NumberFormatException} and a missing column throws
+ * {@link ArrayIndexOutOfBoundsException}.
+ */
+class CsvRecordParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Receives each parsed row.
+     */
+    interface RowHandler {
+        void accept(int patientId, double measurementValue, int typeCode, long timestamp);
+    }
+
+    private final InputStream in;
+    private final RecordTypeCache recordTypes = new RecordTypeCache();
+    private byte[] buffer;
+    private ByteBuffer data;
+
+    private int patientIdIdx = -1;
+    private int measurementValueIdx = -1;
+    private int recordTypeIdx = -1;
+    private int timestampIdx = -1;
+    private boolean headerRead;
+
+    /**
+     * Creates a parser that reads the header and the rows from a stream with {@link #parse}.
+     *
+     * @param in the stream to read
+     */
+    CsvRecordParser(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates a parser for rows supplied with {@link #parseLines}, using a header line
+     * read separately.
+     *
+     * @param headerLine the CSV header line
+     */
+    CsvRecordParser(String headerLine) {
+        this.in = null;
+        readHeader(headerLine);
+        headerRead = true;
+    }
+
+    /**
+     * Reads the whole stream and passes every data row to the handler.
+     *
+     * @param handler receives the parsed rows
+     * @throws IOException if the stream cannot be read
+     */
+    void parse(RowHandler handler) throws IOException {
+        buffer = new byte[BUFFER_SIZE];
+        data = ByteBuffer.wrap(buffer);
+        int start = 0;
+        int limit = 0;
+        boolean eof = false;
+        while (true) {
+            int newline = -1;
+            for (int i = start; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0) {
+                if (eof) {
+                    if (start < limit) {
+                        handleLine(start, limit, handler);
+                    }
+                    return;
+                }
+                // move the partial line to the front and refill
+                int remaining = limit - start;
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, remaining);
+                } else if (remaining == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    data = ByteBuffer.wrap(buffer);
+                }
+                start = 0;
+                limit = remaining;
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                }
+                continue;
+            }
+            handleLine(start, newline, handler);
+            start = newline + 1;
+        }
+    }
+
+    /**
+     * Parses the data rows in {@code region[from, to)}. The region must start at the
+     * beginning of a line; its last line may end without a line break.
+     *
+     * @param region  the bytes to parse, read with absolute gets only
+     * @param from    the index of the first byte
+     * @param to      the index after the last byte
+     * @param handler receives the parsed rows
+     * @return false if the thread was interrupted before the end of the region; the
+     *         interrupt status is cleared and the remaining lines are not parsed
+     */
+    boolean parseLines(ByteBuffer region, int from, int to, RowHandler handler) {
+        data = region;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (region.get(i) == '\n') {
+                if (Thread.interrupted()) {
+                    return false;
+                }
+                handleLine(start, i, handler);
+                start = i + 1;
+            }
+        }
+        if (start < to) {
+            handleLine(start, to, handler);
+        }
+        return true;
+    }
+
+    private void handleLine(int from, int to, RowHandler handler) {
+        if (to > from && data.get(to - 1) == '\r') {
+            to--;
+        }
+        if (!headerRead) {
+            readHeader(text(from, to));
+            headerRead = true;
+            return;
+        }
+        if (isBlank(from, to)) {
+            return;
+        }
+        int patientId = 0;
+        double measurementValue = 0;
+        int typeCode = -1;
+        long timestamp = 0;
+        int found = 0;
+        int column = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && data.get(i) != ',') {
+                continue;
+            }
+            if (column == patientIdIdx) {
+                patientId = parseInt(fieldStart, i);
+                found++;
+            } else if (column == measurementValueIdx) {
+                measurementValue = parseDouble(fieldStart, i);
+                found++;
+            } else if (column == recordTypeIdx) {
+                typeCode = parseRecordType(fieldStart, i);
+                found++;
+            } else if (column == timestampIdx) {
+                timestamp = parseLong(fieldStart, i);
+                found++;
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+        if (found < 4) {
+            throw new ArrayIndexOutOfBoundsException("Row has " + column + " columns, expected patientId, "
+                    + "measurementValue, recordType and timestamp");
+        }
+        handler.accept(patientId, measurementValue, typeCode, timestamp);
+    }
+
+    private void readHeader(String headerLine) {
+        String[] header = headerLine.split(",");
+        for (int i = 0; i < header.length; i++) {
+            String h = header[i].trim();
+            if ("patientId".equals(h)) {
+                patientIdIdx = i;
+            } else if ("measurementValue".equals(h)) {
+                measurementValueIdx = i;
+            } else if ("recordType".equals(h)) {
+                recordTypeIdx = i;
+            } else if ("timestamp".equals(h)) {
+                timestampIdx = i;
+            }
+        }
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((data.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int parseRecordType(int from, int to) {
+        while (from < to && (data.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (data.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return recordTypes.lookup(data, from, to);
+    }
+
+    private int parseInt(int from, int to) {
+        long value = parseLong(from, to);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + text(from, to) + "\"");
+        }
+        return (int) value;
+    }
+
+    private long parseLong(int from, int to) {
+        int start = from;
+        int end = to;
+        while (start < end && (data.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (data.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data.get(i) == '-' || data.get(i) == '+')) {
+            negative = data.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            // empty, or long enough to overflow: let the JDK decide
+            return Long.parseLong(text(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = data.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + text(start, end) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses plain decimals such as {@code 97.5} exactly, without allocating: the digits are
+     * read into a long mantissa, which is divided by a power of ten. When both are exactly
+     * representable the division is correctly rounded, so the result equals
+     * {@link Double#parseDouble}. Anything else (exponents, very long mantissas, NaN, ...)
+     * falls back to {@link Double#parseDouble}.
+     */
+    private double parseDouble(int from, int to) {
+        int start = from;
+        int end = to;
+        while (start < end && (data.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (data.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data.get(i) == '-' || data.get(i) == '+')) {
+            negative = data.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = data.get(i);
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return Double.parseDouble(text(start, end));
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(text(start, end));
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text(start, end));
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private String text(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
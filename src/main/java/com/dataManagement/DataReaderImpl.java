@@ -1,14 +1,12 @@
 package com.dataManagement;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.InputStream;
 
 public class DataReaderImpl implements DataReader{
+    private static final int BATCH_SIZE = 8192;
 
     private File filepath;
 
@@ -26,40 +24,29 @@ public class DataReaderImpl implements DataReader{
         }
         processFile(filepath, dataStorage);
     }
+    /**
+     * Parses the CSV file with a {@link CsvRecordParser} and adds the rows to the storage
+     * in batches of {@value #BATCH_SIZE}. The header line decides the column order.
+     */
     private void processFile(File file, DataStorage dataStorage) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        String headerLine = br.readLine();
-        if (headerLine == null) {
-            br.close();
-            return;
+        PatientDataBatch batch = new PatientDataBatch(BATCH_SIZE);
+        try (InputStream in = new FileInputStream(file)) {
+            new CsvRecordParser(in).parse((patientId, measurementValue, typeCode, timestamp) -> {
+                batch.add(patientId, measurementValue, typeCode, timestamp);
+                if (batch.size() == BATCH_SIZE) {
+                    dataStorage.addPatientData(batch);
+                    batch.clear();
+                }
+            });
         }
-        String[] header = headerLine.split(",");
-        int patientIdIdx = -1;
-        int measurementValueIdx = -1;
-        int recordTypeIdx = -1;
-        int timestampIdx = -1;
-        for (int i = 0; i < header.length; i++) {
-            String h = header[i].trim();
-            if ("patientId".equals(h)) {
-                patientIdIdx = i;
-            } else if ("measurementValue".equals(h)) {
-                measurementValueIdx = i;
-            } else if ("recordType".equals(h)) {
-                recordTypeIdx = i;
-            } else if ("timestamp".equals(h)) {
-                timestampIdx = i;
-            }
+        if (!batch.isEmpty()) {
+            dataStorage.addPatientData(batch);
         }
-        String line;
-        while ((line = br.readLine()) != null) {
-            String[] sections = line.split(",", -1);
-            int patientId = Integer.parseInt(sections[patientIdIdx].trim());
-            double measurementValue = Double.parseDouble(sections[measurementValueIdx].trim());
-            String recordType = sections[recordTypeIdx].trim();
-            long timestamp = Long.parseLong(sections[timestampIdx].trim());
-
-            dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-        }
-        br.close();
+    }
+    /**
+     * Nothing to release: the file is opened and closed within {@link #readData}.
+     */
+    @Override
+    public void stopReading() throws IOException {
     }
 }
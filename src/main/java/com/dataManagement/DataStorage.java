@@ -5,9 +5,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.xml.crypto.Data;
 
+import com.alerts.AlertEvaluationScheduler;
 import com.alerts.AlertGenerator;
 
 /**
@@ -22,12 +24,13 @@ public class DataStorage {
      */
     private ConcurrentHashMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
     private static DataStorage instance; // Static field to hold the single instance of the class
+    private final List<PatientDataListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
-     * Private constructor prevents instantiation from outside the class
+     * Creates an empty storage. Application code should use {@link #getInstance()};
+     * separate instances are useful for tests and tools that need an isolated store.
      */
-
-    private DataStorage() {
+    public DataStorage() {
         this.patientMap = new ConcurrentHashMap<>();
     }
     
@@ -46,7 +49,8 @@ public class DataStorage {
      * Adds or updates patient data in the storage.
      * If the patient does not exist, a new Patient object is created and added to the storage.
      * Otherwise, the new data is added to the existing patient's records.
-     * This method is synchronized to prevent concurrent modifications.
+     * Patients are created atomically with {@code computeIfAbsent}, and only writers
+     * for the same patient are serialized, so ingestion runs in parallel across patients.
      *
      * @param patientId        the unique identifier of the patient
      * @param measurementValue the value of the health metric being recorded
@@ -55,18 +59,88 @@ public class DataStorage {
      * @param timestamp        the time at which the measurement was taken, in
      *                         milliseconds since the Unix epoch
      */
-    public synchronized void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+    public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        Patient patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        if (listeners.isEmpty()) {
+            patient.addRecord(measurementValue, recordType, timestamp);
+            return;
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        synchronized (patient) {
+            patient.addRecord(measurementValue, recordType, timestamp);
+            for (PatientDataListener listener : listeners) {
+                listener.onPatientData(patientId, measurementValue, recordType, timestamp);
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of readings to the storage.
+     * Rows are grouped by patient, keeping the batch order within each patient; each
+     * patient is then looked up once and its rows are appended under a single lock,
+     * instead of one lookup and one lock per reading. Listeners are notified of every
+     * row, as with {@link #addPatientData(int, double, String, long)}.
+     * The batch is left unchanged and can be cleared and reused by the caller.
+     *
+     * @param batch the readings to add
+     */
+    public void addPatientData(PatientDataBatch batch) {
+        int size = batch.size();
+        long[] order = batch.groupByPatient();
+        int from = 0;
+        while (from < size) {
+            int patientId = PatientDataBatch.patientIdOf(order[from]);
+            int to = from + 1;
+            while (to < size && PatientDataBatch.patientIdOf(order[to]) == patientId) {
+                to++;
+            }
+            Patient patient = patientMap.computeIfAbsent(patientId, Patient::new);
+            if (listeners.isEmpty()) {
+                patient.addRecords(batch, order, from, to);
+            } else {
+                synchronized (patient) {
+                    patient.addRecords(batch, order, from, to);
+                    notifyListeners(batch, order, from, to);
+                }
+            }
+            from = to;
+        }
+    }
+
+    private void notifyListeners(PatientDataBatch batch, long[] order, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int index = PatientDataBatch.indexOf(order[i]);
+            String recordType = RecordTypeTable.nameOf(batch.typeCodeAt(index));
+            for (PatientDataListener listener : listeners) {
+                listener.onPatientData(batch.patientIdAt(index), batch.valueAt(index), recordType,
+                        batch.timestampAt(index));
+            }
+        }
+    }
+
+    /**
+     * Registers a listener that is notified of every reading added from now on.
+     * Notifications for one patient are delivered in storage order while that
+     * patient is locked, so listeners can keep per-patient state without locking.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(PatientDataListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener previously registered with {@link #addListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(PatientDataListener listener) {
+        listeners.remove(listener);
     }
 
     /**
      * Retrieves a list of PatientRecord objects for a specific patient, filtered by
      * a time range.
+     * Reading does not lock and never blocks concurrent ingestion.
      *
      * @param patientId the unique identifier of the patient whose records are to be
      *                  retrieved
@@ -77,7 +151,7 @@ public class DataStorage {
      * @return a list of PatientRecord objects that fall within the specified time
      *         range
      */
-    public synchronized List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+    public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
         Patient patient = patientMap.get(patientId);
         if (patient != null) {
             return patient.getRecords(startTime, endTime);
@@ -85,12 +159,26 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Returns the patient with the given ID, or null if there is none.
+     */
+    Patient getPatient(int patientId) {
+        return patientMap.get(patientId);
+    }
+
+    /**
+     * Returns the patient with the given ID, creating it if there is none.
+     */
+    Patient getOrCreatePatient(int patientId) {
+        return patientMap.computeIfAbsent(patientId, Patient::new);
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
      * @return a list of all patients
      */
-    public synchronized List<Patient> getAllPatients() {
+    public List<Patient> getAllPatients() {
         return new ArrayList<>(patientMap.values());
     }
 
@@ -122,9 +210,11 @@ public class DataStorage {
         // Initialize the AlertGenerator with the storage
         AlertGenerator alertGenerator = new AlertGenerator(storage);
 
-        // Evaluate all patients' data to check for conditions that may trigger alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
+        // Evaluate all patients' data in parallel to check for conditions that may trigger alerts
+        try (AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(alertGenerator)) {
+            System.out.println(scheduler.evaluateAll(storage.getAllPatients()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -0,0 +1,232 @@
+package com.dataManagement;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bit-level compression of one time series, as described for Facebook's Gorilla store.
+ *
+ * The first sample is stored in full. Each following timestamp is stored as the
+ * difference between its delta and the previous delta (delta-of-delta), which is zero
+ * for regularly sampled data and then takes a single bit. Each following value is
+ * XORed with the previous one; an unchanged value takes a single bit, otherwise only
+ * the meaningful bits of the XOR are stored, reusing the previous leading/trailing zero
+ * window when it fits.
+ */
+final class GorillaCodec {
+    private GorillaCodec() {
+    }
+
+    /**
+     * Encodes samples that are ordered by timestamp.
+     *
+     * @param timestamps the timestamps
+     * @param values     the values
+     * @param from       the index of the first sample
+     * @param to         the index after the last sample
+     * @return the encoded bytes
+     */
+    static byte[] encode(long[] timestamps, double[] values, int from, int to) {
+        BitWriter out = new BitWriter(Math.max(16, (to - from) * 2));
+        if (from >= to) {
+            return out.toByteArray();
+        }
+        long previousTimestamp = timestamps[from];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[from]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        out.write(previousTimestamp, 64);
+        out.write(previousBits, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            long deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            if (xor == 0) {
+                out.write(0, 1);
+            } else {
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    out.write(0b10, 2);
+                    out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int meaningful = 64 - leading - trailing;
+                    out.write(0b11, 2);
+                    out.write(leading, 5);
+                    out.write(meaningful - 1, 6);
+                    out.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousBits = bits;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes {@code count} samples written by {@link #encode}.
+     *
+     * @param in         the encoded bytes, read from the current position up to the limit
+     * @param count      the number of samples
+     * @param timestamps receives the timestamps, from index 0
+     * @param values     receives the values, from index 0
+     */
+    static void decode(ByteBuffer in, int count, long[] timestamps, double[] values) {
+        if (count == 0) {
+            return;
+        }
+        BitReader bits = new BitReader(in);
+        long timestamp = bits.read(64);
+        long delta = 0;
+        long valueBits = bits.read(64);
+        int leading = 0;
+        int trailing = 0;
+        timestamps[0] = timestamp;
+        values[0] = Double.longBitsToDouble(valueBits);
+        for (int i = 1; i < count; i++) {
+            if (bits.read(1) != 0) {
+                if (bits.read(1) == 0) {
+                    delta += bits.readSigned(7);
+                } else if (bits.read(1) == 0) {
+                    delta += bits.readSigned(9);
+                } else if (bits.read(1) == 0) {
+                    delta += bits.readSigned(12);
+                } else {
+                    delta += bits.read(64);
+                }
+            }
+            timestamp += delta;
+            timestamps[i] = timestamp;
+
+            if (bits.read(1) != 0) {
+                if (bits.read(1) != 0) {
+                    leading = (int) bits.read(5);
+                    int meaningful = (int) bits.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                valueBits ^= bits.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(valueBits);
+        }
+    }
+
+    /**
+     * Appends bits, most significant first, to a growable byte array.
+     */
+    private static final class BitWriter {
+        private byte[] bytes;
+        private int length;
+        private long current;
+        private int bits;
+
+        BitWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        /**
+         * Writes the low {@code n} bits of {@code value}, 1 to 64 bits.
+         */
+        void write(long value, int n) {
+            if (n == 64) {
+                write(value >>> 32, 32);
+                write(value, 32);
+                return;
+            }
+            value &= (1L << n) - 1;
+            int free = 64 - bits;
+            if (n < free) {
+                current = (current << n) | value;
+                bits += n;
+            } else {
+                int rest = n - free;
+                current = (current << free) | (value >>> rest);
+                putLong(current);
+                current = value & ((1L << rest) - 1);
+                bits = rest;
+            }
+        }
+
+        private void putLong(long word) {
+            ensureCapacity(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (word >>> shift);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        /**
+         * Returns the bits written so far, padded with zeros to a whole byte.
+         */
+        byte[] toByteArray() {
+            int tailBytes = (bits + 7) / 8;
+            ensureCapacity(tailBytes);
+            long aligned = bits == 0 ? 0 : current << (64 - bits);
+            for (int i = 0; i < tailBytes; i++) {
+                bytes[length + i] = (byte) (aligned >>> (56 - 8 * i));
+            }
+            return Arrays.copyOf(bytes, length + tailBytes);
+        }
+    }
+
+    /**
+     * Reads bits, most significant first, from a byte buffer.
+     */
+    private static final class BitReader {
+        private final ByteBuffer in;
+        private long window;
+        private int available;
+
+        BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads {@code n} bits, 1 to 64, as an unsigned number.
+         */
+        long read(int n) {
+            if (n > 56) {
+                long high = read(n - 32);
+                return (high << 32) | read(32);
+            }
+            while (available < n) {
+                window = (window << 8) | (in.get() & 0xFF);
+                available += 8;
+            }
+            available -= n;
+            return (window >>> available) & ((1L << n) - 1);
+        }
+
+        /**
+         * Reads {@code n} bits as a two's complement number.
+         */
+        long readSigned(int n) {
+            return (read(n) << (64 - n)) >> (64 - n);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.dataManagement;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue between the threads that receive readings, such as the read thread of a
+ * {@link WebSocketPatientClient}, and a {@link DataStorage}. Receivers only copy readings
+ * into the queue; drain threads take them out in batches and apply them with
+ * {@link DataStorage#addPatientData(PatientDataBatch)}, so a slow storage, e.g. one whose
+ * patients are locked by alert listeners, does not stop a socket from being read.
+ *
+ * Each drain thread owns one shard of the queue, and a patient always goes to the same
+ * shard, so the readings of a patient are applied in the order they were offered. Readings
+ * are held in primitive ring buffers; {@link #offer} and draining allocate nothing.
+ *
+ * When a shard is full, the {@link OverflowPolicy} decides what happens. The queue reports
+ * its depth, how long readings wait before they are applied, and how many were dropped
+ * or failed to be applied.
+ */
+public class IngestionQueue implements AutoCloseable {
+
+    /** What happens to a reading offered to a full queue. */
+    public enum OverflowPolicy {
+        /** Wait until the drain thread has made room; nothing is lost, but the receiver stalls. */
+        BLOCK,
+        /** Drop the new reading. */
+        DROP_NEWEST,
+        /** Drop the oldest waiting reading to make room for the new one. */
+        DROP_OLDEST
+    }
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_DRAIN_BATCH = 4096;
+
+    private final DataStorage storage;
+    private final OverflowPolicy policy;
+    private final Shard[] shards;
+    private final Thread[] drainThreads;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a queue of 65536 readings with one drain thread that blocks receivers when full.
+     *
+     * @param storage the storage the readings are applied to
+     */
+    public IngestionQueue(DataStorage storage) {
+        this(storage, DEFAULT_CAPACITY, 1, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a queue and starts its drain threads.
+     *
+     * @param storage      the storage the readings are applied to
+     * @param capacity     the most readings that may wait, split evenly among the drain threads
+     * @param drainThreads the number of threads applying readings to the storage
+     * @param policy       what to do with readings offered while the queue is full
+     * @throws IllegalArgumentException if {@code capacity} is smaller than {@code drainThreads},
+     *                                  or {@code drainThreads} is not positive
+     */
+    public IngestionQueue(DataStorage storage, int capacity, int drainThreads, OverflowPolicy policy) {
+        if (drainThreads <= 0 || capacity < drainThreads) {
+            throw new IllegalArgumentException("Capacity must be at least the number of drain threads, "
+                    + "which must be positive: " + capacity + ", " + drainThreads);
+        }
+        this.storage = storage;
+        this.policy = policy;
+        this.shards = new Shard[drainThreads];
+        this.drainThreads = new Thread[drainThreads];
+        for (int i = 0; i < drainThreads; i++) {
+            Shard shard = new Shard(capacity / drainThreads);
+            int number = i + 1;
+            shards[i] = shard;
+            Thread thread = new Thread(() -> drain(shard), "ingestion-drain-" + number);
+            thread.setDaemon(true);
+            this.drainThreads[i] = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Offers one reading.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param typeCode         the record type code from {@link RecordTypeTable#codeOf(String)}
+     * @param timestamp        the time of the reading, in milliseconds since UNIX epoch
+     * @return false if the reading was dropped, because the queue was full or closed
+     */
+    public boolean offer(int patientId, double measurementValue, int typeCode, long timestamp) {
+        Shard shard = shardOf(patientId);
+        long now = System.nanoTime();
+        synchronized (shard) {
+            return put(shard, patientId, measurementValue, typeCode, timestamp, now);
+        }
+    }
+
+    /**
+     * Offers all readings of a batch. The batch is left unchanged and can be cleared and
+     * reused by the caller.
+     *
+     * @param batch the readings to offer
+     * @return the number of readings dropped, because the queue was full or closed
+     */
+    public int offer(PatientDataBatch batch) {
+        int size = batch.size();
+        long now = System.nanoTime();
+        int droppedCount = 0;
+        // one lock per shard and batch, not per reading
+        for (int s = 0; s < shards.length; s++) {
+            Shard shard = shards[s];
+            synchronized (shard) {
+                for (int i = 0; i < size; i++) {
+                    int patientId = batch.patientIdAt(i);
+                    if (shards.length > 1 && shardIndexOf(patientId) != s) {
+                        continue;
+                    }
+                    if (!put(shard, patientId, batch.valueAt(i), batch.typeCodeAt(i), batch.timestampAt(i), now)) {
+                        droppedCount++;
+                    }
+                }
+            }
+        }
+        return droppedCount;
+    }
+
+    /**
+     * Offers all readings of a batch if the queue has room for all of them right now.
+     * Never waits for a drain thread and never drops readings, whatever the overflow policy,
+     * so it can be called from a thread that must not stall. The batch is left unchanged.
+     *
+     * @param batch the readings to offer
+     * @return true if every reading was queued, false if none was because the queue did
+     *         not have room for all of them or is closed
+     */
+    public boolean tryOffer(PatientDataBatch batch) {
+        int[] needed = new int[shards.length];
+        for (int i = 0; i < batch.size(); i++) {
+            needed[shardIndexOf(batch.patientIdAt(i))]++;
+        }
+        return tryOffer(batch, needed, 0, System.nanoTime());
+    }
+
+    /** Locks the shards in index order, so the room checked for each one stays there. */
+    private boolean tryOffer(PatientDataBatch batch, int[] needed, int s, long now) {
+        if (s == shards.length) {
+            if (closed) {
+                return false;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                int patientId = batch.patientIdAt(i);
+                put(shardOf(patientId), patientId, batch.valueAt(i), batch.typeCodeAt(i), batch.timestampAt(i), now);
+            }
+            return true;
+        }
+        Shard shard = shards[s];
+        synchronized (shard) {
+            if (shard.capacity - shard.size < needed[s]) {
+                return false;
+            }
+            return tryOffer(batch, needed, s + 1, now);
+        }
+    }
+
+    private boolean put(Shard shard, int patientId, double value, int typeCode, long timestamp, long now) {
+        while (shard.size == shard.capacity && !closed) {
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                shard.head = (shard.head + 1) % shard.capacity;
+                shard.size--;
+                dropped.incrementAndGet();
+                break;
+            }
+            try {
+                shard.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int tail = (shard.head + shard.size) % shard.capacity;
+        shard.patientIds[tail] = patientId;
+        shard.values[tail] = value;
+        shard.typeCodes[tail] = typeCode;
+        shard.timestamps[tail] = timestamp;
+        shard.enqueuedNanos[tail] = now;
+        if (shard.size++ == 0) {
+            // the drain thread only waits while its shard is empty
+            shard.notifyAll();
+        }
+        return true;
+    }
+
+    private void drain(Shard shard) {
+        PatientDataBatch batch = new PatientDataBatch(Math.min(shard.capacity, MAX_DRAIN_BATCH));
+        while (true) {
+            long oldest;
+            synchronized (shard) {
+                while (shard.size == 0) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        shard.wait();
+                    } catch (InterruptedException e) {
+                        // only close() stops the drain thread, once the shard is empty
+                    }
+                }
+                boolean wasFull = shard.size == shard.capacity;
+                oldest = shard.enqueuedNanos[shard.head];
+                int count = Math.min(shard.size, MAX_DRAIN_BATCH);
+                for (int i = 0; i < count; i++) {
+                    int index = (shard.head + i) % shard.capacity;
+                    batch.add(shard.patientIds[index], shard.values[index], shard.typeCodes[index],
+                            shard.timestamps[index]);
+                }
+                shard.head = (shard.head + count) % shard.capacity;
+                shard.size -= count;
+                shard.inFlight = count;
+                if (wasFull) {
+                    // wake receivers blocked on a full shard
+                    shard.notifyAll();
+                }
+            }
+            try {
+                storage.addPatientData(batch);
+                applied.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                failed.addAndGet(batch.size());
+                System.err.println("Failed to apply " + batch.size() + " readings: " + e);
+            } finally {
+                maxLagNanos.accumulateAndGet(System.nanoTime() - oldest, Math::max);
+                batch.clear();
+                synchronized (shard) {
+                    shard.inFlight = 0;
+                    if (shard.size == 0) {
+                        // wake callers of awaitEmpty
+                        shard.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every reading offered so far has been applied to the storage.
+     *
+     * @param timeoutMillis the longest time to wait, in milliseconds
+     * @return true if the queue is empty, false if the time ran out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitEmpty(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                while (shard.size > 0 || shard.inFlight > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    shard.wait(remaining);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of readings waiting to be applied.
+     *
+     * @return the queue depth
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                depth += shard.size;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the most readings that may wait before the overflow policy applies.
+     *
+     * @return the capacity of all shards together
+     */
+    public int getCapacity() {
+        return shards[0].capacity * shards.length;
+    }
+
+    /**
+     * Returns how long the oldest waiting reading has been in the queue.
+     * A lag that keeps growing means the storage cannot keep up with the receivers.
+     *
+     * @return the current lag in milliseconds, 0 if the queue is empty
+     */
+    public long getLagMillis() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                if (shard.size > 0) {
+                    lag = Math.max(lag, now - shard.enqueuedNanos[shard.head]);
+                }
+            }
+        }
+        return lag / 1_000_000;
+    }
+
+    /**
+     * Returns the longest time a reading waited between being offered and being applied.
+     *
+     * @return the maximum lag so far, in milliseconds
+     */
+    public long getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Returns the number of readings applied to the storage so far.
+     *
+     * @return the number of applied readings
+     */
+    public long getAppliedSamples() {
+        return applied.get();
+    }
+
+    /**
+     * Returns the number of readings in batches the storage threw an exception for. Some of
+     * them may have been stored before the exception; none are counted as applied.
+     *
+     * @return the number of readings that failed to be applied
+     */
+    public long getFailedSamples() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of readings lost to the overflow policy, or offered after closing.
+     *
+     * @return the number of dropped readings
+     */
+    public long getDroppedSamples() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops accepting readings, applies the ones still waiting and stops the drain threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.notifyAll();
+            }
+        }
+        for (Thread thread : drainThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Shard shardOf(int patientId) {
+        return shards[shardIndexOf(patientId)];
+    }
+
+    private int shardIndexOf(int patientId) {
+        return Math.floorMod(patientId, shards.length);
+    }
+
+    /** One ring buffer of readings, drained by one thread. Guarded by its own monitor. */
+    private static final class Shard {
+        final int capacity;
+        final int[] patientIds;
+        final double[] values;
+        final int[] typeCodes;
+        final long[] timestamps;
+        final long[] enqueuedNanos;
+        int head;
+        int size;
+        int inFlight;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            patientIds = new int[capacity];
+            values = new double[capacity];
+            typeCodes = new int[capacity];
+            timestamps = new long[capacity];
+            enqueuedNanos = new long[capacity];
+        }
+    }
+}
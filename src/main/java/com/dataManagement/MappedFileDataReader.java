@@ -0,0 +1,260 @@
+package com.dataManagement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk-import implementation of {@link DataReader} for large CSV dumps, in the same
+ * format as read by {@link DataReaderImpl}.
+ *
+ * The file is memory-mapped with {@link FileChannel#map} and split into newline-aligned
+ * chunks that are parsed in parallel, one {@link CsvRecordParser} per chunk. Each chunk is
+ * split by patient into one shard per thread, and the shards are applied to the storage by
+ * the same threads: shard {@code s} of every chunk holds the same patients, and it is only
+ * applied once shard {@code s} of the chunk before is in the storage. Patients in different
+ * shards are stored in parallel, while readings of a patient that are in time order in the
+ * file are appended in time order, never inserted out of order.
+ * At most a few chunks per thread are in flight, which bounds memory use whatever the
+ * size of the file.
+ *
+ * {@link #stopReading()} ends an import in progress: {@link #readData} then throws an
+ * {@link IOException}, and chunks already applied to the storage stay there.
+ */
+public class MappedFileDataReader implements DataReader {
+    private static final long DEFAULT_CHUNK_SIZE = 32L * 1024 * 1024;
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final File filepath;
+    private final int threads;
+    private final long chunkSize;
+    private volatile ExecutorService executor;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a reader that uses one parsing thread per available processor.
+     *
+     * @param filepath the CSV file to import
+     */
+    public MappedFileDataReader(String filepath) {
+        this(filepath, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a reader with a custom number of parsing threads and chunk size.
+     *
+     * @param filepath  the CSV file to import
+     * @param threads   the number of parsing threads
+     * @param chunkSize the approximate number of bytes per chunk; chunks always end at a line break
+     * @throws IllegalArgumentException if {@code threads} or {@code chunkSize} is not positive,
+     *                                  or {@code chunkSize} does not fit in one mapping
+     */
+    public MappedFileDataReader(String filepath, int threads, long chunkSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.filepath = new File(filepath);
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        if (!filepath.exists()) {
+            throw new IOException(filepath + " does not exist");
+        }
+        if (!filepath.isFile()) {
+            throw new IOException("Not a file: " + filepath.getAbsolutePath());
+        }
+        try (FileChannel channel = FileChannel.open(filepath.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, size);
+            if (headerEnd == 0) {
+                return;
+            }
+            String headerLine = readHeader(channel, headerEnd);
+            importChunks(channel, headerLine, headerEnd, size, dataStorage);
+        }
+    }
+
+    private void importChunks(FileChannel channel, String headerLine, long start, long size,
+                              DataStorage dataStorage) throws IOException {
+        stopped = false;
+        executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<PatientDataBatch[]>> inFlight = new ArrayDeque<>();
+        // the last chunk's shard of each lane handed to the pool
+        Future<?>[] lanes = new Future<?>[threads];
+        try {
+            long position = start;
+            while (position < size) {
+                checkStopped();
+                long end = nextLineStart(channel, Math.min(position + chunkSize, size), size);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                inFlight.add(submit(() -> parseChunk(region, headerLine, threads)));
+                position = end;
+                if (inFlight.size() >= threads * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                    applyShards(await(inFlight.poll()), lanes, dataStorage);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                applyShards(await(inFlight.poll()), lanes, dataStorage);
+            }
+            for (Future<?> lane : lanes) {
+                if (lane != null) {
+                    await(lane);
+                }
+            }
+        } finally {
+            for (Future<PatientDataBatch[]> future : inFlight) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            try {
+                // no shard may reach the storage after readData has returned
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hands each shard of a chunk to the pool once the shard of the same lane from the
+     * previous chunk has been applied, so every patient's readings are stored in file order.
+     */
+    private void applyShards(PatientDataBatch[] shards, Future<?>[] lanes, DataStorage dataStorage)
+            throws IOException {
+        for (int lane = 0; lane < shards.length; lane++) {
+            if (lanes[lane] != null) {
+                await(lanes[lane]);
+            }
+            PatientDataBatch shard = shards[lane];
+            lanes[lane] = shard.isEmpty() ? null : submit(() -> {
+                dataStorage.addPatientData(shard);
+                return null;
+            });
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> task) throws IOException {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // stopReading shut the pool down
+            throw new IOException("Import stopped", e);
+        }
+    }
+
+    private static PatientDataBatch[] parseChunk(ByteBuffer region, String headerLine, int shardCount)
+            throws InterruptedException {
+        PatientDataBatch[] shards = new PatientDataBatch[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new PatientDataBatch(Math.max(16, region.capacity() / 32 / shardCount));
+        }
+        CsvRecordParser.RowHandler handler = (patientId, value, typeCode, timestamp) ->
+                shards[Math.floorMod(patientId, shardCount)].add(patientId, value, typeCode, timestamp);
+        if (!new CsvRecordParser(headerLine).parseLines(region, 0, region.capacity(), handler)) {
+            throw new InterruptedException("Chunk parsing interrupted");
+        }
+        return shards;
+    }
+
+    private void checkStopped() throws IOException {
+        if (stopped) {
+            throw new IOException("Import stopped");
+        }
+    }
+
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            T result = future.get();
+            checkStopped();
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (CancellationException e) {
+            throw new IOException("Import stopped", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw new IOException("Import stopped", cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to import chunk", cause);
+        }
+    }
+
+    /**
+     * Returns the offset just after the first line break at or after {@code from},
+     * or {@code size} if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static String readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if (headerEnd > Integer.MAX_VALUE) {
+            throw new IOException("Header line is too long");
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) headerEnd);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading until the whole header is in
+        }
+        String line = new String(header.array(), 0, header.position(), StandardCharsets.UTF_8);
+        return line.strip();
+    }
+
+    /**
+     * Stops an import in progress. Chunks being parsed are interrupted between lines and
+     * chunks not started yet are cancelled, so {@link #readData} returns promptly by
+     * throwing an {@link IOException}. Chunks already applied to the storage stay there.
+     */
+    @Override
+    public void stopReading() throws IOException {
+        stopped = true;
+        ExecutorService running = executor;
+        if (running != null) {
+            for (Runnable task : running.shutdownNow()) {
+                // tasks that never started would otherwise leave readData waiting on them forever
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+        }
+    }
+}
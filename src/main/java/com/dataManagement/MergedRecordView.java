@@ -0,0 +1,83 @@
+package com.dataManagement;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only list view that merges several {@link RecordSlice}s into one sequence
+ * ordered by timestamp. Records with equal timestamps keep the order of the slices.
+ *
+ * Iteration merges the slices on the fly. Random access through {@link #get(int)}
+ * merges them once into an array, which is then reused.
+ */
+class MergedRecordView extends AbstractList<PatientRecord> {
+    private final List<RecordSlice> slices;
+    private final int size;
+    private PatientRecord[] merged;
+
+    MergedRecordView(List<RecordSlice> slices) {
+        this.slices = slices;
+        int total = 0;
+        for (RecordSlice slice : slices) {
+            total += slice.size();
+        }
+        this.size = total;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (merged == null) {
+            PatientRecord[] records = new PatientRecord[size];
+            int i = 0;
+            for (PatientRecord record : this) {
+                records[i++] = record;
+            }
+            merged = records;
+        }
+        return merged[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<PatientRecord> iterator() {
+        return new Iterator<>() {
+            private final int[] positions = new int[slices.size()];
+            private int returned = 0;
+
+            @Override
+            public boolean hasNext() {
+                return returned < size;
+            }
+
+            @Override
+            public PatientRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int best = -1;
+                long bestTimestamp = Long.MAX_VALUE;
+                for (int s = 0; s < positions.length; s++) {
+                    RecordSlice slice = slices.get(s);
+                    if (positions[s] < slice.size()) {
+                        long timestamp = slice.timestampAt(positions[s]);
+                        if (best == -1 || timestamp < bestTimestamp) {
+                            best = s;
+                            bestTimestamp = timestamp;
+                        }
+                    }
+                }
+                returned++;
+                return slices.get(best).get(positions[best]++);
+            }
+        };
+    }
+}
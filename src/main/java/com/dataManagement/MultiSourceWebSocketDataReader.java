@@ -0,0 +1,443 @@
+package com.dataManagement;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dataManagement.IngestionQueue.OverflowPolicy;
+
+/**
+ * Implementation of DataReader that reads patient data from many WebSocket servers at once,
+ * e.g. one per bedside gateway, and merges all of them into one DataStorage.
+ *
+ * All connections share one {@link HttpClient} and one small thread pool: the client's
+ * selector thread does the socket I/O, and the pool decodes messages and runs the
+ * reconnect timers. The number of threads therefore does not grow with the number of
+ * sources. Messages are decoded by a {@link PatientMessageDecoder} per source, as text or,
+ * if the server agrees, as binary samples, and every message is handed to one shared
+ * {@link IngestionQueue} as a single batch. The pool never waits for the queue: while a
+ * queue with the {@link OverflowPolicy#BLOCK} policy is full, a source stops asking for
+ * messages and offers its batch again a little later, so the server's socket backs up
+ * instead, and the other sources and the reconnect timers keep running.
+ *
+ * Each source reconnects on its own. After a failed connection attempt or a lost
+ * connection, it waits according to a {@link ReconnectBackoff} schedule and tries again,
+ * until reading is stopped. The schedule starts over once a connection is open.
+ */
+public class MultiSourceWebSocketDataReader implements DataReader {
+    private static final int DEFAULT_IO_THREADS = 2;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final long CLOSE_TIMEOUT_MILLIS = 1_000;
+    private static final int BATCH_SIZE = 1024;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    private static final long OFFER_RETRY_MILLIS = 5;
+
+    private final List<URI> sources;
+    private final int ioThreads;
+    private final boolean binary;
+    private final ReconnectBackoff backoff;
+    private final int queueCapacity;
+    private final int drainThreads;
+    private final OverflowPolicy overflowPolicy;
+    private final List<Source> connections = new ArrayList<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicLong reconnects = new AtomicLong();
+    private ScheduledExecutorService executor;
+    private HttpClient httpClient;
+    private IngestionQueue ingestionQueue;
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a reader for the given servers that uses two threads and text messages.
+     *
+     * @param sources the URIs of the WebSocket servers to read from
+     */
+    public MultiSourceWebSocketDataReader(List<URI> sources) {
+        this(sources, DEFAULT_IO_THREADS, false, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Constructs a reader for the given servers with an ingestion queue of 65536 readings,
+     * one drain thread and the {@link OverflowPolicy#BLOCK} policy.
+     *
+     * @param sources              the URIs of the WebSocket servers to read from
+     * @param ioThreads            the number of threads shared by all sources
+     * @param binary               true to ask every server for binary samples instead of text
+     * @param initialBackoffMillis the delay before the first reconnect attempt, in milliseconds
+     * @param maxBackoffMillis     the longest delay between two reconnect attempts, in milliseconds
+     * @throws IllegalArgumentException if there are no sources, no threads, or invalid delays
+     */
+    public MultiSourceWebSocketDataReader(List<URI> sources, int ioThreads, boolean binary,
+                                          long initialBackoffMillis, long maxBackoffMillis) {
+        this(sources, ioThreads, binary, initialBackoffMillis, maxBackoffMillis,
+                DEFAULT_QUEUE_CAPACITY, 1, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Constructs a reader for the given servers with its own ingestion queue settings.
+     *
+     * @param sources              the URIs of the WebSocket servers to read from
+     * @param ioThreads            the number of threads shared by all sources
+     * @param binary               true to ask every server for binary samples instead of text
+     * @param initialBackoffMillis the delay before the first reconnect attempt, in milliseconds
+     * @param maxBackoffMillis     the longest delay between two reconnect attempts, in milliseconds
+     * @param queueCapacity        the most readings that may wait for the storage
+     * @param drainThreads         the number of threads applying readings to the storage
+     * @param overflowPolicy       what to do with readings received while the queue is full
+     * @throws IllegalArgumentException if there are no sources, no threads, invalid delays,
+     *                                  or a capacity smaller than the number of drain threads
+     */
+    public MultiSourceWebSocketDataReader(List<URI> sources, int ioThreads, boolean binary,
+                                          long initialBackoffMillis, long maxBackoffMillis,
+                                          int queueCapacity, int drainThreads, OverflowPolicy overflowPolicy) {
+        if (sources.isEmpty() || ioThreads <= 0) {
+            throw new IllegalArgumentException("At least one source and one thread are required");
+        }
+        if (drainThreads <= 0 || queueCapacity < drainThreads) {
+            throw new IllegalArgumentException("Capacity must be at least the number of drain threads, "
+                    + "which must be positive: " + queueCapacity + ", " + drainThreads);
+        }
+        this.sources = List.copyOf(sources);
+        this.ioThreads = ioThreads;
+        this.binary = binary;
+        this.backoff = new ReconnectBackoff(initialBackoffMillis, maxBackoffMillis);
+        this.queueCapacity = queueCapacity;
+        this.drainThreads = drainThreads;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Starts connecting to all sources and returns; sources that cannot be reached yet keep
+     * retrying in the background, see {@link #getConnectedCount()}.
+     *
+     * @param dataStorage the DataStorage instance to receive patient data updates
+     * @throws IOException if the reader has already been started
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) throws IOException {
+        if (executor != null) {
+            throw new IOException("Reader has already been started");
+        }
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(ioThreads, r -> {
+            Thread thread = new Thread(r, "websocket-reader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpClient = HttpClient.newBuilder().executor(executor).connectTimeout(CONNECT_TIMEOUT).build();
+        ingestionQueue = new IngestionQueue(dataStorage, queueCapacity, drainThreads, overflowPolicy);
+        for (URI uri : sources) {
+            Source source = new Source(uri);
+            connections.add(source);
+            source.connect();
+        }
+    }
+
+    /**
+     * Returns the number of sources currently connected.
+     *
+     * @return the number of open connections
+     */
+    public int getConnectedCount() {
+        return connected.get();
+    }
+
+    /**
+     * Returns the number of reconnect attempts scheduled so far, for all sources together.
+     *
+     * @return the number of reconnect attempts
+     */
+    public long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    /**
+     * Returns the number of readings received so far, from all sources together.
+     *
+     * @return the number of decoded readings
+     */
+    public synchronized long getReceivedCount() {
+        long received = 0;
+        for (Source source : connections) {
+            received += source.decoder.getDecodedCount();
+        }
+        return received;
+    }
+
+    /**
+     * Returns the number of received lines and binary samples that could not be decoded.
+     *
+     * @return the number of malformed entries, from all sources together
+     */
+    public synchronized long getMalformedCount() {
+        long malformed = 0;
+        for (Source source : connections) {
+            malformed += source.decoder.getMalformedCount();
+        }
+        return malformed;
+    }
+
+    /**
+     * Returns the queue between the connections and the storage, e.g. to watch its depth and lag.
+     *
+     * @return the ingestion queue, or null before {@link #readData(DataStorage)} is called
+     */
+    public IngestionQueue getIngestionQueue() {
+        return ingestionQueue;
+    }
+
+    /**
+     * Closes all connections and stops reconnecting. Readings already received are applied
+     * to the storage before this returns.
+     *
+     * @throws IOException if the thread is interrupted while waiting for the connections to close
+     */
+    @Override
+    public synchronized void stopReading() throws IOException {
+        if (executor == null || stopped) {
+            return;
+        }
+        stopped = true;
+        // every close frame goes out first, so all sources share one deadline instead of one each
+        List<CompletableFuture<?>> closing = new ArrayList<>();
+        for (Source source : connections) {
+            closing.add(source.sendClose());
+        }
+        try {
+            CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0]))
+                    .get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // the connections are still aborted; waiting for the pool below reports the interrupt
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the connections are aborted below either way
+        }
+        for (Source source : connections) {
+            source.abort();
+        }
+        for (Source source : connections) {
+            // a batch still waiting for room; the drain threads make it, this thread may wait
+            source.offerPending();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing WebSocket connections", e);
+        } finally {
+            ingestionQueue.close();
+        }
+    }
+
+    /** One upstream server: its connection, decoder and reconnect state. */
+    private final class Source implements WebSocket.Listener {
+        final URI uri;
+        final PatientMessageDecoder decoder = new PatientMessageDecoder();
+        final PatientDataBatch batch = new PatientDataBatch(BATCH_SIZE);
+        final CsvRecordParser.RowHandler addToBatch = batch::add;
+        final StringBuilder text = new StringBuilder();
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+        int failedAttempts;
+        WebSocket webSocket;
+
+        Source(URI uri) {
+            this.uri = uri;
+        }
+
+        void connect() {
+            if (stopped) {
+                return;
+            }
+            WebSocket.Builder builder = httpClient.newWebSocketBuilder();
+            if (binary) {
+                builder.subprotocols(WebSocketPatientClient.BINARY_PROTOCOL);
+            }
+            builder.buildAsync(uri, this).whenComplete((webSocket, error) -> {
+                if (error != null) {
+                    retry();
+                }
+            });
+        }
+
+        synchronized void retry() {
+            if (stopped) {
+                return;
+            }
+            reconnects.incrementAndGet();
+            schedule(this::connect, backoff.delayMillis(failedAttempts++));
+        }
+
+        private void schedule(Runnable task, long delayMillis) {
+            try {
+                executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // stopped in the meantime
+            }
+        }
+
+        /** Starts closing the connection; the future completes once the close frame is sent, or failed to be. */
+        synchronized CompletableFuture<?> sendClose() {
+            if (webSocket == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "")
+                    .toCompletableFuture()
+                    .handle((closed, error) -> null);
+        }
+
+        /** Drops the connection, whether or not its close frame went out. */
+        synchronized void abort() {
+            if (webSocket == null) {
+                return;
+            }
+            webSocket.abort();
+            disconnected(webSocket);
+        }
+
+        /** Clears the connection if it is still the current one; returns whether it was. */
+        synchronized boolean disconnected(WebSocket closedSocket) {
+            if (webSocket != closedSocket) {
+                return false;
+            }
+            webSocket = null;
+            connected.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public synchronized void onOpen(WebSocket webSocket) {
+            if (stopped) {
+                webSocket.abort();
+                return;
+            }
+            System.out.println("Connected to " + uri);
+            this.webSocket = webSocket;
+            failedAttempts = 0;
+            connected.incrementAndGet();
+            webSocket.request(1);
+        }
+
+        @Override
+        public synchronized CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            if (last && text.length() == 0) {
+                decoder.decode(data, addToBatch);
+                deliver(webSocket);
+            } else {
+                // a message may arrive in parts
+                text.append(data);
+                if (last) {
+                    decoder.decode(text, addToBatch);
+                    text.setLength(0);
+                    deliver(webSocket);
+                } else {
+                    webSocket.request(1);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (last && bytes.position() == 0) {
+                decoder.decodeBinary(data, addToBatch);
+                deliver(webSocket);
+            } else {
+                if (bytes.remaining() < data.remaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes.capacity() * 2,
+                            bytes.position() + data.remaining()));
+                    bytes.flip();
+                    bytes = larger.put(bytes);
+                }
+                bytes.put(data);
+                if (last) {
+                    bytes.flip();
+                    decoder.decodeBinary(bytes, addToBatch);
+                    bytes.clear();
+                    deliver(webSocket);
+                } else {
+                    webSocket.request(1);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Hands the batch to the queue and asks for the next message. While a blocking queue is
+         * full, asks for nothing and tries again later instead of holding a pool thread.
+         */
+        private void deliver(WebSocket webSocket) {
+            if (!batch.isEmpty()) {
+                if (overflowPolicy != OverflowPolicy.BLOCK) {
+                    // drops instead of waiting
+                    ingestionQueue.offer(batch);
+                } else if (!ingestionQueue.tryOffer(batch)) {
+                    if (ingestionQueue.getDepth() > 0) {
+                        schedule(() -> resumeDelivery(webSocket), OFFER_RETRY_MILLIS);
+                        return;
+                    }
+                    // more readings than fit even into the empty queue at once
+                    ingestionQueue.offer(batch);
+                }
+                batch.clear();
+            }
+            if (webSocket == this.webSocket) {
+                webSocket.request(1);
+            }
+        }
+
+        private synchronized void resumeDelivery(WebSocket webSocket) {
+            if (!stopped) {
+                deliver(webSocket);
+            }
+        }
+
+        synchronized void offerPending() {
+            if (!batch.isEmpty()) {
+                ingestionQueue.offer(batch);
+                batch.clear();
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (disconnected(webSocket)) {
+                System.out.println("Connection to " + uri + " closed: " + statusCode + " " + reason);
+                resetPartialMessage();
+                retry();
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (disconnected(webSocket)) {
+                System.err.println("Connection to " + uri + " failed: " + error);
+                resetPartialMessage();
+                retry();
+            }
+        }
+
+        private synchronized void resetPartialMessage() {
+            text.setLength(0);
+            bytes.clear();
+        }
+    }
+}
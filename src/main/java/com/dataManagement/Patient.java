@@ -1,6 +1,8 @@
 package com.dataManagement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -8,20 +10,49 @@ import java.util.List;
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ *
+ * Records are kept in columnar form: one {@link TimeSeriesColumn} per record type,
+ * indexed by the code assigned in {@link RecordTypeTable}. {@link PatientRecord}
+ * objects are only created for the results of a query.
+ * Each column is ordered by timestamp, so time-range queries use binary search
+ * and return views over the matching slices instead of copies.
+ *
+ * Writers for the same patient are serialized on the patient's monitor; readers
+ * never lock and therefore never block ingestion.
+ *
+ * When a {@link RetentionCompactor} is running, samples older than the hot window are
+ * replaced by per-interval {@link Rollup}s kept in a second set of columns. Queries
+ * return the mean of each rollup as a record, so old ranges are served transparently
+ * at a lower resolution. The raw and rollup columns are published together, so a query
+ * sees either the state before a compaction or the state after it.
  */
 public class Patient {
-    private int patientId;
-    private List<PatientRecord> patientRecords;
+    /**
+     * The raw and rollup columns of a patient, indexed by record type code. Entries may be
+     * null. Neither array is modified once published; a change publishes a new holder.
+     */
+    private static final class Columns {
+        final TimeSeriesColumn[] raw;
+        final RollupColumn[] rollups;
+
+        Columns(TimeSeriesColumn[] raw, RollupColumn[] rollups) {
+            this.raw = raw;
+            this.rollups = rollups;
+        }
+    }
+
+    private final int patientId;
+    private volatile Columns columns;
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record columns.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.columns = new Columns(new TimeSeriesColumn[0], new RollupColumn[0]);
     }
 
     public int getPatientId() {
@@ -40,30 +71,325 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypeTable.codeOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose record type is already resolved to a code.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param typeCode         the record type code from {@link RecordTypeTable#codeOf(String)}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public synchronized void addRecord(double measurementValue, int typeCode, long timestamp) {
+        Columns snapshot = columns;
+        TimeSeriesColumn[] current = snapshot.raw;
+        if (typeCode >= current.length || current[typeCode] == null) {
+            // copy-on-write so readers never see a half-initialized array
+            TimeSeriesColumn[] grown = Arrays.copyOf(current, Math.max(current.length, typeCode + 1));
+            grown[typeCode] = new TimeSeriesColumn();
+            columns = new Columns(grown, snapshot.rollups);
+            current = grown;
+        }
+        current[typeCode].add(timestamp, measurementValue);
+    }
+
+    /**
+     * Adds the rows of a batch that belong to this patient under a single lock.
+     *
+     * @param batch the batch holding the rows
+     * @param order the grouped indexes from {@link PatientDataBatch#groupByPatient()}
+     * @param from  the first entry of {@code order} for this patient
+     * @param to    the entry after the last one for this patient
+     */
+    synchronized void addRecords(PatientDataBatch batch, long[] order, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int index = PatientDataBatch.indexOf(order[i]);
+            addRecord(batch.valueAt(index), batch.typeCodeAt(index), batch.timestampAt(index));
+        }
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The bounds of each record type are found by binary search; the returned list
+     * is a read-only view over those slices, merged in timestamp order.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since UNIX epoch
      * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     *         range, ordered by timestamp
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        List<PatientRecord> timeRange = new ArrayList<>();
-        for (PatientRecord record : this.patientRecords) {
-            long timestamp = record.getTimestamp();
-            if (timestamp >= startTime && timestamp <= endTime) {
-                timeRange.add(record);
+        List<RecordSlice> slices = new ArrayList<>();
+        Columns snapshot = columns;
+        RollupColumn[] summaries = snapshot.rollups;
+        for (int typeCode = 0; typeCode < summaries.length; typeCode++) {
+            RollupColumn column = summaries[typeCode];
+            if (column == null) {
+                continue;
+            }
+            RecordSlice slice = column.slice(patientId, RecordTypeTable.nameOf(typeCode),
+                    startTime, endTime);
+            if (!slice.isEmpty()) {
+                slices.add(slice);
+            }
+        }
+        TimeSeriesColumn[] current = snapshot.raw;
+        for (int typeCode = 0; typeCode < current.length; typeCode++) {
+            TimeSeriesColumn column = current[typeCode];
+            if (column == null) {
+                continue;
+            }
+            RecordSlice slice = column.slice(patientId, RecordTypeTable.nameOf(typeCode),
+                    startTime, endTime);
+            if (!slice.isEmpty()) {
+                slices.add(slice);
+            }
+        }
+        if (slices.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (slices.size() == 1) {
+            return slices.get(0);
+        }
+        return new MergedRecordView(slices);
+    }
+
+    /**
+     * Retrieves the records of a single type that fall within a specified time range.
+     * The result is a read-only view over the matching slices of that type's rollups
+     * and raw samples.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the matching records ordered by timestamp, or an empty list if the
+     *         patient has no records of that type
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        int typeCode = RecordTypeTable.lookup(recordType);
+        if (typeCode < 0) {
+            return Collections.emptyList();
+        }
+        Columns snapshot = columns;
+        RollupColumn[] summaries = snapshot.rollups;
+        TimeSeriesColumn[] current = snapshot.raw;
+        RecordSlice old = typeCode < summaries.length && summaries[typeCode] != null
+                ? summaries[typeCode].slice(patientId, recordType, startTime, endTime) : null;
+        RecordSlice raw = typeCode < current.length && current[typeCode] != null
+                ? current[typeCode].slice(patientId, recordType, startTime, endTime) : null;
+        if (old == null || old.isEmpty()) {
+            return raw == null ? Collections.emptyList() : raw;
+        }
+        if (raw == null || raw.isEmpty()) {
+            return old;
+        }
+        return new MergedRecordView(List.of(old, raw));
+    }
+
+    /**
+     * Retrieves the rollups of a single type whose interval starts within a specified
+     * time range.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the matching rollups ordered by time, or an empty list if there are none
+     */
+    public List<Rollup> getRollups(String recordType, long startTime, long endTime) {
+        int typeCode = RecordTypeTable.lookup(recordType);
+        RollupColumn[] summaries = columns.rollups;
+        if (typeCode < 0 || typeCode >= summaries.length || summaries[typeCode] == null) {
+            return Collections.emptyList();
+        }
+        return summaries[typeCode].rollups(startTime, endTime);
+    }
+
+    /**
+     * Applies a retention policy: raw samples older than the hot window are rolled up
+     * and anything older than the horizon is evicted.
+     *
+     * A column is only compacted once at least a quarter of it has expired, so the copy
+     * of the remaining samples costs a constant amount per compacted sample. The rollups
+     * and the trimmed column are built from a snapshot without holding the patient's
+     * lock; the lock is only taken to copy the samples appended meanwhile and to publish
+     * the result, so ingestion for the patient is held up for that short step only.
+     * Calls must not run concurrently with each other, as a {@link RetentionCompactor}
+     * ensures.
+     *
+     * @param policy the retention policy
+     * @param now    the current time, in milliseconds since UNIX epoch
+     */
+    void compact(RetentionPolicy policy, long now) {
+        long rawCutoff = policy.rawCutoff(now);
+        long horizonCutoff = policy.horizonCutoff(now);
+        TimeSeriesColumn[] current = columns.raw;
+        for (int typeCode = 0; typeCode < current.length; typeCode++) {
+            TimeSeriesColumn column = current[typeCode];
+            // cheap unlocked check, most passes have nothing to do for most columns
+            if (column == null || column.size() == 0 || column.timestampAt(0) >= rawCutoff) {
+                continue;
+            }
+            compactColumn(typeCode, column, policy, rawCutoff, horizonCutoff);
+        }
+        RollupColumn[] summaries = columns.rollups;
+        long firstKept = policy.bucketStart(horizonCutoff);
+        for (RollupColumn column : summaries) {
+            if (column != null && column.size() > 0) {
+                synchronized (this) {
+                    column.removeBefore(firstKept);
+                }
+            }
+        }
+    }
+
+    private void compactColumn(int typeCode, TimeSeriesColumn column, RetentionPolicy policy,
+                               long rawCutoff, long horizonCutoff) {
+        // only compaction replaces a raw column, so the column stays the one being compacted
+        RollupColumn base = rollupsOf(columns, typeCode);
+        int lateAdds = column.lateAdds();
+        RecordSlice samples = column.slice(patientId, RecordTypeTable.nameOf(typeCode),
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        int expired = samples.lowerBound(rawCutoff);
+        if (expired == 0 || expired * 4 < samples.size()) {
+            return;
+        }
+        RollupColumn summary = rollUp(samples, expired, base, policy, horizonCutoff);
+        TimeSeriesColumn trimmed = TimeSeriesColumn.tail(samples, expired);
+        synchronized (this) {
+            Columns snapshot = columns;
+            if (rollupsOf(snapshot, typeCode) != base || column.lateAdds() != lateAdds) {
+                // restored rollups or a late sample changed what the snapshot covers; redo it
+                // under the lock, where nothing can change
+                base = rollupsOf(snapshot, typeCode);
+                samples = column.slice(patientId, RecordTypeTable.nameOf(typeCode),
+                        Long.MIN_VALUE, Long.MAX_VALUE);
+                expired = samples.lowerBound(rawCutoff);
+                summary = rollUp(samples, expired, base, policy, horizonCutoff);
+                trimmed = TimeSeriesColumn.tail(samples, expired);
+            }
+            // only in-order appends happened since the snapshot, and they follow its samples
+            for (int i = samples.size(); i < column.size(); i++) {
+                trimmed.add(column.timestampAt(i), column.valueAt(i));
+            }
+            // one volatile write swaps both, so queries see neither a gap nor an overlap
+            TimeSeriesColumn[] raw = snapshot.raw.clone();
+            raw[typeCode] = trimmed;
+            RollupColumn[] summaries = Arrays.copyOf(snapshot.rollups,
+                    Math.max(snapshot.rollups.length, typeCode + 1));
+            summaries[typeCode] = summary;
+            columns = new Columns(raw, summaries);
+        }
+    }
+
+    private static RollupColumn rollupsOf(Columns snapshot, int typeCode) {
+        return typeCode < snapshot.rollups.length ? snapshot.rollups[typeCode] : null;
+    }
+
+    /**
+     * Merges the expired samples of a slice, from the horizon on, into a copy of the given
+     * rollups that readers cannot see until the raw samples are trimmed with it.
+     */
+    private static RollupColumn rollUp(RecordSlice samples, int expired, RollupColumn base,
+                                       RetentionPolicy policy, long horizonCutoff) {
+        RollupColumn summary = base == null ? new RollupColumn() : base.copy();
+        int i = samples.lowerBound(policy.bucketStart(horizonCutoff));
+        while (i < expired) {
+            long bucket = policy.bucketStart(samples.timestampAt(i));
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            int count = 0;
+            for (; i < expired && samples.timestampAt(i) < bucket + policy.getRollupIntervalMillis(); i++) {
+                double value = samples.valueAt(i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                count++;
+            }
+            summary.merge(bucket, min, max, sum / count, count);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the raw sample columns, indexed by record type code. Entries may be null.
+     * The array must not be modified.
+     */
+    TimeSeriesColumn[] rawColumns() {
+        return columns.raw;
+    }
+
+    /**
+     * Returns the rollup columns, indexed by record type code. Entries may be null.
+     * The array must not be modified.
+     */
+    RollupColumn[] rollupColumns() {
+        return columns.rollups;
+    }
+
+    /**
+     * Merges rollups, e.g. restored from a snapshot, into the rollups of one record type.
+     *
+     * @param typeCode the record type code from {@link RecordTypeTable#codeOf(String)}
+     * @param rollups  the rollups to add
+     */
+    synchronized void addRollups(int typeCode, List<Rollup> rollups) {
+        Columns snapshot = columns;
+        RollupColumn[] summaries = Arrays.copyOf(snapshot.rollups, Math.max(snapshot.rollups.length, typeCode + 1));
+        RollupColumn summary = summaries[typeCode] == null ? new RollupColumn() : summaries[typeCode].copy();
+        for (Rollup rollup : rollups) {
+            summary.merge(rollup.getTimestamp(), rollup.getMin(), rollup.getMax(), rollup.getMean(),
+                    rollup.getCount());
+        }
+        summaries[typeCode] = summary;
+        columns = new Columns(snapshot.raw, summaries);
+    }
+
+    /**
+     * Returns the total number of records stored for this patient, counting each
+     * rollup as one record.
+     *
+     * @return the number of records across all record types
+     */
+    public int getRecordCount() {
+        int count = 0;
+        Columns snapshot = columns;
+        for (RollupColumn column : snapshot.rollups) {
+            if (column != null) {
+                count += column.size();
+            }
+        }
+        for (TimeSeriesColumn column : snapshot.raw) {
+            if (column != null) {
+                count += column.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes held by this patient's record columns.
+     *
+     * @return the approximate heap footprint of the stored samples
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        Columns snapshot = columns;
+        for (RollupColumn column : snapshot.rollups) {
+            if (column != null) {
+                bytes += column.footprintBytes();
+            }
+        }
+        for (TimeSeriesColumn column : snapshot.raw) {
+            if (column != null) {
+                bytes += column.footprintBytes();
             }
         }
-        return timeRange;
+        return bytes;
     }
 
 }
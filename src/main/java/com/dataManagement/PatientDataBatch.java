@@ -0,0 +1,130 @@
+package com.dataManagement;
+
+import java.util.Arrays;
+
+/**
+ * Reusable batch of readings for {@link DataStorage#addPatientData(PatientDataBatch)}.
+ *
+ * Readings are held in parallel primitive arrays (patient IDs, values, record type codes
+ * from {@link RecordTypeTable}, timestamps), so filling a batch allocates nothing once its
+ * arrays have grown to the working size. Call {@link #clear()} to reuse it.
+ *
+ * Not thread-safe; a batch is filled by one thread and then handed to the storage.
+ */
+public class PatientDataBatch {
+    private int[] patientIds;
+    private double[] values;
+    private int[] typeCodes;
+    private long[] timestamps;
+    private long[] order = new long[0];
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param capacity the number of readings the batch holds before growing
+     */
+    public PatientDataBatch(int capacity) {
+        int initial = Math.max(capacity, 1);
+        patientIds = new int[initial];
+        values = new double[initial];
+        typeCodes = new int[initial];
+        timestamps = new long[initial];
+    }
+
+    /**
+     * Adds a reading whose record type is already resolved to a code.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param typeCode         the record type code from {@link RecordTypeTable#codeOf(String)}
+     * @param timestamp        the time of the reading, in milliseconds since UNIX epoch
+     */
+    public void add(int patientId, double measurementValue, int typeCode, long timestamp) {
+        if (size == patientIds.length) {
+            int newCapacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+            typeCodes = Arrays.copyOf(typeCodes, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+        }
+        patientIds[size] = patientId;
+        values[size] = measurementValue;
+        typeCodes[size] = typeCode;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Adds a reading, resolving its record type name to a code.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time of the reading, in milliseconds since UNIX epoch
+     */
+    public void add(int patientId, double measurementValue, String recordType, long timestamp) {
+        add(patientId, measurementValue, RecordTypeTable.codeOf(recordType), timestamp);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empties the batch, keeping its arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int patientIdAt(int index) {
+        return patientIds[index];
+    }
+
+    public double valueAt(int index) {
+        return values[index];
+    }
+
+    public int typeCodeAt(int index) {
+        return typeCodes[index];
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Returns the indexes of the batch grouped by patient, keeping the batch order within
+     * each patient. Each entry packs the patient ID in the high 32 bits (with its sign bit
+     * flipped so negative IDs sort first) and the index in the low 32 bits.
+     * The returned array is reused by the next call and may be longer than {@link #size()}.
+     */
+    long[] groupByPatient() {
+        if (order.length < size) {
+            order = new long[patientIds.length];
+        }
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) (patientIds[i] ^ Integer.MIN_VALUE) << 32) | i;
+            sorted &= i == 0 || order[i] > order[i - 1];
+        }
+        // readers of files written patient by patient hand in batches that are already grouped
+        if (!sorted) {
+            Arrays.sort(order, 0, size);
+        }
+        return order;
+    }
+
+    static int indexOf(long entry) {
+        return (int) entry;
+    }
+
+    static int patientIdOf(long entry) {
+        return (int) (entry >>> 32) ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,21 @@
+package com.dataManagement;
+
+/**
+ * Receives every reading as it is added to a {@link DataStorage}.
+ * Listeners are registered with {@link DataStorage#addListener(PatientDataListener)}.
+ *
+ * Calls for the same patient are made one at a time, in the order the readings were
+ * stored, while the patient is locked for writing. Implementations should return
+ * quickly and must not add data to the same storage from inside the callback.
+ */
+public interface PatientDataListener {
+    /**
+     * Called after a reading has been stored.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param timestamp        the time of the measurement, in milliseconds since UNIX epoch
+     */
+    void onPatientData(int patientId, double measurementValue, String recordType, long timestamp);
+}
@@ -0,0 +1,357 @@
+package com.dataManagement;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decodes the messages received by {@link WebSocketPatientClient}.
+ *
+ * Text messages hold one or more lines of
+ * {@code patientId,measurementValue,recordType,timestamp}, separated by line breaks.
+ *
+ * Each line is walked once. Numbers are parsed in place and record types are resolved to
+ * their {@link RecordTypeTable} code through a {@link RecordTypeCache}, so a line does not
+ * create any intermediate strings or arrays. Values with more significant digits than a
+ * double holds exactly are the exception: they are handed to {@link Double#parseDouble}.
+ * Fields are trimmed like {@link String#trim()} and blank lines are skipped.
+ *
+ * Binary messages are little-endian and start with a kind byte. A {@value #SAMPLES} message
+ * holds packed samples of {@value #SAMPLE_BYTES} bytes: an {@code int} patient ID, a
+ * {@code short} type code, a {@code double} value and a {@code long} timestamp. A
+ * {@value #TYPES} message defines type codes, each as a {@code short} code, a {@code short}
+ * name length and the UTF-8 name. Samples are read straight from the buffer, and a type
+ * code is translated to its {@link RecordTypeTable} code through a table filled by the
+ * definitions, so a binary sample costs no parsing at all.
+ *
+ * A malformed line or binary sample is skipped and counted. It is reported on
+ * {@code System.err} at most once every {@value #LOG_INTERVAL_MILLIS} ms, together with the
+ * number of malformed entries since the previous report, so a broken sender cannot flood
+ * the log.
+ *
+ * Not thread-safe; the counters may be read from any thread.
+ */
+class PatientMessageDecoder {
+    private static final long LOG_INTERVAL_MILLIS = 10_000;
+    private static final int LOGGED_CHARACTERS = 120;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Kind byte of a binary message holding samples. */
+    static final byte SAMPLES = 0;
+    /** Kind byte of a binary message holding type definitions. */
+    static final byte TYPES = 1;
+    /** Size of one binary sample. */
+    static final int SAMPLE_BYTES = Integer.BYTES + Short.BYTES + Double.BYTES + Long.BYTES;
+
+    private final RecordTypeCache recordTypes = new RecordTypeCache();
+    private int[] wireTypes = new int[0];
+    private volatile long decoded;
+    private volatile long malformed;
+    private long unreported;
+    private long lastReportMillis = Long.MIN_VALUE;
+
+    private CharSequence text;
+    private boolean failed;
+
+    /**
+     * Decodes every line of a message and passes the readings to the handler.
+     *
+     * @param message the received message
+     * @param handler receives the decoded readings
+     * @return the number of readings decoded
+     */
+    int decode(CharSequence message, CsvRecordParser.RowHandler handler) {
+        text = message;
+        int count = 0;
+        int start = 0;
+        int length = message.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && message.charAt(i) != '\n') {
+                continue;
+            }
+            if (decodeLine(start, i, handler)) {
+                count++;
+            }
+            start = i + 1;
+        }
+        text = null;
+        return count;
+    }
+
+    /**
+     * Decodes a binary message: passes its samples to the handler, or learns its type definitions.
+     *
+     * @param message the received message; its byte order is set to little-endian
+     * @param handler receives the decoded readings
+     * @return the number of readings decoded
+     */
+    int decodeBinary(ByteBuffer message, CsvRecordParser.RowHandler handler) {
+        message.order(ByteOrder.LITTLE_ENDIAN);
+        int start = message.position();
+        int end = message.limit();
+        if (start == end) {
+            reportMalformed("empty binary message");
+            return 0;
+        }
+        byte kind = message.get(start);
+        if (kind == TYPES) {
+            defineTypes(message, start + 1, end);
+            return 0;
+        }
+        if (kind != SAMPLES || (end - start - 1) % SAMPLE_BYTES != 0) {
+            // without the right length the samples cannot be told apart
+            reportMalformed("binary message of kind " + kind + " and " + (end - start) + " bytes");
+            return 0;
+        }
+        int count = 0;
+        for (int i = start + 1; i < end; i += SAMPLE_BYTES) {
+            int wireType = message.getShort(i + Integer.BYTES);
+            int typeCode = wireType >= 0 && wireType < wireTypes.length ? wireTypes[wireType] : -1;
+            if (typeCode < 0) {
+                reportMalformed("binary sample of undefined type " + wireType);
+                continue;
+            }
+            decoded++;
+            count++;
+            handler.accept(message.getInt(i), message.getDouble(i + Integer.BYTES + Short.BYTES),
+                    typeCode, message.getLong(i + Integer.BYTES + Short.BYTES + Double.BYTES));
+        }
+        return count;
+    }
+
+    private void defineTypes(ByteBuffer message, int from, int to) {
+        int i = from;
+        while (i < to) {
+            if (to - i < 2 * Short.BYTES) {
+                reportMalformed("truncated binary type definition");
+                return;
+            }
+            int wireType = message.getShort(i);
+            int length = message.getShort(i + Short.BYTES);
+            int nameStart = i + 2 * Short.BYTES;
+            if (wireType < 0 || length <= 0 || length > to - nameStart) {
+                reportMalformed("binary type definition of type " + wireType + " with " + length + " bytes");
+                return;
+            }
+            if (wireType >= wireTypes.length) {
+                int oldLength = wireTypes.length;
+                wireTypes = Arrays.copyOf(wireTypes, Math.max(wireType + 1, oldLength * 2));
+                Arrays.fill(wireTypes, oldLength, wireTypes.length, -1);
+            }
+            wireTypes[wireType] = recordTypes.lookup(message, nameStart, nameStart + length);
+            i = nameStart + length;
+        }
+    }
+
+    /**
+     * Returns the number of readings decoded so far.
+     *
+     * @return the number of decoded readings
+     */
+    long getDecodedCount() {
+        return decoded;
+    }
+
+    /**
+     * Returns the number of lines and binary samples skipped because they could not be decoded.
+     *
+     * @return the number of malformed entries
+     */
+    long getMalformedCount() {
+        return malformed;
+    }
+
+    private boolean decodeLine(int from, int to, CsvRecordParser.RowHandler handler) {
+        if (isBlank(from, to)) {
+            return false;
+        }
+        failed = false;
+        int patientId = 0;
+        double value = 0;
+        int typeCode = -1;
+        long timestamp = 0;
+        int field = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to && !failed; i++) {
+            if (i < to && text.charAt(i) != ',') {
+                continue;
+            }
+            switch (field) {
+                case 0:
+                    long id = parseLong(fieldStart, i);
+                    if (id < Integer.MIN_VALUE || id > Integer.MAX_VALUE) {
+                        failed = true;
+                    }
+                    patientId = (int) id;
+                    break;
+                case 1:
+                    value = parseDouble(fieldStart, i);
+                    break;
+                case 2:
+                    typeCode = parseRecordType(fieldStart, i);
+                    break;
+                case 3:
+                    timestamp = parseLong(fieldStart, i);
+                    break;
+                default:
+                    failed = true;
+                    break;
+            }
+            field++;
+            fieldStart = i + 1;
+        }
+        if (failed || field != 4) {
+            if (reportMalformed()) {
+                int end = Math.min(to, from + LOGGED_CHARACTERS);
+                report("\"" + text.subSequence(from, end) + (end < to ? "..." : "") + "\"");
+            }
+            return false;
+        }
+        decoded++;
+        handler.accept(patientId, value, typeCode, timestamp);
+        return true;
+    }
+
+    private void reportMalformed(String description) {
+        if (reportMalformed()) {
+            report(description);
+        }
+    }
+
+    /** Counts a malformed entry and returns whether it is time to report one. */
+    private boolean reportMalformed() {
+        malformed++;
+        long now = System.currentTimeMillis();
+        if (lastReportMillis != Long.MIN_VALUE && now - lastReportMillis < LOG_INTERVAL_MILLIS) {
+            unreported++;
+            return false;
+        }
+        lastReportMillis = now;
+        return true;
+    }
+
+    private void report(String description) {
+        String skipped = unreported > 0 ? " (" + unreported + " more since the last report)" : "";
+        System.err.println("Skipped malformed patient message: " + description + skipped
+                + ", " + malformed + " in total");
+        unreported = 0;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int trimStart(int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private int parseRecordType(int from, int to) {
+        int start = trimStart(from, to);
+        int end = trimEnd(start, to);
+        if (start == end) {
+            failed = true;
+            return -1;
+        }
+        return recordTypes.lookup(text, start, end);
+    }
+
+    private long parseLong(int from, int to) {
+        int start = trimStart(from, to);
+        int end = trimEnd(start, to);
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            // empty, or long enough to overflow: let the JDK decide
+            try {
+                return Long.parseLong(text.subSequence(start, end).toString());
+            } catch (NumberFormatException e) {
+                failed = true;
+                return 0;
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                failed = true;
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses plain decimals the same way as {@link CsvRecordParser}: exactly and without
+     * allocating while the digits fit a double's mantissa, otherwise with
+     * {@link Double#parseDouble}.
+     */
+    private double parseDouble(int from, int to) {
+        int start = trimStart(from, to);
+        int end = trimEnd(start, to);
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return parseDoubleSlow(start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (dot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return parseDoubleSlow(start, end);
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int start, int end) {
+        try {
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            failed = true;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.dataManagement;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between reconnect attempts: exponential growth up to a cap, with jitter.
+ *
+ * The base delay doubles with every failed attempt, starting at the initial delay, until it
+ * reaches the maximum. The actual delay is drawn between half the base delay and the full
+ * base delay, so clients that lost their server at the same moment do not all come back at
+ * the same moment, while each still waits at least half as long as the schedule says.
+ *
+ * Stateless and thread-safe; callers count their own attempts.
+ */
+final class ReconnectBackoff {
+    private final long initialMillis;
+    private final long maxMillis;
+
+    /**
+     * Creates a backoff schedule.
+     *
+     * @param initialMillis the base delay before the first retry, in milliseconds
+     * @param maxMillis     the largest base delay, in milliseconds
+     * @throws IllegalArgumentException if a delay is not positive or the maximum is below the initial delay
+     */
+    ReconnectBackoff(long initialMillis, long maxMillis) {
+        if (initialMillis <= 0 || maxMillis < initialMillis) {
+            throw new IllegalArgumentException("Backoff delays must be positive and ordered: "
+                    + initialMillis + ", " + maxMillis);
+        }
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Returns the delay before the given retry.
+     *
+     * @param attempt the number of attempts that failed in a row, starting at 0
+     * @return the delay in milliseconds
+     */
+    long delayMillis(int attempt) {
+        // stop shifting once the cap is reached, so large attempt counts cannot overflow
+        long base = initialMillis;
+        for (int i = 0; i < attempt && base < maxMillis; i++) {
+            base *= 2;
+        }
+        base = Math.min(base, maxMillis);
+        long half = base / 2;
+        return half + ThreadLocalRandom.current().nextLong(base - half + 1);
+    }
+}
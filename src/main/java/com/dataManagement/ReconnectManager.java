@@ -0,0 +1,144 @@
+package com.dataManagement;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.dataManagement.WebSocketPatientClient.ConnectionState;
+
+/**
+ * Decides when a {@link WebSocketPatientClient} reconnects, as a small state machine driven
+ * by the client's callbacks.
+ *
+ * A lost connection or a failed attempt moves the client to {@code WAITING} and schedules
+ * one attempt on a shared scheduler, after a delay from a {@link ReconnectBackoff} schedule.
+ * Further failure callbacks for the same loss, e.g. {@code onError} followed by
+ * {@code onClose}, find the client already waiting and change nothing, so there is never
+ * more than one attempt pending. An open connection resets the schedule. After the
+ * configured number of failed attempts in a row the client gives up; {@link #resume()}
+ * starts it again with a fresh schedule.
+ * Closing the client on purpose stops reconnecting.
+ */
+final class ReconnectManager {
+    private final ScheduledExecutorService scheduler;
+    private final Runnable reconnect;
+    private ReconnectBackoff backoff;
+    private int maxAttempts;
+    private ConnectionState state = ConnectionState.CONNECTING;
+    private int failedAttempts;
+    private ScheduledFuture<?> pending;
+
+    /**
+     * Creates a manager for one client.
+     *
+     * @param scheduler   runs the reconnect attempts
+     * @param reconnect   starts one attempt; its outcome is reported through the callbacks
+     * @param backoff     the delays between attempts
+     * @param maxAttempts the number of failed attempts in a row after which the client gives up
+     */
+    ReconnectManager(ScheduledExecutorService scheduler, Runnable reconnect, ReconnectBackoff backoff,
+                     int maxAttempts) {
+        this.scheduler = scheduler;
+        this.reconnect = reconnect;
+        this.backoff = backoff;
+        this.maxAttempts = maxAttempts;
+    }
+
+    synchronized void configure(ReconnectBackoff backoff, int maxAttempts) {
+        this.backoff = backoff;
+        this.maxAttempts = maxAttempts;
+    }
+
+    synchronized ConnectionState getState() {
+        return state;
+    }
+
+    synchronized int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /** The connection is open. */
+    synchronized void connected() {
+        cancelPending();
+        state = ConnectionState.CONNECTED;
+        failedAttempts = 0;
+    }
+
+    /**
+     * The connection was lost or an attempt failed.
+     *
+     * @return true if this call started waiting for a new attempt, false if it was already
+     *         waiting for this loss, has given up or is closed
+     */
+    synchronized boolean connectionLost() {
+        if (state != ConnectionState.CONNECTED && state != ConnectionState.CONNECTING) {
+            return false;
+        }
+        scheduleAttempt();
+        return state == ConnectionState.WAITING;
+    }
+
+    /** The client was closed on purpose. */
+    synchronized void closed() {
+        cancelPending();
+        state = ConnectionState.CLOSED;
+    }
+
+    /**
+     * Starts reconnecting again after the client gave up or was closed.
+     *
+     * @return true if an attempt was scheduled
+     */
+    synchronized boolean resume() {
+        if (state != ConnectionState.GAVE_UP && state != ConnectionState.CLOSED) {
+            return false;
+        }
+        state = ConnectionState.CONNECTING;
+        failedAttempts = 0;
+        scheduleAttempt();
+        return true;
+    }
+
+    private void scheduleAttempt() {
+        if (failedAttempts >= maxAttempts) {
+            state = ConnectionState.GAVE_UP;
+            System.out.println("Failed to reconnect after " + failedAttempts + " attempts.");
+            return;
+        }
+        long delay = backoff.delayMillis(failedAttempts);
+        failedAttempts++;
+        state = ConnectionState.WAITING;
+        System.out.println("Trying to reconnect in " + delay + " ms... Attempt "
+                + failedAttempts + "/" + maxAttempts);
+        try {
+            pending = scheduler.schedule(this::attempt, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            state = ConnectionState.GAVE_UP;
+        }
+    }
+
+    private void attempt() {
+        synchronized (this) {
+            if (state != ConnectionState.WAITING) {
+                return;
+            }
+            pending = null;
+            state = ConnectionState.CONNECTING;
+        }
+        // not under the lock: the client's callbacks may need it while the old connection is torn down
+        try {
+            reconnect.run();
+        } catch (RuntimeException e) {
+            System.err.println("Reconnect attempt failed: " + e.getMessage());
+            connectionLost();
+        }
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dataManagement;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list view over a contiguous range of a {@link TimeSeriesColumn}.
+ * {@link PatientRecord} objects are created on access instead of being stored.
+ */
+class RecordSlice extends AbstractList<PatientRecord> implements RandomAccess {
+    private final int patientId;
+    private final String recordType;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int from;
+    private final int to;
+
+    RecordSlice(int patientId, String recordType, long[] timestamps, double[] values, int from, int to) {
+        this.patientId = patientId;
+        this.recordType = recordType;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return new PatientRecord(patientId, values[from + index], recordType, timestamps[from + index]);
+    }
+
+    long timestampAt(int index) {
+        return timestamps[from + index];
+    }
+
+    double valueAt(int index) {
+        return values[from + index];
+    }
+
+    /**
+     * Returns the index of the first record with a timestamp greater than or equal to the given one.
+     */
+    int lowerBound(long timestamp) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - from;
+    }
+
+    /**
+     * Copies the records from {@code index} to the end into the start of the given arrays.
+     */
+    void copyTo(int index, long[] timestamps, double[] values) {
+        System.arraycopy(this.timestamps, from + index, timestamps, 0, to - from - index);
+        System.arraycopy(this.values, from + index, values, 0, to - from - index);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
@@ -0,0 +1,133 @@
+package com.dataManagement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Small open-addressing cache that maps the raw bytes of a record type name to its
+ * {@link RecordTypeTable} code, so parsers can resolve a type without building a new
+ * string for every row. Names are registered in {@link RecordTypeTable} on first sight.
+ * ASCII names can also be looked up from characters, which share the same entries.
+ *
+ * One instance per parser; not thread-safe.
+ */
+class RecordTypeCache {
+    private static final int SLOTS = 64;
+
+    private final byte[][] keys = new byte[SLOTS][];
+    private final int[] codes = new int[SLOTS];
+    private int used;
+
+    /**
+     * Returns the record type code for the name in {@code bytes[from, to)}.
+     *
+     * @param bytes the buffer holding the name, read with absolute gets only
+     * @param from  the index of the first byte
+     * @param to    the index after the last byte
+     * @return the code of the record type
+     */
+    int lookup(ByteBuffer bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        int slot = hash & (SLOTS - 1);
+        for (int probe = 0; probe < SLOTS; probe++) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                return insert(slot, bytes, from, to);
+            }
+            if (matches(key, bytes, from, to)) {
+                return codes[slot];
+            }
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        // table is full of other names; still correct, just not cached
+        return RecordTypeTable.codeOf(new String(copy(bytes, from, to), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the record type code for the name in {@code chars[from, to)}.
+     *
+     * @param chars the text holding the name
+     * @param from  the index of the first character
+     * @param to    the index after the last character
+     * @return the code of the record type
+     */
+    int lookup(CharSequence chars, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            char c = chars.charAt(i);
+            if (c >= 0x80) {
+                // only ASCII names are cached; they are the same as their bytes
+                return RecordTypeTable.codeOf(chars.subSequence(from, to).toString());
+            }
+            hash = 31 * hash + (byte) c;
+        }
+        int slot = hash & (SLOTS - 1);
+        for (int probe = 0; probe < SLOTS; probe++) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                return insert(slot, chars.subSequence(from, to).toString());
+            }
+            if (matches(key, chars, from, to)) {
+                return codes[slot];
+            }
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        return RecordTypeTable.codeOf(chars.subSequence(from, to).toString());
+    }
+
+    private int insert(int slot, String name) {
+        int code = RecordTypeTable.codeOf(name);
+        if (used < SLOTS / 2) {
+            keys[slot] = name.getBytes(StandardCharsets.US_ASCII);
+            codes[slot] = code;
+            used++;
+        }
+        return code;
+    }
+
+    private int insert(int slot, ByteBuffer bytes, int from, int to) {
+        byte[] key = copy(bytes, from, to);
+        int code = RecordTypeTable.codeOf(new String(key, StandardCharsets.UTF_8));
+        if (used < SLOTS / 2) {
+            keys[slot] = key;
+            codes[slot] = code;
+            used++;
+        }
+        return code;
+    }
+
+    private static byte[] copy(ByteBuffer bytes, int from, int to) {
+        byte[] copy = new byte[to - from];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = bytes.get(from + i);
+        }
+        return copy;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer bytes, int from, int to) {
+        if (key.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] key, CharSequence chars, int from, int to) {
+        if (key.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != chars.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dataManagement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns record type names (e.g. "ECG", "SystolicPressure") to small integer codes.
+ * Codes are handed out in order of first appearance, starting at 0, and never change
+ * for the lifetime of the process, so they can be used directly as array indexes
+ * by the columnar storage in {@link Patient}.
+ */
+public final class RecordTypeTable {
+    private static final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    private RecordTypeTable() {
+    }
+
+    /**
+     * Returns the code for the given record type, assigning a new one on first use.
+     *
+     * @param recordType the record type name
+     * @return the small integer code of the record type
+     */
+    public static int codeOf(String recordType) {
+        Integer code = codes.get(recordType);
+        if (code != null) {
+            return code;
+        }
+        synchronized (names) {
+            return codes.computeIfAbsent(recordType, k -> {
+                names.add(k);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Returns the code of an already registered record type without registering it.
+     *
+     * @param recordType the record type name
+     * @return the code of the record type, or -1 if it has never been seen
+     */
+    public static int lookup(String recordType) {
+        Integer code = codes.get(recordType);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the record type name previously registered under the given code.
+     *
+     * @param code a code returned by {@link #codeOf(String)}
+     * @return the record type name
+     * @throws IndexOutOfBoundsException if the code was never assigned
+     */
+    public static String nameOf(int code) {
+        synchronized (names) {
+            return names.get(code);
+        }
+    }
+
+    /**
+     * Returns the number of record types registered so far.
+     *
+     * @return the number of assigned codes
+     */
+    public static int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dataManagement;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the newest timestamp received for each patient and record type, so samples
+ * that a server replays after a reconnect are not stored a second time.
+ *
+ * When a connection is lost, {@link #disconnected()} fixes the newest timestamp received so
+ * far as the replay watermark. Afterwards a sample at or before the watermark is a
+ * duplicate if its patient already has a sample of the same type at or after its
+ * timestamp. Samples after the watermark were never received before and always pass, so
+ * the filter does not touch live data.
+ *
+ * Patient IDs from 0 to {@value #DENSE_PATIENTS} are looked up in an array, others in a map.
+ * Not thread-safe.
+ */
+final class ReplayFilter {
+    private static final int DENSE_PATIENTS = 1 << 16;
+
+    private long[][] densePatients = new long[0][];
+    private final Map<Integer, long[]> sparsePatients = new HashMap<>();
+    private long newest = Long.MIN_VALUE;
+    private long watermark = Long.MIN_VALUE;
+
+    /**
+     * Records a sample and returns whether it is new.
+     *
+     * @param patientId the patient of the sample
+     * @param typeCode  the record type code from {@link RecordTypeTable}
+     * @param timestamp the time of the sample
+     * @return false if the sample is a replayed duplicate and should be skipped
+     */
+    boolean accept(int patientId, int typeCode, long timestamp) {
+        long[] latest = latestOf(patientId, typeCode);
+        long previous = latest[typeCode];
+        if (timestamp <= watermark && timestamp <= previous) {
+            return false;
+        }
+        if (timestamp > previous) {
+            latest[typeCode] = timestamp;
+        }
+        if (timestamp > newest) {
+            newest = timestamp;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the loss of the connection.
+     *
+     * @return the newest timestamp received so far, or {@link Long#MIN_VALUE} if none
+     */
+    long disconnected() {
+        watermark = newest;
+        return watermark;
+    }
+
+    private long[] latestOf(int patientId, int typeCode) {
+        long[] latest;
+        if (patientId >= 0 && patientId < DENSE_PATIENTS) {
+            if (patientId >= densePatients.length) {
+                densePatients = Arrays.copyOf(densePatients,
+                        Math.min(DENSE_PATIENTS, Math.max(patientId + 1, densePatients.length * 2)));
+            }
+            latest = densePatients[patientId];
+        } else {
+            latest = sparsePatients.get(patientId);
+        }
+        if (latest == null || typeCode >= latest.length) {
+            long[] grown = new long[Math.max(typeCode + 1, RecordTypeTable.size())];
+            Arrays.fill(grown, Long.MIN_VALUE);
+            if (latest != null) {
+                System.arraycopy(latest, 0, grown, 0, latest.length);
+            }
+            latest = grown;
+            if (patientId >= 0 && patientId < DENSE_PATIENTS) {
+                densePatients[patientId] = latest;
+            } else {
+                sparsePatients.put(patientId, latest);
+            }
+        }
+        return latest;
+    }
+}
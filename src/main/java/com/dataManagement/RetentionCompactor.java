@@ -0,0 +1,79 @@
+package com.dataManagement;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a {@link RetentionPolicy} to a {@link DataStorage} on a background thread.
+ *
+ * Each pass rolls up the raw samples that have left the hot window and evicts data past
+ * the horizon, one patient at a time. Ingestion is never blocked storage-wide: a column is
+ * only compacted once a quarter of it has expired, so the work per pass is proportional to
+ * the data that expired, and that work is done without the patient's lock, which is only
+ * taken to publish the compacted column.
+ */
+public class RetentionCompactor implements AutoCloseable {
+    private final DataStorage storage;
+    private final RetentionPolicy policy;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Starts compacting once per rollup interval.
+     *
+     * @param storage the storage to compact
+     * @param policy  the retention policy to apply
+     */
+    public RetentionCompactor(DataStorage storage, RetentionPolicy policy) {
+        this(storage, policy, policy.getRollupIntervalMillis());
+    }
+
+    /**
+     * Starts compacting at a custom interval.
+     *
+     * @param storage        the storage to compact
+     * @param policy         the retention policy to apply
+     * @param intervalMillis the delay between two passes, in milliseconds
+     * @throws IllegalArgumentException if {@code intervalMillis} is not positive
+     */
+    public RetentionCompactor(DataStorage storage, RetentionPolicy policy, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Compaction interval must be positive: " + intervalMillis);
+        }
+        this.storage = storage;
+        this.policy = policy;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "retention-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compactNow, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one pass against the current time.
+     */
+    public void compactNow() {
+        compact(System.currentTimeMillis());
+    }
+
+    /**
+     * Runs one pass as if the current time were {@code now}. Useful for replaying
+     * recorded data and for tests.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     */
+    public synchronized void compact(long now) {
+        for (Patient patient : storage.getAllPatients()) {
+            patient.compact(policy, now);
+        }
+    }
+
+    /**
+     * Stops the background thread. A pass that is already running is completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
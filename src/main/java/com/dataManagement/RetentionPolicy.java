@@ -0,0 +1,80 @@
+package com.dataManagement;
+
+/**
+ * Describes how long patient data is kept and at which resolution.
+ *
+ * Raw samples are kept for the hot window. Older samples are compacted into one
+ * {@link Rollup} (min, max, mean and count) per record type and rollup interval, and
+ * rollups are kept until the hard horizon, after which they are evicted.
+ * Compaction is done by a {@link RetentionCompactor}.
+ */
+public class RetentionPolicy {
+    private final long rawRetentionMillis;
+    private final long rollupIntervalMillis;
+    private final long horizonMillis;
+
+    /**
+     * Creates a retention policy.
+     *
+     * @param rawRetentionMillis   how long raw samples are kept, e.g. one hour
+     * @param rollupIntervalMillis the length of one rollup bucket, e.g. one minute
+     * @param horizonMillis        how long any data is kept, e.g. one day
+     * @throws IllegalArgumentException if a duration is not positive or the horizon is
+     *                                  shorter than the raw retention
+     */
+    public RetentionPolicy(long rawRetentionMillis, long rollupIntervalMillis, long horizonMillis) {
+        if (rawRetentionMillis <= 0 || rollupIntervalMillis <= 0 || horizonMillis <= 0) {
+            throw new IllegalArgumentException("Retention durations must be positive");
+        }
+        if (horizonMillis < rawRetentionMillis) {
+            throw new IllegalArgumentException("Horizon " + horizonMillis
+                    + " ms is shorter than the raw retention " + rawRetentionMillis + " ms");
+        }
+        this.rawRetentionMillis = rawRetentionMillis;
+        this.rollupIntervalMillis = rollupIntervalMillis;
+        this.horizonMillis = horizonMillis;
+    }
+
+    public long getRawRetentionMillis() {
+        return rawRetentionMillis;
+    }
+
+    public long getRollupIntervalMillis() {
+        return rollupIntervalMillis;
+    }
+
+    public long getHorizonMillis() {
+        return horizonMillis;
+    }
+
+    /**
+     * Returns the start of the rollup bucket that contains the given time.
+     *
+     * @param timestamp a time in milliseconds since UNIX epoch
+     * @return the start of its bucket
+     */
+    public long bucketStart(long timestamp) {
+        return Math.floorDiv(timestamp, rollupIntervalMillis) * rollupIntervalMillis;
+    }
+
+    /**
+     * Returns the time before which raw samples are compacted. It is aligned to a bucket
+     * boundary, so only complete buckets are rolled up.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     * @return the compaction cutoff
+     */
+    long rawCutoff(long now) {
+        return bucketStart(now - rawRetentionMillis);
+    }
+
+    /**
+     * Returns the time before which all data is evicted.
+     *
+     * @param now the current time, in milliseconds since UNIX epoch
+     * @return the eviction cutoff
+     */
+    long horizonCutoff(long now) {
+        return now - horizonMillis;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dataManagement;
+
+/**
+ * Summary of the raw samples of one record type within one rollup interval.
+ * Rollups replace raw samples that are older than the hot window of a {@link RetentionPolicy}.
+ */
+public class Rollup {
+    private final long timestamp;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final int count;
+
+    /**
+     * Constructs a rollup.
+     *
+     * @param timestamp the start of the rollup interval, in milliseconds since UNIX epoch
+     * @param min       the smallest value in the interval
+     * @param max       the largest value in the interval
+     * @param mean      the mean of the values in the interval
+     * @param count     the number of raw samples summarized
+     */
+    public Rollup(long timestamp, double min, double max, double mean, int count) {
+        this.timestamp = timestamp;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.count = count;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
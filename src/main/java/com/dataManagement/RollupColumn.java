@@ -0,0 +1,189 @@
+package com.dataManagement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rollups of one record type for one patient, ordered by the start of their interval.
+ * Stored as parallel primitive arrays like a {@link TimeSeriesColumn}.
+ *
+ * A column has a single writer at a time (callers serialize {@link #merge} and
+ * {@link #removeBefore}) and any number of lock-free readers. The arrays and the size
+ * are published together, so changes that copy or shrink the arrays are safe to read.
+ */
+class RollupColumn {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final class Buffer {
+        final long[] starts;
+        final double[] mins;
+        final double[] maxs;
+        final double[] means;
+        final int[] counts;
+        final int size;
+
+        Buffer(long[] starts, double[] mins, double[] maxs, double[] means, int[] counts, int size) {
+            this.starts = starts;
+            this.mins = mins;
+            this.maxs = maxs;
+            this.means = means;
+            this.counts = counts;
+            this.size = size;
+        }
+
+        Buffer copy(int capacity, int newSize) {
+            return new Buffer(Arrays.copyOf(starts, capacity), Arrays.copyOf(mins, capacity),
+                    Arrays.copyOf(maxs, capacity), Arrays.copyOf(means, capacity),
+                    Arrays.copyOf(counts, capacity), newSize);
+        }
+    }
+
+    private volatile Buffer buffer = new Buffer(new long[INITIAL_CAPACITY], new double[INITIAL_CAPACITY],
+            new double[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], 0);
+
+    /**
+     * Returns an independent copy of this column. Compaction merges into a copy so that
+     * the new rollups are published together with the trimmed raw samples.
+     */
+    RollupColumn copy() {
+        Buffer b = buffer;
+        RollupColumn column = new RollupColumn();
+        column.buffer = b.copy(Math.max(INITIAL_CAPACITY, b.starts.length), b.size);
+        return column;
+    }
+
+    /**
+     * Adds the summary of some samples of one interval. If the column already has a rollup
+     * for that interval (e.g. for a late sample), the two are combined.
+     *
+     * @param start the start of the interval
+     * @param min   the smallest value
+     * @param max   the largest value
+     * @param mean  the mean value
+     * @param count the number of samples, at least one
+     */
+    void merge(long start, double min, double max, double mean, int count) {
+        Buffer b = buffer;
+        int n = b.size;
+        int position = lowerBound(b.starts, n, start);
+        if (position < n && b.starts[position] == start) {
+            // combining changes published entries, so work on a copy
+            Buffer c = b.copy(b.starts.length, n);
+            int total = c.counts[position] + count;
+            c.mins[position] = Math.min(c.mins[position], min);
+            c.maxs[position] = Math.max(c.maxs[position], max);
+            c.means[position] = (c.means[position] * c.counts[position] + mean * count) / total;
+            c.counts[position] = total;
+            buffer = c;
+            return;
+        }
+        Buffer c;
+        if (position == n && n < b.starts.length) {
+            // appending past the published size leaves existing readers undisturbed
+            c = new Buffer(b.starts, b.mins, b.maxs, b.means, b.counts, n + 1);
+        } else {
+            c = b.copy(n == b.starts.length ? n * 2 : b.starts.length, n + 1);
+            shift(c, position, n);
+        }
+        c.starts[position] = start;
+        c.mins[position] = min;
+        c.maxs[position] = max;
+        c.means[position] = mean;
+        c.counts[position] = count;
+        buffer = c;
+    }
+
+    private static void shift(Buffer c, int position, int n) {
+        System.arraycopy(c.starts, position, c.starts, position + 1, n - position);
+        System.arraycopy(c.mins, position, c.mins, position + 1, n - position);
+        System.arraycopy(c.maxs, position, c.maxs, position + 1, n - position);
+        System.arraycopy(c.means, position, c.means, position + 1, n - position);
+        System.arraycopy(c.counts, position, c.counts, position + 1, n - position);
+    }
+
+    /**
+     * Drops the rollups of every interval that starts before the given time.
+     *
+     * @param timestamp the first interval start to keep
+     */
+    void removeBefore(long timestamp) {
+        Buffer b = buffer;
+        int drop = lowerBound(b.starts, b.size, timestamp);
+        if (drop == 0) {
+            return;
+        }
+        int kept = b.size - drop;
+        int capacity = Math.max(INITIAL_CAPACITY, kept * 2);
+        Buffer c = new Buffer(new long[capacity], new double[capacity], new double[capacity],
+                new double[capacity], new int[capacity], kept);
+        System.arraycopy(b.starts, drop, c.starts, 0, kept);
+        System.arraycopy(b.mins, drop, c.mins, 0, kept);
+        System.arraycopy(b.maxs, drop, c.maxs, 0, kept);
+        System.arraycopy(b.means, drop, c.means, 0, kept);
+        System.arraycopy(b.counts, drop, c.counts, 0, kept);
+        buffer = c;
+    }
+
+    /**
+     * Returns a read-only view of the rollups within a time range, both ends inclusive,
+     * as records holding the mean value at the start of each interval.
+     */
+    RecordSlice slice(int patientId, String recordType, long startTime, long endTime) {
+        Buffer b = buffer;
+        int from = lowerBound(b.starts, b.size, startTime);
+        int to = Math.max(from, upperBound(b.starts, b.size, endTime));
+        return new RecordSlice(patientId, recordType, b.starts, b.means, from, to);
+    }
+
+    /**
+     * Returns the rollups whose interval starts within a time range, both ends inclusive.
+     */
+    List<Rollup> rollups(long startTime, long endTime) {
+        Buffer b = buffer;
+        int from = lowerBound(b.starts, b.size, startTime);
+        int to = upperBound(b.starts, b.size, endTime);
+        List<Rollup> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(new Rollup(b.starts[i], b.mins[i], b.maxs[i], b.means[i], b.counts[i]));
+        }
+        return result;
+    }
+
+    int size() {
+        return buffer.size;
+    }
+
+    long footprintBytes() {
+        Buffer b = buffer;
+        return (long) b.starts.length * (Long.BYTES + 3 * Double.BYTES + Integer.BYTES);
+    }
+
+    private static int lowerBound(long[] starts, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(long[] starts, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
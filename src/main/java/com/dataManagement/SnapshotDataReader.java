@@ -0,0 +1,176 @@
+package com.dataManagement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DataReader} for snapshot files written by {@link SnapshotWriter}.
+ *
+ * The file is memory-mapped and each column is decoded in one go into primitive arrays,
+ * then added to the storage in batches, so no text is parsed and no record objects are
+ * created.
+ */
+public class SnapshotDataReader implements DataReader {
+    private static final int BATCH_SIZE = 8192;
+
+    private final File filepath;
+
+    /**
+     * Where a snapshot stops in a write-ahead log: for each patient, the number of readings
+     * of log segment {@link #segment} that the snapshot already holds.
+     */
+    static final class LogPositions {
+        long segment = -1;
+        final Map<Integer, Long> byPatient = new HashMap<>();
+
+        /** Returns the position of a patient; patients not in the snapshot start at 0. */
+        long of(int patientId) {
+            Long position = byPatient.get(patientId);
+            return position == null ? 0 : position;
+        }
+    }
+
+    public SnapshotDataReader(String filepath) {
+        this.filepath = new File(filepath);
+    }
+
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        if (!filepath.exists()) {
+            throw new IOException(filepath + " does not exist");
+        }
+        if (!filepath.isFile()) {
+            throw new IOException("Not a file: " + filepath.getAbsolutePath());
+        }
+        load(filepath, dataStorage, new LogPositions());
+    }
+
+    /**
+     * Loads a snapshot file into the storage and reads where it stops in the write-ahead log.
+     *
+     * @return the number of samples loaded
+     */
+    static long load(File file, DataStorage dataStorage, LogPositions positions) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to map: " + file);
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return load(data, dataStorage, positions);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Truncated snapshot: " + file, e);
+            }
+        }
+    }
+
+    private static long load(ByteBuffer data, DataStorage dataStorage, LogPositions positions)
+            throws IOException {
+        if (data.remaining() < Integer.BYTES + 1 || data.getInt() != SnapshotWriter.MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = data.get();
+        if (version < 1 || version > SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        // version 1 did not record log positions, versions 1 and 2 no rollups
+        boolean logged = version >= 2;
+        boolean rolledUp = version >= 3;
+        if (logged) {
+            positions.segment = readVarLong(data) - 1;
+        }
+        int[] typeCodes = new int[(int) readVarLong(data)];
+        for (int i = 0; i < typeCodes.length; i++) {
+            byte[] name = new byte[(int) readVarLong(data)];
+            data.get(name);
+            typeCodes[i] = RecordTypeTable.codeOf(new String(name, StandardCharsets.UTF_8));
+        }
+
+        PatientDataBatch batch = new PatientDataBatch(BATCH_SIZE);
+        long[] timestamps = new long[0];
+        double[] values = new double[0];
+        long samples = 0;
+        long patients = readVarLong(data);
+        for (long p = 0; p < patients; p++) {
+            long zigZag = readVarLong(data);
+            int patientId = (int) (zigZag >>> 1) ^ -(int) (zigZag & 1);
+            if (logged) {
+                positions.byPatient.put(patientId, readVarLong(data));
+            }
+            long columns = readVarLong(data);
+            for (long c = 0; c < columns; c++) {
+                int typeCode = typeCodes[(int) readVarLong(data)];
+                int count = (int) readVarLong(data);
+                int length = (int) readVarLong(data);
+                if (count > timestamps.length) {
+                    timestamps = new long[count];
+                    values = new double[count];
+                }
+                ByteBuffer encoded = data.slice();
+                encoded.limit(length);
+                GorillaCodec.decode(encoded, count, timestamps, values);
+                data.position(data.position() + length);
+                for (int i = 0; i < count; i++) {
+                    batch.add(patientId, values[i], typeCode, timestamps[i]);
+                    if (batch.size() == BATCH_SIZE) {
+                        dataStorage.addPatientData(batch);
+                        batch.clear();
+                    }
+                }
+                samples += count;
+            }
+            if (rolledUp) {
+                loadRollups(data, dataStorage, patientId, typeCodes);
+            }
+        }
+        dataStorage.addPatientData(batch);
+        return samples;
+    }
+
+    private static void loadRollups(ByteBuffer data, DataStorage dataStorage, int patientId, int[] typeCodes)
+            throws IOException {
+        long columns = readVarLong(data);
+        for (long c = 0; c < columns; c++) {
+            int typeCode = typeCodes[(int) readVarLong(data)];
+            int count = (int) readVarLong(data);
+            List<Rollup> rollups = new ArrayList<>(count);
+            long start = 0;
+            for (int i = 0; i < count; i++) {
+                start += readVarLong(data);
+                double min = data.getDouble();
+                double max = data.getDouble();
+                double mean = data.getDouble();
+                rollups.add(new Rollup(start, min, max, mean, (int) readVarLong(data)));
+            }
+            dataStorage.getOrCreatePatient(patientId).addRollups(typeCode, rollups);
+        }
+    }
+
+    private static long readVarLong(ByteBuffer data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in snapshot");
+    }
+
+    /**
+     * Nothing to release: the file is opened and closed within {@link #readData}.
+     */
+    @Override
+    public void stopReading() throws IOException {
+    }
+}
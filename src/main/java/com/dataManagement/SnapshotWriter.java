@@ -0,0 +1,192 @@
+package com.dataManagement;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Writes the raw samples of a {@link DataStorage} in a compact binary snapshot format,
+ * loaded back by {@link SnapshotDataReader}.
+ *
+ * Layout, with variable-length integers (7 bits per byte, low bits first) for all counts:
+ * <pre>
+ * magic "PSNP", version byte
+ * log segment + 1, or 0 if the snapshot was not taken by a {@link WriteAheadLog}
+ * type count, then each record type name as length + UTF-8 bytes
+ * patient count, then for each patient:
+ *     patient ID (zig-zag), log position, column count, then for each column:
+ *         type index, sample count, byte length, {@link GorillaCodec} bytes
+ *     rollup column count, then for each rollup column:
+ *         type index, rollup count, then for each rollup:
+ *             start minus the previous start, min, max and mean as 8-byte doubles, sample count
+ * </pre>
+ * Record type names are stored once in the dictionary; each column refers to its type
+ * by index. The log position of a patient is the number of readings of the log segment
+ * that had been logged when the patient was copied, so the snapshot holds exactly the
+ * patient's readings before that position. The {@link Rollup}s made by a
+ * {@link RetentionCompactor} are included, taken together with the raw samples they replaced.
+ * Versions 1 and 2 of the format, without rollups and without log positions, are still read.
+ */
+public final class SnapshotWriter {
+    static final int MAGIC = 0x50534E50; // "PSNP"
+    static final int VERSION = 3;
+
+    private SnapshotWriter() {
+    }
+
+    /**
+     * Writes a snapshot of the storage to a file, replacing it if it exists.
+     *
+     * @param storage the storage to dump
+     * @param file    the file to write
+     * @return the number of samples written
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(DataStorage storage, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return write(storage, out);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the storage to a stream. The stream is flushed but not closed.
+     * Ingestion may continue while the snapshot is written; each column is written as it
+     * was when it was reached.
+     *
+     * @param storage the storage to dump
+     * @param stream  the stream to write to
+     * @return the number of samples written
+     * @throws IOException if the stream cannot be written
+     */
+    public static long write(DataStorage storage, OutputStream stream) throws IOException {
+        return write(storage, stream, -1, patientId -> 0);
+    }
+
+    /**
+     * Writes a snapshot of the storage that records where it stops in a write-ahead log.
+     *
+     * @param storage     the storage to dump
+     * @param stream      the stream to write to
+     * @param logSegment  the log segment the positions refer to
+     * @param logPosition returns, for a patient ID, the number of readings logged so far in that
+     *                    segment by the log stripe of that patient; called while the patient is
+     *                    locked, so the storage cannot log that patient's readings
+     * @return the number of samples written
+     * @throws IOException if the stream cannot be written
+     */
+    static long write(DataStorage storage, OutputStream stream, long logSegment, IntToLongFunction logPosition)
+            throws IOException {
+        List<Patient> patients = storage.getAllPatients();
+        // the dictionary uses the type codes of this process, so indexes are stable for the whole file
+        int types = RecordTypeTable.size();
+
+        BufferedOutputStream out = new BufferedOutputStream(stream, 1 << 16);
+        writeInt(out, MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, logSegment + 1);
+        writeVarLong(out, types);
+        for (int typeCode = 0; typeCode < types; typeCode++) {
+            byte[] name = RecordTypeTable.nameOf(typeCode).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, name.length);
+            out.write(name);
+        }
+        writeVarLong(out, patients.size());
+        long samples = 0;
+        for (Patient patient : patients) {
+            samples += writePatient(out, patient, types, logPosition);
+        }
+        out.flush();
+        return samples;
+    }
+
+    private static long writePatient(OutputStream out, Patient patient, int types, IntToLongFunction logPosition)
+            throws IOException {
+        List<RecordSlice> slices = new ArrayList<>();
+        List<Integer> typeCodes = new ArrayList<>();
+        List<List<Rollup>> rollups = new ArrayList<>();
+        List<Integer> rollupTypeCodes = new ArrayList<>();
+        long position;
+        // the storage appends and logs a reading, and compaction moves samples to rollups, under
+        // this lock, so the slices, the rollups and the position agree
+        synchronized (patient) {
+            TimeSeriesColumn[] columns = patient.rawColumns();
+            for (int typeCode = 0; typeCode < Math.min(columns.length, types); typeCode++) {
+                if (columns[typeCode] != null) {
+                    slices.add(columns[typeCode].slice(patient.getPatientId(), RecordTypeTable.nameOf(typeCode),
+                            Long.MIN_VALUE, Long.MAX_VALUE));
+                    typeCodes.add(typeCode);
+                }
+            }
+            RollupColumn[] summaries = patient.rollupColumns();
+            for (int typeCode = 0; typeCode < Math.min(summaries.length, types); typeCode++) {
+                if (summaries[typeCode] != null && summaries[typeCode].size() > 0) {
+                    rollups.add(summaries[typeCode].rollups(Long.MIN_VALUE, Long.MAX_VALUE));
+                    rollupTypeCodes.add(typeCode);
+                }
+            }
+            position = logPosition.applyAsLong(patient.getPatientId());
+        }
+        int patientId = patient.getPatientId();
+        writeVarLong(out, ((patientId << 1) ^ (patientId >> 31)) & 0xFFFFFFFFL);
+        writeVarLong(out, position);
+        writeVarLong(out, slices.size());
+        long samples = 0;
+        for (int s = 0; s < slices.size(); s++) {
+            RecordSlice slice = slices.get(s);
+            int count = slice.size();
+            long[] timestamps = new long[count];
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = slice.timestampAt(i);
+                values[i] = slice.valueAt(i);
+            }
+            byte[] encoded = GorillaCodec.encode(timestamps, values, 0, count);
+            writeVarLong(out, typeCodes.get(s));
+            writeVarLong(out, count);
+            writeVarLong(out, encoded.length);
+            out.write(encoded);
+            samples += count;
+        }
+        writeVarLong(out, rollups.size());
+        for (int r = 0; r < rollups.size(); r++) {
+            writeVarLong(out, rollupTypeCodes.get(r));
+            writeVarLong(out, rollups.get(r).size());
+            long previous = 0;
+            for (Rollup rollup : rollups.get(r)) {
+                writeVarLong(out, rollup.getTimestamp() - previous);
+                previous = rollup.getTimestamp();
+                writeLong(out, Double.doubleToLongBits(rollup.getMin()));
+                writeLong(out, Double.doubleToLongBits(rollup.getMax()));
+                writeLong(out, Double.doubleToLongBits(rollup.getMean()));
+                writeVarLong(out, rollup.getCount());
+            }
+        }
+        return samples;
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
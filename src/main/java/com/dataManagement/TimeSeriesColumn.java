@@ -0,0 +1,322 @@
+package com.dataManagement;
+
+import java.util.Arrays;
+
+/**
+ * Growable pair of primitive arrays holding the samples of one record type for one patient.
+ * Timestamps and values are stored in parallel {@code long[]} and {@code double[]} arrays,
+ * so a sample costs 16 bytes instead of a whole {@link PatientRecord} object.
+ *
+ * Samples are kept ordered by timestamp, which lets time-range lookups use binary search.
+ *
+ * A column has a single writer at a time (callers serialize {@link #add}) and any number
+ * of lock-free readers. Samples are never moved inside an array that has been published:
+ * in-order samples are written past the published size. A late sample goes into a small
+ * sorted side buffer, which is copied on each insert and merged into fresh main arrays
+ * once it holds about the square root of the column's size, so a late sample costs
+ * O(sqrt n) copying on average instead of a copy of the whole column. Reads see the
+ * main arrays and the side buffer merged; a range with no late samples is still served
+ * as a view over the main arrays. The arrays, the side buffer and the size are read
+ * through one holder, so readers always see a consistent set of samples.
+ */
+public class TimeSeriesColumn {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_LATE_CAPACITY = 16;
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    /**
+     * The main arrays, of which the first {@code size} samples are valid, and the side
+     * buffer of late samples, which is exactly as long as the samples it holds and never
+     * changes. A holder is replaced when the main arrays grow or the side buffer changes;
+     * appends only raise {@code size}, written after the sample itself.
+     */
+    private static final class Buffer {
+        final long[] timestamps;
+        final double[] values;
+        final long[] lateTimestamps;
+        final double[] lateValues;
+        volatile int size;
+
+        Buffer(long[] timestamps, double[] values, long[] lateTimestamps, double[] lateValues, int size) {
+            this.timestamps = timestamps;
+            this.values = values;
+            this.lateTimestamps = lateTimestamps;
+            this.lateValues = lateValues;
+            this.size = size;
+        }
+    }
+
+    private volatile Buffer buffer;
+    // raised after each late sample is published, so compaction can tell whether only appends happened
+    private volatile int lateAdds;
+
+    /**
+     * Creates an empty column with a small initial capacity.
+     */
+    public TimeSeriesColumn() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty column able to hold {@code capacity} samples before growing.
+     *
+     * @param capacity the initial capacity
+     */
+    public TimeSeriesColumn(int capacity) {
+        int initial = Math.max(capacity, 1);
+        this.buffer = new Buffer(new long[initial], new double[initial], NO_TIMESTAMPS, NO_VALUES, 0);
+    }
+
+    /**
+     * Adds a sample to the column, growing the arrays if needed.
+     * In-order samples are appended at the end. A sample older than the latest one
+     * (e.g. a late WebSocket message) is kept at its sorted position, after any samples
+     * with the same timestamp, without disturbing existing readers and views.
+     * Calls must not run concurrently with each other.
+     *
+     * @param timestamp the time of the sample, in milliseconds since UNIX epoch
+     * @param value     the measured value
+     */
+    public void add(long timestamp, double value) {
+        Buffer b = buffer;
+        int n = b.size;
+        if (n > 0 && timestamp < b.timestamps[n - 1]) {
+            addLate(b, n, timestamp, value);
+            return;
+        }
+        if (n == b.timestamps.length) {
+            b = new Buffer(Arrays.copyOf(b.timestamps, n * 2), Arrays.copyOf(b.values, n * 2),
+                    b.lateTimestamps, b.lateValues, n);
+            b.timestamps[n] = timestamp;
+            b.values[n] = value;
+            b.size = n + 1;
+            buffer = b;
+        } else {
+            b.timestamps[n] = timestamp;
+            b.values[n] = value;
+            b.size = n + 1;
+        }
+    }
+
+    private void addLate(Buffer b, int n, long timestamp, double value) {
+        int late = b.lateTimestamps.length;
+        int position = upperBound(b.lateTimestamps, late, timestamp);
+        long[] lateTs = new long[late + 1];
+        double[] lateVs = new double[late + 1];
+        System.arraycopy(b.lateTimestamps, 0, lateTs, 0, position);
+        System.arraycopy(b.lateValues, 0, lateVs, 0, position);
+        lateTs[position] = timestamp;
+        lateVs[position] = value;
+        System.arraycopy(b.lateTimestamps, position, lateTs, position + 1, late - position);
+        System.arraycopy(b.lateValues, position, lateVs, position + 1, late - position);
+        Buffer next = new Buffer(b.timestamps, b.values, lateTs, lateVs, n);
+        if (late + 1 >= Math.max(MIN_LATE_CAPACITY, (int) Math.sqrt(n))) {
+            int total = n + late + 1;
+            int capacity = b.timestamps.length;
+            while (capacity < total) {
+                capacity *= 2;
+            }
+            long[] ts = new long[capacity];
+            double[] vs = new double[capacity];
+            merge(next, 0, n, 0, late + 1, ts, vs);
+            next = new Buffer(ts, vs, NO_TIMESTAMPS, NO_VALUES, total);
+        }
+        buffer = next;
+        lateAdds++;
+    }
+
+    /**
+     * Merges main samples {@code [mainFrom, mainTo)} and late samples {@code [lateFrom, lateTo)}
+     * of a holder into the start of the given arrays. On equal timestamps main samples come
+     * first, as they were added before any late one with that timestamp.
+     */
+    private static void merge(Buffer b, int mainFrom, int mainTo, int lateFrom, int lateTo,
+                              long[] ts, double[] vs) {
+        int out = 0;
+        int i = mainFrom;
+        int j = lateFrom;
+        while (i < mainTo && j < lateTo) {
+            if (b.lateTimestamps[j] < b.timestamps[i]) {
+                ts[out] = b.lateTimestamps[j];
+                vs[out++] = b.lateValues[j++];
+            } else {
+                ts[out] = b.timestamps[i];
+                vs[out++] = b.values[i++];
+            }
+        }
+        System.arraycopy(b.timestamps, i, ts, out, mainTo - i);
+        System.arraycopy(b.values, i, vs, out, mainTo - i);
+        out += mainTo - i;
+        System.arraycopy(b.lateTimestamps, j, ts, out, lateTo - j);
+        System.arraycopy(b.lateValues, j, vs, out, lateTo - j);
+    }
+
+    /**
+     * Returns the number of late samples that come before a position of the merged column.
+     * Late sample {@code j} sits at {@code j} plus the number of main samples not after it.
+     */
+    private static int lateBefore(Buffer b, int n, int index) {
+        int low = 0;
+        int high = b.lateTimestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mid + upperBound(b.timestamps, n, b.lateTimestamps[mid]) < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first sample with a timestamp greater than or equal to the given one.
+     *
+     * @param timestamp the timestamp to search for
+     * @return an index between 0 and {@link #size()} inclusive
+     */
+    public int lowerBound(long timestamp) {
+        Buffer b = buffer;
+        return lowerBound(b.timestamps, b.size, timestamp)
+                + lowerBound(b.lateTimestamps, b.lateTimestamps.length, timestamp);
+    }
+
+    /**
+     * Returns the index of the first sample with a timestamp strictly greater than the given one.
+     *
+     * @param timestamp the timestamp to search for
+     * @return an index between 0 and {@link #size()} inclusive
+     */
+    public int upperBound(long timestamp) {
+        Buffer b = buffer;
+        return upperBound(b.timestamps, b.size, timestamp)
+                + upperBound(b.lateTimestamps, b.lateTimestamps.length, timestamp);
+    }
+
+    private static int lowerBound(long[] timestamps, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(long[] timestamps, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a read-only view of the samples within a time range, both ends inclusive.
+     * The bounds are found by binary search, and no samples are copied unless late
+     * samples not merged yet fall within the range. The view reflects the column at the
+     * time of the call and is not affected by later additions.
+     *
+     * @param patientId  the patient the column belongs to
+     * @param recordType the record type name of the column
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a list view over the matching samples
+     */
+    RecordSlice slice(int patientId, String recordType, long startTime, long endTime) {
+        Buffer b = buffer;
+        int n = b.size;
+        int from = lowerBound(b.timestamps, n, startTime);
+        int to = Math.max(from, upperBound(b.timestamps, n, endTime));
+        int late = b.lateTimestamps.length;
+        int lateFrom = lowerBound(b.lateTimestamps, late, startTime);
+        int lateTo = Math.max(lateFrom, upperBound(b.lateTimestamps, late, endTime));
+        if (lateFrom == lateTo) {
+            return new RecordSlice(patientId, recordType, b.timestamps, b.values, from, to);
+        }
+        int count = to - from + lateTo - lateFrom;
+        long[] ts = new long[count];
+        double[] vs = new double[count];
+        merge(b, from, to, lateFrom, lateTo, ts, vs);
+        return new RecordSlice(patientId, recordType, ts, vs, 0, count);
+    }
+
+    /**
+     * Returns the number of late samples added so far. If it has not changed since a
+     * {@link #slice} was taken, every sample added since then follows the slice's samples.
+     *
+     * @return the count of samples added out of order
+     */
+    int lateAdds() {
+        return lateAdds;
+    }
+
+    /**
+     * Returns a new column holding the samples of a slice from {@code from} onwards. Used
+     * by compaction to drop the oldest samples without disturbing readers of this column.
+     *
+     * @param samples a slice of all samples of a column
+     * @param from    the index of the first sample to keep
+     * @return a new column with the remaining samples
+     */
+    static TimeSeriesColumn tail(RecordSlice samples, int from) {
+        int kept = samples.size() - from;
+        TimeSeriesColumn column = new TimeSeriesColumn(Math.max(INITIAL_CAPACITY, kept * 2));
+        Buffer target = column.buffer;
+        samples.copyTo(from, target.timestamps, target.values);
+        target.size = kept;
+        return column;
+    }
+
+    public int size() {
+        Buffer b = buffer;
+        return b.size + b.lateTimestamps.length;
+    }
+
+    public long timestampAt(int index) {
+        Buffer b = buffer;
+        int late = lateAt(b, index);
+        return late >= 0 ? b.lateTimestamps[late] : b.timestamps[index - lateBefore(b, b.size, index)];
+    }
+
+    public double valueAt(int index) {
+        Buffer b = buffer;
+        int late = lateAt(b, index);
+        return late >= 0 ? b.lateValues[late] : b.values[index - lateBefore(b, b.size, index)];
+    }
+
+    /** Returns the late sample at a position of the merged column, or -1 if a main sample is there. */
+    private static int lateAt(Buffer b, int index) {
+        if (b.lateTimestamps.length == 0) {
+            return -1;
+        }
+        int n = b.size;
+        int j = lateBefore(b, n, index);
+        if (j < b.lateTimestamps.length && j + upperBound(b.timestamps, n, b.lateTimestamps[j]) == index) {
+            return j;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes taken by the backing arrays, including unused capacity.
+     *
+     * @return the approximate heap footprint of the column's data
+     */
+    public long footprintBytes() {
+        Buffer b = buffer;
+        return (long) (b.timestamps.length + b.lateTimestamps.length) * Long.BYTES
+                + (long) (b.values.length + b.lateValues.length) * Double.BYTES;
+    }
+}
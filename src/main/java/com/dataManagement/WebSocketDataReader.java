@@ -9,10 +9,14 @@ import org.java_websocket.handshake.ServerHandshake;
 /**
  * Implementation of DataReader that reads patient data via a WebSocket connection.
  * Connects to a WebSocket server and streams patient data into the provided DataStorage.
+ * Received readings pass through an {@link IngestionQueue}, so the socket keeps being read
+ * while the storage is busy.
  */
 public class WebSocketDataReader implements DataReader{
     private URI serverPort;
+    private final boolean binary;
     private WebSocketClient client;
+    private IngestionQueue ingestionQueue;
     /**
      * Constructs a WebSocketDataReader with the given WebSocket server URI.
      *
@@ -20,7 +24,18 @@ public class WebSocketDataReader implements DataReader{
      * @throws URISyntaxException if the given port string is not a valid URI
      */
     public WebSocketDataReader(String port) throws URISyntaxException {
+        this(port, false);
+    }
+    /**
+     * Constructs a WebSocketDataReader that may receive binary samples.
+     *
+     * @param port   the URI string of the WebSocket server to connect to
+     * @param binary true to ask the server for binary samples instead of text
+     * @throws URISyntaxException if the given port string is not a valid URI
+     */
+    public WebSocketDataReader(String port, boolean binary) throws URISyntaxException {
         this.serverPort = new URI(port);
+        this.binary = binary;
     }
     /**
      * Establishes a blocking connection to the WebSocket server and starts reading data,
@@ -31,22 +46,39 @@ public class WebSocketDataReader implements DataReader{
      */
     @Override
     public void readData(DataStorage dataStorage) throws IOException{
-        this.client = new WebSocketPatientClient(serverPort, dataStorage);
+        this.ingestionQueue = new IngestionQueue(dataStorage);
+        this.client = new WebSocketPatientClient(serverPort, ingestionQueue, binary);
         try{
             this.client.connectBlocking();
         } catch(InterruptedException  e){
             throw new IOException("Failed to connect to WebSocket server", e);
         }
     }
+    /**
+     * Returns the queue between the connection and the storage, e.g. to watch its depth and lag.
+     *
+     * @return the ingestion queue, or null before {@link #readData(DataStorage)} is called
+     */
+    public IngestionQueue getIngestionQueue() {
+        return ingestionQueue;
+    }
     /**
      * Stops reading data by closing the WebSocket connection if it is open.
+     * Readings already received are applied to the storage before this returns.
      *
      * @throws IOException if an IOexception error occurs during the closing of the connection
      */
     @Override
     public void stopReading() throws IOException{
         if (client != null && client.isOpen()) {
-            this.client.close();
+            try {
+                this.client.closeBlocking();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ingestionQueue != null) {
+            ingestionQueue.close();
         }
     }
 }
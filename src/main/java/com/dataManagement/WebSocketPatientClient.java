@@ -1,17 +1,115 @@
 package com.dataManagement;
 
-import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 /**
  * WebSocket client for receiving patient data updates in real-time.
  * Connects to a WebSocket server and updates the given DataStorage with incoming patient records.
+ *
+ * Incoming readings are collected in a {@link PatientDataBatch} and handed to the storage on
+ * the client's own read thread: when the batch is full, with the first message that arrives
+ * {@value #FLUSH_INTERVAL_MILLIS} ms or more after the oldest pending reading, and when the
+ * connection closes. {@link #flush()} hands them over at any other time. A slow storage
+ * therefore only holds up the connection that writes to it. So that a quiet feed does not
+ * leave readings pending, a timer shared by all clients checks every
+ * {@value #FLUSH_INTERVAL_MILLIS} ms for readings pending that long and hands their flush
+ * to a pool thread; the timer itself never waits for a client or a storage.
+ * A client given an {@link IngestionQueue} hands its batches to the queue instead, so the
+ * read thread never waits for the storage. Its pending readings are also offered to the
+ * queue every {@value #FLUSH_INTERVAL_MILLIS} ms from a timer shared by all clients, which
+ * only hands them over if the queue can take them without waiting, so a reading reaches
+ * the queue about one flush interval after it arrives even when the feed goes quiet.
+ *
+ * A client can ask for the {@value #BINARY_PROTOCOL} subprotocol, in which the server sends
+ * packed binary samples instead of text lines, see {@link PatientMessageDecoder}. A server
+ * that does not offer it keeps sending text, which is decoded as before.
+ *
+ * When the connection is lost, a {@link ReconnectManager} schedules reconnect attempts on a
+ * timer shared by all clients that runs nothing else, with exponential backoff and jitter,
+ * and gives up after a number of failed attempts in a row until {@link #resumeReconnecting()}
+ * is called. On
+ * reconnecting, the client sends the {@value #REPLAY_HEADER} header with the timestamp of the
+ * newest reading it received, less a margin of {@value #REPLAY_MARGIN_MILLIS} ms for readings
+ * that were still in flight, so the server can replay what was missed. Replayed readings
+ * that had already been received are skipped by a {@link ReplayFilter}.
  */
 public class WebSocketPatientClient extends WebSocketClient{
-    private final DataStorage dataStorage;
-    private int attemptsToReconnect = 0;
+    /** Where a client is in its connect and reconnect cycle. */
+    public enum ConnectionState {
+        /** Connecting, for the first time or in a reconnect attempt. */
+        CONNECTING,
+        /** Connected. */
+        CONNECTED,
+        /** Waiting for the next reconnect attempt. */
+        WAITING,
+        /** Stopped reconnecting after too many failed attempts in a row. */
+        GAVE_UP,
+        /** Closed on purpose; does not reconnect. */
+        CLOSED
+    }
+
+    /** The subprotocol for binary samples; the same name as in the simulator's WebSocket output. */
+    public static final String BINARY_PROTOCOL = "patient-samples-binary-v1";
+    private static final int BATCH_SIZE = 1024;
+    /** The handshake header that asks for a replay; the same name as in the simulator's WebSocket output. */
+    public static final String REPLAY_HEADER = "X-Patient-Replay-Since";
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final long REPLAY_MARGIN_MILLIS = 5_000;
+    /** Runs the reconnect attempts of all clients, and nothing that waits for a storage. */
+    private static final ScheduledExecutorService RECONNECT_TIMER = daemonScheduler("websocket-client-reconnect");
+    /** Offers the pending readings of all queue clients and finds due storage flushes, never waiting. */
+    private static final ScheduledExecutorService FLUSH_TIMER = daemonScheduler("websocket-client-flusher");
+    /** Runs the storage flushes found by the timer, one thread per client being flushed at most. */
+    private static final ExecutorService STORAGE_FLUSHER = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "websocket-client-storage-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Consumer<PatientDataBatch> sink;
+    private final IngestionQueue ingestionQueue;
+    /** Guards the batch, the decoder and the replay filter. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PatientDataBatch batch = new PatientDataBatch(BATCH_SIZE);
+    private final PatientMessageDecoder decoder = new PatientMessageDecoder();
+    private final CsvRecordParser.RowHandler addToBatch = this::addToBatch;
+    private final ReplayFilter replayFilter = new ReplayFilter();
+    private final ReconnectManager reconnectManager = new ReconnectManager(RECONNECT_TIMER, this::reconnectWithReplay,
+            new ReconnectBackoff(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS), DEFAULT_MAX_ATTEMPTS);
+    private long pendingSinceNanos;
+    private ScheduledFuture<?> flushTask;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private volatile long replaySince = Long.MIN_VALUE;
+    private volatile boolean attemptRunning;
+    private volatile long duplicates;
+
+    private static ScheduledExecutorService daemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Constructs a new WebSocketPatientClient.
@@ -21,47 +119,216 @@ public class WebSocketPatientClient extends WebSocketClient{
      */
     public WebSocketPatientClient(URI port, DataStorage dataStorage){
         super(port);
-        this.dataStorage = dataStorage;
+        this.sink = dataStorage::addPatientData;
+        this.ingestionQueue = null;
+    }
+
+    /**
+     * Constructs a new WebSocketPatientClient that may ask for binary samples.
+     *
+     * @param port        the URI of the WebSocket server to connect to
+     * @param dataStorage the DataStorage instance to update with received patient data
+     * @param binary      true to ask the server for the {@value #BINARY_PROTOCOL} subprotocol
+     */
+    public WebSocketPatientClient(URI port, DataStorage dataStorage, boolean binary){
+        // the empty protocol accepts a server that does not know the binary one
+        super(port, binary
+                ? new Draft_6455(Collections.emptyList(),
+                        List.<IProtocol>of(new Protocol(BINARY_PROTOCOL), new Protocol("")))
+                : new Draft_6455());
+        this.sink = dataStorage::addPatientData;
+        this.ingestionQueue = null;
+    }
+
+    /**
+     * Constructs a new WebSocketPatientClient that passes its readings through an ingestion queue.
+     *
+     * @param port           the URI of the WebSocket server to connect to
+     * @param ingestionQueue the queue that applies the received readings to its storage
+     * @param binary         true to ask the server for the {@value #BINARY_PROTOCOL} subprotocol
+     */
+    public WebSocketPatientClient(URI port, IngestionQueue ingestionQueue, boolean binary){
+        super(port, binary
+                ? new Draft_6455(Collections.emptyList(),
+                        List.<IProtocol>of(new Protocol(BINARY_PROTOCOL), new Protocol("")))
+                : new Draft_6455());
+        this.sink = ingestionQueue::offer;
+        this.ingestionQueue = ingestionQueue;
     }
     /**
      * Called when the WebSocket connection is opened.
-     * Resets the reconnect attempts counter.
+     * Resets the reconnect schedule and starts the timed flushes of pending readings.
      *
      * @param handshake the handshake data from the server
      */
     @Override
     public void onOpen(ServerHandshake handshake){
         System.out.println("Server is connected !");
-        attemptsToReconnect = 0;
+        reconnectManager.connected();
+        lock.lock();
+        try {
+            if (flushTask == null) {
+                flushTask = FLUSH_TIMER.scheduleWithFixedDelay(
+                        ingestionQueue != null ? this::offerPending : this::queueFlushIfDue,
+                        FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
      /**
      * Called when a new message is received from the WebSocket server.
-     * Parses the message and updates the DataStorage.
+     * Decodes the message and adds it to the pending batch for the DataStorage.
+     * A message may hold one reading or a batch of readings separated by line breaks;
+     * malformed lines are skipped and counted, see {@link #getMalformedCount()}.
      *
      * @param message the received message string in the format "patientId,measurementValue,recordType,timestamp"
      */
     @Override
     public void onMessage(String message){
-        
-        try{
-            String[] parts = message.split(",");
-            if (parts.length != 4) {
-                throw new IllegalArgumentException("Not a valid message format !");
+        lock.lock();
+        try {
+            decoder.decode(message, addToBatch);
+            flushIfDue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called when a binary message is received from the WebSocket server.
+     * Decodes its packed samples into the pending batch, or learns the type codes it defines.
+     *
+     * @param bytes the received message, see {@link PatientMessageDecoder} for its layout
+     */
+    @Override
+    public void onMessage(ByteBuffer bytes){
+        lock.lock();
+        try {
+            decoder.decodeBinary(bytes, addToBatch);
+            flushIfDue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the server agreed to send binary samples on the current connection.
+     *
+     * @return true if the {@value #BINARY_PROTOCOL} subprotocol was negotiated
+     */
+    public boolean isBinaryProtocol() {
+        IProtocol protocol = getProtocol();
+        return protocol != null && BINARY_PROTOCOL.equals(protocol.getProvidedProtocol());
+    }
+
+    private void addToBatch(int patientId, double value, int typeCode, long timestamp) {
+        if (!replayFilter.accept(patientId, typeCode, timestamp)) {
+            duplicates++;
+            return;
+        }
+        if (batch.isEmpty()) {
+            pendingSinceNanos = System.nanoTime();
+        }
+        batch.add(patientId, value, typeCode, timestamp);
+        if (batch.size() >= BATCH_SIZE) {
+            flushLocked();
+        }
+    }
+
+    private void flushIfDue() {
+        if (!batch.isEmpty() && System.nanoTime() - pendingSinceNanos >= FLUSH_INTERVAL_NANOS) {
+            flushLocked();
+        }
+    }
+
+    /** Runs on the shared flush timer, so it must never wait for the read thread or the queue. */
+    private void offerPending() {
+        if (!lock.tryLock()) {
+            // the read thread is busy with this client and flushes when it is done
+            return;
+        }
+        try {
+            if (!batch.isEmpty() && ingestionQueue.tryOffer(batch)) {
+                batch.clear();
             }
-            int patientId = Integer.parseInt(parts[0].trim());
-            double value = Double.parseDouble(parts[1].trim());
-            String type = parts[2].trim();
-            long timestamp = Long.parseLong(parts[3].trim());
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            dataStorage.addPatientData(patientId, value, type, timestamp);
-        }catch(Exception e){
-            System.out.println("The error while parsing the message: " + message);
-            e.printStackTrace();
+    /** Runs on the shared flush timer; the flush itself runs on a pool thread, as it may wait for the storage. */
+    private void queueFlushIfDue() {
+        if (!lock.tryLock()) {
+            // the read thread is busy with this client and flushes when it is done
+            return;
+        }
+        boolean due;
+        try {
+            due = !batch.isEmpty() && System.nanoTime() - pendingSinceNanos >= FLUSH_INTERVAL_NANOS;
+        } finally {
+            lock.unlock();
+        }
+        if (due && flushQueued.compareAndSet(false, true)) {
+            STORAGE_FLUSHER.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
         }
     }
+
+    /**
+     * Returns the number of readings received so far.
+     *
+     * @return the number of decoded readings
+     */
+    public long getReceivedCount() {
+        return decoder.getDecodedCount();
+    }
+
+    /**
+     * Returns the number of received lines and binary samples that could not be decoded and were skipped.
+     *
+     * @return the number of malformed entries
+     */
+    public long getMalformedCount() {
+        return decoder.getMalformedCount();
+    }
+    /**
+     * Hands the pending readings to the DataStorage, or to the ingestion queue.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLocked() {
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+            batch.clear();
+        }
+    }
+    /**
+     * Closes the connection on purpose; the client does not reconnect until
+     * {@link #resumeReconnecting()} is called.
+     */
+    @Override
+    public void close() {
+        // reconnect() closes the old connection through this method too
+        if (!attemptRunning) {
+            reconnectManager.closed();
+        }
+        super.close();
+    }
+
     /**
      * Called when the WebSocket connection is closed.
-     * Attempts to reconnect automatically.
+     * Flushes the pending readings and schedules a reconnect attempt,
+     * unless this client closed the connection itself.
      *
      * @param code   the status code indicating the reason for closure
      * @param reason the textual reason for closure
@@ -69,42 +336,90 @@ public class WebSocketPatientClient extends WebSocketClient{
      */
     @Override
     public void onClose(int code, String reason, boolean remote){
-        System.out.println("Websocket is closed. Reason: " + reason + "... Trying to reconnect..." );
-        reconnectAttempt();
+        lock.lock();
+        try {
+            // nothing arrives while disconnected: this is the newest reading before the loss
+            replaySince = replayFilter.disconnected();
+            flushLocked();
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // after close() the manager is closed and schedules nothing, whatever code the close
+        // arrives with. Otherwise the attempt is scheduled only once the read thread has
+        // finished with this connection, so it never waits for it on the shared timer
+        if (reconnectManager.connectionLost()) {
+            System.out.println("Websocket is closed. Reason: " + reason + "... Trying to reconnect...");
+        }
     }
     @Override
     public void onError(Exception ex) {
-        System.err.println("WebSocket error: " + ex.getMessage() + ". Trying to reconnect...");
-        ex.printStackTrace();
-        reconnectAttempt();
+        // errors that end the connection are followed by onClose, which reconnects
+        System.err.println("WebSocket error: " + ex.getMessage());
+    }
+
+    /** Starts one reconnect attempt, asking the server to replay what was missed. Runs on the reconnect timer. */
+    private void reconnectWithReplay() {
+        long newest = replaySince;
+        if (newest != Long.MIN_VALUE) {
+            addHeader(REPLAY_HEADER, Long.toString(newest - REPLAY_MARGIN_MILLIS));
+        }
+        attemptRunning = true;
+        try {
+            reconnect();
+        } finally {
+            attemptRunning = false;
+        }
+    }
+
+    /**
+     * Changes how this client reconnects.
+     *
+     * @param initialBackoffMillis the delay before the first reconnect attempt, in milliseconds
+     * @param maxBackoffMillis     the longest delay between two attempts, in milliseconds
+     * @param maxAttempts          the number of failed attempts in a row after which the client gives up
+     * @throws IllegalArgumentException if a delay is not positive or the maximum is below the initial delay
+     */
+    public void setReconnectPolicy(long initialBackoffMillis, long maxBackoffMillis, int maxAttempts) {
+        reconnectManager.configure(new ReconnectBackoff(initialBackoffMillis, maxBackoffMillis), maxAttempts);
     }
-     /**
-     * Attempts to reconnect to the WebSocket server up to 5 times, 
-     * waiting 3 seconds between each attempt.
-     * Runs asynchronously in a new thread.
-     */
-
-    private void reconnectAttempt(){
-        new Thread(() -> {        
-        while(attemptsToReconnect < 5){
-            try{
-                System.out.println("Trying to reconnect... Attempt " + (attemptsToReconnect+1) + "/5");
-                this.reconnectBlocking();
-                System.out.println("Reconnected successfully !");
-                attemptsToReconnect = 0;
-                break;
-            } catch(Exception e){
-                System.out.println("Error occured while executing ! ");
-                attemptsToReconnect++;
-                try{
-                    Thread.sleep(3000);
-                }catch(Exception error){
-                    error.printStackTrace();
-                }
-            }}
-        if (attemptsToReconnect == 5) {
-            System.out.println("Failed to reconnect after 5 attempts.");}
-        }).start();
 
+    /**
+     * Starts reconnecting again after the client gave up, or after it was closed.
+     *
+     * @return true if a reconnect attempt was scheduled
+     */
+    public boolean resumeReconnecting() {
+        return reconnectManager.resume();
+    }
+
+    /**
+     * Returns where the client is in its connect and reconnect cycle.
+     *
+     * @return the connection state
+     */
+    public ConnectionState getConnectionState() {
+        return reconnectManager.getState();
+    }
+
+    /**
+     * Returns the number of reconnect attempts since the last open connection.
+     *
+     * @return the number of attempts in a row
+     */
+    public int getReconnectAttempts() {
+        return reconnectManager.getFailedAttempts();
+    }
+
+    /**
+     * Returns the number of replayed readings that were skipped because they had been received before.
+     *
+     * @return the number of duplicate readings
+     */
+    public long getDuplicateCount() {
+        return duplicates;
     }
 }
@@ -0,0 +1,627 @@
+package com.dataManagement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable append-only log of the readings added to a {@link DataStorage}, with periodic
+ * snapshots, so the storage can be rebuilt quickly after a restart.
+ *
+ * Opening a log recovers the storage first: the newest snapshot is loaded and the log
+ * segments written after it are replayed. The log then registers itself as a
+ * {@link PatientDataListener} and records every reading added from then on.
+ *
+ * Readings are buffered in memory and written by a background thread in blocks (group
+ * commit): a block is written and fsynced when {@code maxBatchRecords} readings are
+ * pending or every {@code syncIntervalMillis}, whichever comes first. The buffers are
+ * striped by patient, each with its own lock, so patients logged by different threads
+ * rarely contend; a patient always uses the same stripe, which keeps its readings in
+ * order. Each block holds the buffered readings of every stripe, marked with the stripe
+ * they came from. Ingestion never waits for the disk, so at most one sync interval of
+ * readings can be lost in a crash; call {@link #sync()} to wait until everything added so far is durable. A block that
+ * cannot be written or synced is kept: whatever part of it reached the file is cut off and
+ * it is written again by the next flush, so a failed write neither loses readings nor
+ * leaves a torn block in front of later ones.
+ *
+ * On disk, the directory holds {@code wal-N.log} segments and {@code snapshot-N.bin}
+ * files, the latter in the format of {@link SnapshotWriter}. Each block of a segment
+ * carries its length and a CRC32, so a block torn by a crash is detected and ignored
+ * during replay. Record types are written by name once
+ * per segment. A snapshot {@code N} holds the whole storage as of the start of segment
+ * {@code N}, plus the readings of segment {@code N} logged before each patient was
+ * copied; it records that position, counted within the patient's stripe, per patient, and
+ * replay of segment {@code N} resumes from it, so a reading is restored exactly once even
+ * if an identical one was logged before. Snapshots are written by a thread of their own
+ * and hold the log's I/O lock only to switch segments, so group commits go on meanwhile. Older segments and snapshots are deleted once it is complete and the directory
+ * has been synced, so after a crash either the snapshot or the files it replaces are on
+ * disk; a snapshot left unfinished by a crash is deleted on open. Rollups made by a
+ * {@link RetentionCompactor} are not logged, but every snapshot holds them, so they
+ * survive recovery along with the raw samples they replaced.
+ */
+public class WriteAheadLog implements PatientDataListener, AutoCloseable {
+    private static final byte DEFINE_TYPE = 1;
+    private static final byte RECORD = 2;
+    private static final byte STRIPE = 3;
+    private static final int RECORD_BYTES = 1 + Integer.BYTES + Short.BYTES + Double.BYTES + Long.BYTES;
+    private static final int BLOCK_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int REPLAY_BATCH_SIZE = 8192;
+
+    private final DataStorage storage;
+    private final Path directory;
+    private final Stripe[] stripes;
+    private final int stripeBatchRecords;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+    private final ScheduledExecutorService snapshotExecutor;
+    private final Object ioLock = new Object();
+    // held for a whole snapshot, so only one at a time starts a segment and writes its file
+    private final Object snapshotLock = new Object();
+    private final long recoveredRecords;
+    private final long recoveryNanos;
+
+    // guarded by ioLock
+    private Segment segment;
+    private long segmentNumber;
+    private ByteBuffer outgoing;
+    // a replaced segment whose last block is not on disk yet
+    private Segment closing;
+
+    /** The readings of the patients of one stripe that are not written yet. Guarded by itself. */
+    private static final class Stripe {
+        final int index;
+        ByteBuffer pending = ByteBuffer.allocate(4096);
+        int pendingRecords;
+        // readings of this stripe logged to the current segment
+        long segmentRecords;
+        boolean[] definedTypes = new boolean[0];
+
+        Stripe(int index) {
+            this.index = index;
+        }
+    }
+
+    /** An open segment file and how much of it is known to be on disk. */
+    private static final class Segment {
+        final FileChannel channel;
+        long durableSize;
+        // a block whose write or sync failed, to be written again
+        ByteBuffer unwritten;
+
+        Segment(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Opens a log that syncs every 10 ms or 4096 readings and takes a snapshot every
+     * five minutes.
+     *
+     * @param storage   the storage to recover and then to log
+     * @param directory the directory holding the log, created if needed
+     * @throws IOException if the log cannot be read or created
+     */
+    public WriteAheadLog(DataStorage storage, Path directory) throws IOException {
+        this(storage, directory, 10, 4096, TimeUnit.MINUTES.toMillis(5));
+    }
+
+    /**
+     * Opens a log with custom group commit and snapshot settings.
+     *
+     * @param storage                the storage to recover and then to log
+     * @param directory              the directory holding the log, created if needed
+     * @param syncIntervalMillis     the longest time a reading stays buffered before it is synced
+     * @param maxBatchRecords        roughly the number of pending readings that triggers a sync early
+     * @param snapshotIntervalMillis the delay between two snapshots
+     * @throws IOException              if the log cannot be read or created
+     * @throws IllegalArgumentException if a setting is not positive
+     */
+    public WriteAheadLog(DataStorage storage, Path directory, long syncIntervalMillis, int maxBatchRecords,
+                         long snapshotIntervalMillis) throws IOException {
+        if (syncIntervalMillis <= 0 || maxBatchRecords <= 0 || snapshotIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Log settings must be positive");
+        }
+        this.storage = storage;
+        this.directory = directory;
+        // a power of two, a few per processor
+        this.stripes = new Stripe[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(i);
+        }
+        this.stripeBatchRecords = Math.max(1, maxBatchRecords / stripes.length);
+
+        Files.createDirectories(directory);
+        for (long unfinished : numbered("snapshot-", ".tmp")) {
+            Files.deleteIfExists(file("snapshot-", unfinished, ".tmp"));
+        }
+        long start = System.nanoTime();
+        List<Long> snapshots = numbered("snapshot-", ".bin");
+        List<Long> segments = numbered("wal-", ".log");
+        long base = snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+        long records = 0;
+        SnapshotDataReader.LogPositions covered = new SnapshotDataReader.LogPositions();
+        if (base >= 0) {
+            records += SnapshotDataReader.load(file("snapshot-", base, ".bin").toFile(), storage, covered);
+        }
+        long last = base;
+        for (long number : segments) {
+            if (number >= base) {
+                // the snapshot already holds the start of the segment that was written while it was taken
+                records += replay(file("wal-", number, ".log"), number == covered.segment ? covered : null);
+            }
+            last = Math.max(last, number);
+        }
+        this.recoveredRecords = records;
+        this.recoveryNanos = System.nanoTime() - start;
+
+        // never append to a segment that may end with a torn block
+        segmentNumber = last + 1;
+        segment = new Segment(openSegment(segmentNumber));
+        syncDirectory();
+        storage.addListener(this);
+        executor = newExecutor("write-ahead-log");
+        executor.scheduleWithFixedDelay(this::flushQuietly, syncIntervalMillis, syncIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        snapshotExecutor = newExecutor("write-ahead-log-snapshot");
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService newExecutor(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Buffers a reading for the next block. Called by the storage while the patient is locked.
+     */
+    @Override
+    public void onPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        int typeCode = RecordTypeTable.codeOf(recordType);
+        Stripe stripe = stripeOf(patientId);
+        boolean full;
+        synchronized (stripe) {
+            if (typeCode >= stripe.definedTypes.length || !stripe.definedTypes[typeCode]) {
+                defineType(stripe, typeCode, recordType);
+            }
+            ensureCapacity(stripe, RECORD_BYTES);
+            stripe.pending.put(RECORD)
+                    .putShort((short) typeCode)
+                    .putInt(patientId)
+                    .putDouble(measurementValue)
+                    .putLong(timestamp);
+            stripe.segmentRecords++;
+            full = ++stripe.pendingRecords >= stripeBatchRecords;
+        }
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // closing; close() writes the pending readings itself
+            }
+        }
+    }
+
+    private Stripe stripeOf(int patientId) {
+        return stripes[patientId & (stripes.length - 1)];
+    }
+
+    private static void defineType(Stripe stripe, int typeCode, String recordType) {
+        byte[] name = recordType.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(stripe, 1 + Short.BYTES + Integer.BYTES + name.length);
+        stripe.pending.put(DEFINE_TYPE).putShort((short) typeCode).putInt(name.length).put(name);
+        if (typeCode >= stripe.definedTypes.length) {
+            stripe.definedTypes = Arrays.copyOf(stripe.definedTypes,
+                    Math.max(typeCode + 1, stripe.definedTypes.length * 2));
+        }
+        stripe.definedTypes[typeCode] = true;
+    }
+
+    private static void ensureCapacity(Stripe stripe, int bytes) {
+        stripe.pending = ensureCapacity(stripe.pending, bytes);
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        return grown.put(buffer.flip());
+    }
+
+    /**
+     * Moves the buffered readings of every stripe into one block, each behind a marker of
+     * its stripe. With {@code rotate}, the stripes also start counting and defining types
+     * for a new segment, atomically with the move.
+     */
+    private ByteBuffer collect(boolean rotate) {
+        ByteBuffer block = outgoing != null ? outgoing : ByteBuffer.allocate(64 * 1024);
+        outgoing = null;
+        block.clear();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.pending.position() > 0) {
+                    block = ensureCapacity(block, 1 + Short.BYTES + stripe.pending.position());
+                    block.put(STRIPE).putShort((short) stripe.index).put(stripe.pending.flip());
+                    stripe.pending.clear();
+                    stripe.pendingRecords = 0;
+                }
+                if (rotate) {
+                    stripe.segmentRecords = 0;
+                    stripe.definedTypes = new boolean[0];
+                }
+            }
+        }
+        return block;
+    }
+
+    /** Keeps a block for the next collect unless it still waits to be written again. */
+    private void recycle(ByteBuffer block, Segment target) {
+        if (target.unwritten != block) {
+            outgoing = block;
+        }
+    }
+
+    /**
+     * Writes and fsyncs every reading buffered so far.
+     *
+     * @throws IOException if the log cannot be written; the readings are kept and written
+     *                     again by the next flush
+     */
+    public void sync() throws IOException {
+        flush();
+    }
+
+    private void flush() throws IOException {
+        synchronized (ioLock) {
+            flushScheduled.set(false);
+            ByteBuffer block = collect(false);
+            Segment target = segment;
+            IOException error = null;
+            if (closing != null) {
+                try {
+                    finishClosing(null);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            try {
+                append(target, block);
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            } finally {
+                recycle(block, target);
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Writes a block, after the one that failed before if any, and fsyncs it. If that fails,
+     * both are kept in {@code target} and whatever part reached the file is cut off before
+     * the next attempt.
+     */
+    private void append(Segment target, ByteBuffer block) throws IOException {
+        ByteBuffer data = target.unwritten == null ? block : concat(target.unwritten, block);
+        boolean written = false;
+        try {
+            if (data != null && data.position() > 0) {
+                if (target.unwritten != null) {
+                    target.channel.truncate(target.durableSize);
+                }
+                writeBlock(target.channel, data);
+                target.channel.force(false);
+                target.durableSize = target.channel.position();
+            }
+            written = true;
+        } finally {
+            target.unwritten = written ? null : data;
+        }
+    }
+
+    private static ByteBuffer concat(ByteBuffer first, ByteBuffer second) {
+        if (second == null || second.position() == 0) {
+            return first;
+        }
+        ByteBuffer joined = ByteBuffer.allocate(first.position() + second.position());
+        return joined.put(first.duplicate().flip()).put(second.duplicate().flip());
+    }
+
+    /** Writes the rest of the replaced segment, then closes it. */
+    private void finishClosing(ByteBuffer block) throws IOException {
+        append(closing, block);
+        closing.channel.close();
+        closing = null;
+    }
+
+    private static void writeBlock(FileChannel channel, ByteBuffer block) throws IOException {
+        // the block itself is left as it is, so it can be written again if this fails
+        ByteBuffer data = block.duplicate().flip();
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        header.putInt(data.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] parts = {header, data};
+        while (data.hasRemaining()) {
+            channel.write(parts);
+        }
+    }
+
+    /**
+     * Starts a new segment and writes a snapshot of the storage, then deletes the segments
+     * and snapshots it replaces. Ingestion and flushes continue while the snapshot is
+     * written; only the switch to the new segment holds up flushes.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            // segments are only switched here, so the number cannot change under us
+            long number;
+            synchronized (ioLock) {
+                number = segmentNumber + 1;
+            }
+            FileChannel next = openSegment(number);
+            try {
+                // the new segment must survive a crash before anything is logged to it
+                syncDirectory();
+            } catch (IOException e) {
+                next.close();
+                Files.deleteIfExists(file("wal-", number, ".log"));
+                throw e;
+            }
+            synchronized (ioLock) {
+                if (closing != null) {
+                    // the segment replaced by the last snapshot must be complete before another one is
+                    try {
+                        finishClosing(null);
+                    } catch (IOException e) {
+                        next.close();
+                        Files.deleteIfExists(file("wal-", number, ".log"));
+                        throw e;
+                    }
+                }
+                Segment previous = segment;
+                // readings from now on go to the new segment, which defines its types again
+                ByteBuffer block = collect(true);
+                segment = new Segment(next);
+                segmentNumber = number;
+                // if this fails, flushes keep trying, and the snapshot is taken by a later attempt
+                closing = previous;
+                try {
+                    finishClosing(block);
+                } finally {
+                    recycle(block, previous);
+                }
+            }
+            writeSnapshot(number);
+            // only delete what the snapshot replaces once its name is durable
+            syncDirectory();
+            for (long old : numbered("wal-", ".log")) {
+                if (old < number) {
+                    Files.deleteIfExists(file("wal-", old, ".log"));
+                }
+            }
+            for (long old : numbered("snapshot-", ".bin")) {
+                if (old < number) {
+                    Files.deleteIfExists(file("snapshot-", old, ".bin"));
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(long number) throws IOException {
+        Path temporary = directory.resolve("snapshot-" + number + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SnapshotWriter.write(storage, Channels.newOutputStream(channel), number, this::segmentPosition);
+            channel.force(false);
+        }
+        Files.move(temporary, file("snapshot-", number, ".bin"), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private long segmentPosition(int patientId) {
+        Stripe stripe = stripeOf(patientId);
+        synchronized (stripe) {
+            return stripe.segmentRecords;
+        }
+    }
+
+    /**
+     * Replays one segment into the storage, stopping at the first incomplete or corrupt block.
+     * Readings of a patient before its position in {@code covered}, if given, are skipped.
+     */
+    private long replay(Path path, SnapshotDataReader.LogPositions covered) throws IOException {
+        long records = 0;
+        // readings so far per stripe; segments without stripe markers count as stripe 0
+        long[] positions = new long[1];
+        int stripe = 0;
+        PatientDataBatch batch = new PatientDataBatch(REPLAY_BATCH_SIZE);
+        int[] typeCodes = new int[0];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (data.remaining() >= BLOCK_HEADER_BYTES) {
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length < 0 || length > data.remaining()) {
+                    break;
+                }
+                ByteBuffer block = data.slice();
+                block.limit(length);
+                crc.reset();
+                crc.update(block.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                data.position(data.position() + length);
+                while (block.hasRemaining()) {
+                    byte kind = block.get();
+                    int code = block.getShort();
+                    if (kind == STRIPE) {
+                        stripe = code;
+                        if (stripe >= positions.length) {
+                            positions = Arrays.copyOf(positions, stripe + 1);
+                        }
+                        continue;
+                    }
+                    if (kind == DEFINE_TYPE) {
+                        byte[] name = new byte[block.getInt()];
+                        block.get(name);
+                        if (code >= typeCodes.length) {
+                            typeCodes = Arrays.copyOf(typeCodes, code + 1);
+                        }
+                        typeCodes[code] = RecordTypeTable.codeOf(new String(name, StandardCharsets.UTF_8));
+                        continue;
+                    }
+                    int patientId = block.getInt();
+                    double value = block.getDouble();
+                    long timestamp = block.getLong();
+                    if (covered != null && positions[stripe]++ < covered.of(patientId)) {
+                        continue;
+                    }
+                    batch.add(patientId, value, typeCodes[code], timestamp);
+                    records++;
+                    if (batch.size() == REPLAY_BATCH_SIZE) {
+                        storage.addPatientData(batch);
+                        batch.clear();
+                    }
+                }
+            }
+        }
+        storage.addPatientData(batch);
+        return records;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return openSegmentChannel(file("wal-", number, ".log"));
+    }
+
+    /**
+     * Creates a new segment file and opens it for writing. Called by the constructor too.
+     * Subclasses may wrap the channel, e.g. to make writes fail in tests.
+     *
+     * @param file the segment file, which must not exist yet
+     * @return a channel positioned at the start of the new file
+     * @throws IOException if the file cannot be created
+     */
+    protected FileChannel openSegmentChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private Path file(String prefix, long number, String suffix) {
+        return directory.resolve(prefix + number + suffix);
+    }
+
+    private List<Long> numbered(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(prefix.length(), name.length() - suffix.length()))));
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Write-ahead log flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Write-ahead log snapshot failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of readings restored when the log was opened.
+     *
+     * @return the number of records loaded from the snapshot and replayed from the log
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * Returns how long recovery took when the log was opened.
+     *
+     * @return the recovery time in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(recoveryNanos);
+    }
+
+    /**
+     * Stops logging, then writes and fsyncs the buffered readings and closes the segment.
+     *
+     * @throws IOException if the last readings cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        storage.removeListener(this);
+        snapshotExecutor.shutdown();
+        executor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+        } finally {
+            synchronized (ioLock) {
+                if (closing != null) {
+                    closing.channel.close();
+                }
+                segment.channel.close();
+            }
+        }
+    }
+}
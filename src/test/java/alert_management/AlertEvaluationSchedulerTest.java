@@ -0,0 +1,45 @@
+package alert_management;
+
+import com.alerts.AlertEvaluationScheduler;
+import com.alerts.AlertGenerator;
+import com.dataManagement.DataStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code AlertEvaluationScheduler}.
+ *
+ * This code verifies:
+ *
+ *   every patient is evaluated exactly once per pass,
+ *   alerts from all worker threads are collected.
+ *
+ */
+
+class AlertEvaluationSchedulerTest {
+
+    @Test
+    void evaluatesEveryPatientOnce() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        long ts = System.currentTimeMillis() - 1_000;
+        for (int id = 1; id <= 500; id++) {
+            storage.addPatientData(id, 190, "SystolicPressure", ts);   // one alert per patient
+        }
+        AlertGenerator generator = new AlertGenerator(storage);
+
+        AlertEvaluationScheduler.PassResult result;
+        try (AlertEvaluationScheduler scheduler = new AlertEvaluationScheduler(generator, 4)) {
+            result = scheduler.evaluateAll(storage.getAllPatients());
+        }
+
+        assertEquals(500, result.getPatientCount());
+        assertEquals(500, result.getAlertCount());
+        Set<String> patients = new HashSet<>();
+        generator.getGeneratedAlerts().forEach(a -> patients.add(a.getPatientId()));
+        assertEquals(500, patients.size());
+    }
+}
@@ -17,7 +17,8 @@ import java.util.List;
  *   alerts are triggered when peaks above certain
  *   values happen,
  *   alerts are not triggered when
- *   values below certain.
+ *   values below certain,
+ *   large windows and the optional z-score threshold work.
  *
  */
 
@@ -77,4 +78,38 @@ public class ECGDataAlertTest {
 
         assertTrue(alerts.isEmpty());
     }
+
+    //window of 2500 samples (10 s of 250 Hz ECG), one spike at the end
+    @Test
+    void largeWindow_detectsSpike() {
+        ECGDataAlert trigger = new ECGDataAlert(2500, 1.5, 0);
+
+        List<PatientRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            records.add(rec(4, 10 + (i % 3), i));
+        }
+        records.add(rec(4, 40, 5000));
+
+        List<Alert> alerts = trigger.evaluate(4, records);
+
+        assertEquals(1, alerts.size());
+        assertEquals(5000, alerts.get(0).getTimestamp());
+    }
+
+    //drop below the mean is caught by the z-score, not by the factor
+    @Test
+    void zScore_detectsDrop() {
+        ECGDataAlert trigger = new ECGDataAlert(50, 1.5, 4.0);
+
+        List<PatientRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(rec(5, 10 + (i % 2), i));
+        }
+        records.add(rec(5, 2, 100));
+
+        List<Alert> alerts = trigger.evaluate(5, records);
+
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("z-score"));
+    }
 }
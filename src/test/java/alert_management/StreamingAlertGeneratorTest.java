@@ -0,0 +1,98 @@
+package alert_management;
+
+import com.alerts.Alert;
+import com.alerts.StreamingAlertGenerator;
+import com.dataManagement.DataStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code StreamingAlertGenerator}.
+ *
+ * This code verifies:
+ *
+ *   alerts are generated as data is added to the storage,
+ *   each alert is generated exactly once,
+ *   state is kept per patient.
+ *
+ */
+
+class StreamingAlertGeneratorTest {
+
+    //alert fires on arrival, once
+    @Test
+    void systolicAlert_firesOnce() {
+        DataStorage storage = new DataStorage();
+        StreamingAlertGenerator generator = new StreamingAlertGenerator(storage);
+
+        storage.addPatientData(1, 190, "SystolicPressure", 1_000);
+        storage.addPatientData(1, 120, "SystolicPressure", 2_000);
+        storage.addPatientData(1, 121, "SystolicPressure", 3_000);
+
+        List<Alert> alerts = generator.getGeneratedAlerts();
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("Critical threshold breached for Systolic"));
+    }
+
+    //trend across three readings
+    @Test
+    void diastolicTrend() {
+        DataStorage storage = new DataStorage();
+        StreamingAlertGenerator generator = new StreamingAlertGenerator(storage);
+
+        storage.addPatientData(2, 70, "DiastolicPressure", 1);
+        storage.addPatientData(2, 85, "DiastolicPressure", 2);
+        storage.addPatientData(2, 100, "DiastolicPressure", 3);
+
+        assertTrue(generator.getGeneratedAlerts().stream()
+                .anyMatch(a -> a.getCondition().contains("increasing trend")));
+    }
+
+    //ECG window is per patient
+    @Test
+    void ecgPeak_onlyForThatPatient() {
+        DataStorage storage = new DataStorage();
+        StreamingAlertGenerator generator = new StreamingAlertGenerator(storage);
+
+        double[] series = {10, 11, 12, 13, 11, 30};
+        for (int i = 0; i < series.length; i++) {
+            storage.addPatientData(3, series[i], "ECG", i);
+            storage.addPatientData(4, 10 + i, "ECG", i);
+        }
+
+        List<Alert> alerts = generator.getGeneratedAlerts();
+        assertEquals(1, alerts.size());
+        assertEquals("3", alerts.get(0).getPatientId());
+    }
+
+    //hypotensive hypoxemia fires when it starts, not for every reading
+    @Test
+    void hypotensiveHypoxemia_firesWhenConditionStarts() {
+        DataStorage storage = new DataStorage();
+        StreamingAlertGenerator generator = new StreamingAlertGenerator(storage);
+
+        storage.addPatientData(5, 85, "SystolicPressure", 1);
+        storage.addPatientData(5, 91, "OxygenSaturation", 2);
+        storage.addPatientData(5, 86, "SystolicPressure", 3);
+
+        long count = generator.getGeneratedAlerts().stream()
+                .filter(a -> a.getCondition().contains("Hypotensive Hypoxemia"))
+                .count();
+        assertEquals(1, count);
+    }
+
+    //no alerts after stopping
+    @Test
+    void stop_detachesFromStorage() {
+        DataStorage storage = new DataStorage();
+        StreamingAlertGenerator generator = new StreamingAlertGenerator(storage);
+        generator.stop();
+
+        storage.addPatientData(6, 1.0, "AlertButton", 1);
+
+        assertTrue(generator.getGeneratedAlerts().isEmpty());
+    }
+}
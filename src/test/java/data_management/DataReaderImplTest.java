@@ -2,6 +2,8 @@ package data_management;
 
 import com.dataManagement.DataReaderImpl;
 import com.dataManagement.DataStorage;
+import com.dataManagement.PatientDataBatch;
+import com.dataManagement.RecordTypeTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -45,6 +47,14 @@ class DataReaderImplTest {
             calls.add(new Call(patientId, measurementValue, recordType, timestamp));
         }
 
+        @Override
+        public void addPatientData(PatientDataBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                calls.add(new Call(batch.patientIdAt(i), batch.valueAt(i),
+                        RecordTypeTable.nameOf(batch.typeCodeAt(i)), batch.timestampAt(i)));
+            }
+        }
+
         int size()                { return calls.size();      }
         Call get(int index)       { return calls.get(index);  }
         boolean isEmpty()         { return calls.isEmpty();   }
@@ -166,4 +176,51 @@ class DataReaderImplTest {
         assertThrows(ArrayIndexOutOfBoundsException.class,
                 () -> new DataReaderImpl(f.toString()).readData(storage));
     }
+
+    @Test
+    void crlfAndPadding_areTrimmed() throws IOException {
+        Path f = tmp.resolve("crlf.csv");
+        Files.writeString(f,
+                "patientId, measurementValue ,recordType,timestamp\r\n" +
+                        " 7 , 98.25 , ECG ,\t1700000000000 \r\n",
+                StandardCharsets.UTF_8);
+
+        new DataReaderImpl(f.toString()).readData(storage);
+
+        RecordingStorage.Call c = storage.get(0);
+        assertAll(
+                () -> assertEquals(7, c.patientId),
+                () -> assertEquals(98.25, c.value),
+                () -> assertEquals("ECG", c.type),
+                () -> assertEquals(1700000000000L, c.timestamp)
+        );
+    }
+
+    @Test
+    void decimals_matchDoubleParseDouble() throws IOException {
+        java.util.Random random = new java.util.Random(42);
+        StringBuilder csv = new StringBuilder("patientId,measurementValue,recordType,timestamp\n");
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            String text;
+            switch (i % 4) {
+                case 0:  text = Double.toString(random.nextDouble() * 200 - 100); break;
+                case 1:  text = String.format(java.util.Locale.ROOT, "%.3f", random.nextGaussian()); break;
+                case 2:  text = Double.toString(random.nextDouble() * 1e-8); break;   // exponent form
+                default: text = Integer.toString(random.nextInt(200)); break;
+            }
+            texts.add(text);
+            csv.append(i).append(',').append(text).append(",ECG,").append(i).append('\n');
+        }
+        Path f = tmp.resolve("decimals.csv");
+        Files.writeString(f, csv.toString(), StandardCharsets.UTF_8);
+
+        new DataReaderImpl(f.toString()).readData(storage);
+
+        assertEquals(texts.size(), storage.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(Double.parseDouble(texts.get(i)), storage.get(i).value, texts.get(i));
+        }
+        assertSame(storage.get(0).type, storage.get(1).type, "record types should be interned");
+    }
 }
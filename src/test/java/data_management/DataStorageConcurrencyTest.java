@@ -0,0 +1,92 @@
+package data_management;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded stress test for {@code DataStorage}.
+ *
+ * This code verifies:
+ *
+ *   no records are lost when many threads add data for shared and separate patients,
+ *   readers running during ingestion always see records ordered by timestamp.
+ *
+ */
+
+class DataStorageConcurrencyTest {
+
+    private static final int WRITERS = 16;
+    private static final int RECORDS_PER_WRITER = 50_000;
+    private static final int PATIENTS = 64;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void concurrentWriters_loseNoRecords() throws Exception {
+        DataStorage storage = new DataStorage();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                    int patientId = 1 + (i + writer) % PATIENTS;
+                    String type = (i & 1) == 0 ? "ECG" : "OxygenSaturation";
+                    // every writer goes slightly back in time now and then
+                    long timestamp = T0 + i * 10L + (i % 97 == 0 ? -500 : writer);
+                    storage.addPatientData(patientId, i, type, timestamp);
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (Patient patient : storage.getAllPatients()) {
+                        long previous = Long.MIN_VALUE;
+                        for (PatientRecord record : storage.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE)) {
+                            assertTrue(record.getTimestamp() >= previous, "records out of order");
+                            previous = record.getTimestamp();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> f : writers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> f : readers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (Patient patient : storage.getAllPatients()) {
+            total += storage.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(PATIENTS, storage.getAllPatients().size());
+        assertEquals(WRITERS * RECORDS_PER_WRITER, total);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 
 import com.dataManagement.DataStorage;
+import com.dataManagement.PatientDataBatch;
 import com.dataManagement.PatientRecord;
 
 import java.util.List;
@@ -24,4 +25,30 @@ class DataStorageTest {
         assertEquals(2, records.size()); // Check if two records are retrieved
         assertEquals(100.0, records.get(0).getMeasurementValue()); // Validate first record
     }
+
+    @Test
+    void batch_groupsByPatientAndKeepsOrder() {
+        DataStorage storage = new DataStorage();
+        PatientDataBatch batch = new PatientDataBatch(2); // grows past its initial capacity
+        batch.add(2, 20.0, "HeartRate", 1000L);
+        batch.add(-1, 5.0, "HeartRate", 1000L);
+        batch.add(2, 21.0, "HeartRate", 2000L);
+        batch.add(2, 97.0, "Saturation", 1500L);
+        storage.addPatientData(batch);
+
+        // patient 2 keeps its three readings, merged by timestamp
+        List<PatientRecord> records = storage.getRecords(2, 0L, 5000L);
+        assertEquals(3, records.size());
+        assertEquals(20.0, records.get(0).getMeasurementValue());
+        assertEquals(97.0, records.get(1).getMeasurementValue());
+        assertEquals(21.0, records.get(2).getMeasurementValue());
+        // negative IDs are grouped like any other
+        assertEquals(1, storage.getRecords(-1, 0L, 5000L).size());
+
+        // the batch can be cleared and reused
+        batch.clear();
+        batch.add(2, 22.0, "HeartRate", 3000L);
+        storage.addPatientData(batch);
+        assertEquals(4, storage.getRecords(2, 0L, 5000L).size());
+    }
 }
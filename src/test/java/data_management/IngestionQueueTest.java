@@ -0,0 +1,235 @@
+package data_management;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.IngestionQueue;
+import com.dataManagement.IngestionQueue.OverflowPolicy;
+import com.dataManagement.PatientDataBatch;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.RecordTypeTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code IngestionQueue}.
+ *
+ * This code verifies:
+ *
+ *   readings offered by several threads all reach the storage, in order for each patient,
+ *   while the storage is stalled, DROP_NEWEST keeps the first readings and DROP_OLDEST the last ones,
+ *   BLOCK holds the receiver until there is room and loses nothing,
+ *   tryOffer takes a whole batch or nothing, without waiting or dropping,
+ *   depth, lag and dropped readings are reported,
+ *   readings the storage fails to apply are counted as failed, not applied,
+ *   closing applies the waiting readings and drops later ones.
+ *
+ */
+
+class IngestionQueueTest {
+
+    private static final int ECG = RecordTypeTable.codeOf("ECG");
+
+    /** Makes the drain thread stall on the first reading it applies, until released. */
+    private static final class Stall {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        void install(DataStorage storage) {
+            storage.addListener((patientId, value, recordType, timestamp) -> {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    private static List<Long> timestamps(DataStorage storage, int patientId) {
+        return storage.getRecords(patientId, 0, Long.MAX_VALUE).stream()
+                .map(PatientRecord::getTimestamp).collect(Collectors.toList());
+    }
+
+    private static IngestionQueue stalledQueue(DataStorage storage, Stall stall, int capacity, OverflowPolicy policy)
+            throws InterruptedException {
+        stall.install(storage);
+        IngestionQueue queue = new IngestionQueue(storage, capacity, 1, policy);
+        queue.offer(1, 0, ECG, 0);
+        assertTrue(stall.entered.await(5, TimeUnit.SECONDS));
+        return queue;
+    }
+
+    //4 receivers, 4 drain threads, 40 patients
+    @Test
+    void concurrentOffers_areAllAppliedInOrder() throws Exception {
+        DataStorage storage = new DataStorage();
+        IngestionQueue queue = new IngestionQueue(storage, 1024, 4, OverflowPolicy.BLOCK);
+        Thread[] receivers = new Thread[4];
+        for (int r = 0; r < receivers.length; r++) {
+            int receiver = r;
+            receivers[r] = new Thread(() -> {
+                PatientDataBatch batch = new PatientDataBatch(64);
+                for (int t = 0; t < 5_000; t++) {
+                    for (int p = 0; p < 10; p++) {
+                        batch.add(receiver * 10 + p, t, ECG, t);
+                    }
+                    if (batch.size() >= 64) {
+                        queue.offer(batch);
+                        batch.clear();
+                    }
+                }
+                queue.offer(batch);
+            });
+            receivers[r].start();
+        }
+        for (Thread receiver : receivers) {
+            receiver.join();
+        }
+        assertTrue(queue.awaitEmpty(10_000));
+        queue.close();
+
+        for (int patientId = 0; patientId < 40; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+            assertEquals(5_000, records.size());
+            for (int t = 0; t < 5_000; t++) {
+                assertEquals(t, records.get(t).getTimestamp());
+            }
+        }
+        assertEquals(200_000, queue.getAppliedSamples());
+        assertEquals(0, queue.getDroppedSamples());
+    }
+
+    //10 readings into a stalled queue of 4: the first 4 survive
+    @Test
+    void dropNewest_keepsTheWaitingReadings() throws Exception {
+        DataStorage storage = new DataStorage();
+        Stall stall = new Stall();
+        IngestionQueue queue = stalledQueue(storage, stall, 4, OverflowPolicy.DROP_NEWEST);
+        for (int t = 1; t <= 10; t++) {
+            queue.offer(2, t, ECG, t);
+        }
+        assertEquals(4, queue.getDepth());
+        assertEquals(6, queue.getDroppedSamples());
+        Thread.sleep(20);
+        assertTrue(queue.getLagMillis() >= 10, "lag: " + queue.getLagMillis());
+
+        stall.release.countDown();
+        assertTrue(queue.awaitEmpty(5_000));
+        assertEquals(List.of(1L, 2L, 3L, 4L), timestamps(storage, 2));
+        assertTrue(queue.getMaxLagMillis() >= 10);
+        queue.close();
+    }
+
+    //a batch of 3 fits into a stalled queue of 4 once, the next one is refused and kept by the caller
+    @Test
+    void tryOffer_neverWaitsOrDrops() throws Exception {
+        DataStorage storage = new DataStorage();
+        Stall stall = new Stall();
+        IngestionQueue queue = stalledQueue(storage, stall, 4, OverflowPolicy.BLOCK);
+        PatientDataBatch batch = new PatientDataBatch(4);
+        for (int t = 1; t <= 3; t++) {
+            batch.add(2, t, ECG, t);
+        }
+        assertTrue(queue.tryOffer(batch));
+        assertFalse(queue.tryOffer(batch));
+        assertEquals(3, queue.getDepth());
+        assertEquals(0, queue.getDroppedSamples());
+
+        stall.release.countDown();
+        assertTrue(queue.awaitEmpty(5_000));
+        assertTrue(queue.tryOffer(batch));
+        assertTrue(queue.awaitEmpty(5_000));
+        assertEquals(List.of(1L, 1L, 2L, 2L, 3L, 3L), timestamps(storage, 2));
+        queue.close();
+    }
+
+    //10 readings into a stalled queue of 4: the last 4 survive
+    @Test
+    void dropOldest_keepsTheNewestReadings() throws Exception {
+        DataStorage storage = new DataStorage();
+        Stall stall = new Stall();
+        IngestionQueue queue = stalledQueue(storage, stall, 4, OverflowPolicy.DROP_OLDEST);
+        PatientDataBatch batch = new PatientDataBatch(10);
+        for (int t = 1; t <= 10; t++) {
+            batch.add(3, t, ECG, t);
+        }
+        assertEquals(0, queue.offer(batch));
+        assertEquals(6, queue.getDroppedSamples());
+
+        stall.release.countDown();
+        assertTrue(queue.awaitEmpty(5_000));
+        assertEquals(List.of(7L, 8L, 9L, 10L), timestamps(storage, 3));
+        queue.close();
+    }
+
+    //the receiver waits for room instead of losing readings
+    @Test
+    void block_waitsForRoom() throws Exception {
+        DataStorage storage = new DataStorage();
+        Stall stall = new Stall();
+        IngestionQueue queue = stalledQueue(storage, stall, 4, OverflowPolicy.BLOCK);
+        Thread receiver = new Thread(() -> {
+            for (int t = 1; t <= 10; t++) {
+                queue.offer(4, t, ECG, t);
+            }
+        });
+        receiver.start();
+        receiver.join(200);
+        assertTrue(receiver.isAlive());
+        assertEquals(4, queue.getDepth());
+
+        stall.release.countDown();
+        receiver.join(5_000);
+        assertFalse(receiver.isAlive());
+        assertTrue(queue.awaitEmpty(5_000));
+        assertEquals(10, storage.getRecords(4, 0, Long.MAX_VALUE).size());
+        assertEquals(0, queue.getDroppedSamples());
+        queue.close();
+    }
+
+    //close does not lose what was accepted
+    @Test
+    void close_appliesWaitingReadings() throws Exception {
+        DataStorage storage = new DataStorage();
+        IngestionQueue queue = new IngestionQueue(storage);
+        for (int t = 0; t < 1_000; t++) {
+            queue.offer(5, t, ECG, t);
+        }
+        queue.close();
+        assertEquals(1_000, storage.getRecords(5, 0, Long.MAX_VALUE).size());
+        assertEquals(0, queue.getDepth());
+
+        assertFalse(queue.offer(5, 0, ECG, 1_000));
+        assertEquals(1, queue.getDroppedSamples());
+    }
+
+    //a listener that throws for one patient fails that patient's batches only
+    @Test
+    void storageFailure_isCountedAsFailedNotApplied() throws Exception {
+        DataStorage storage = new DataStorage();
+        storage.addListener((patientId, value, recordType, timestamp) -> {
+            if (patientId == 13) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        IngestionQueue queue = new IngestionQueue(storage, 64, 1, OverflowPolicy.BLOCK);
+        for (int t = 0; t < 3; t++) {
+            queue.offer(13, t, ECG, t);
+        }
+        assertTrue(queue.awaitEmpty(5_000));
+        for (int t = 0; t < 2; t++) {
+            queue.offer(14, t, ECG, t);
+        }
+        queue.close();
+
+        assertEquals(2, queue.getAppliedSamples());
+        assertEquals(3, queue.getFailedSamples());
+        assertEquals(0, queue.getDroppedSamples());
+    }
+}
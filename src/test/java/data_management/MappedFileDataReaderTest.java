@@ -0,0 +1,154 @@
+package data_management;
+
+import com.dataManagement.DataReaderImpl;
+import com.dataManagement.DataStorage;
+import com.dataManagement.MappedFileDataReader;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code MappedFileDataReader}.
+ *
+ * This code verifies:
+ *
+ *   a file split into many small chunks imports the same records as DataReaderImpl,
+ *   readings applied by several threads reach each patient in file order,
+ *   header-only and empty files are handled,
+ *   parse errors are reported,
+ *   stopping a large import part-way makes readData throw and keeps what was applied.
+ *
+ */
+
+class MappedFileDataReaderTest {
+
+    @TempDir Path tmp;
+
+    @Test
+    void manyChunks_sameResultAsSequentialReader() throws IOException {
+        StringBuilder csv = new StringBuilder("timestamp,recordType,patientId,measurementValue\n");
+        String[] types = {"ECG", "OxygenSaturation", "SystolicPressure"};
+        for (int i = 0; i < 20_000; i++) {
+            csv.append(1_700_000_000_000L + i).append(',')
+                    .append(types[i % 3]).append(',')
+                    .append(1 + i % 37).append(',')
+                    .append(i % 500 / 4.0).append('\n');
+        }
+        Path f = tmp.resolve("dump.csv");
+        Files.writeString(f, csv.toString(), StandardCharsets.UTF_8);
+
+        DataStorage sequential = new DataStorage();
+        new DataReaderImpl(f.toString()).readData(sequential);
+        DataStorage mapped = new DataStorage();
+        new MappedFileDataReader(f.toString(), 4, 1024).readData(mapped);
+
+        assertEquals(sequential.getAllPatients().size(), mapped.getAllPatients().size());
+        for (Patient patient : sequential.getAllPatients()) {
+            List<PatientRecord> expected = sequential.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE);
+            List<PatientRecord> actual = mapped.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+                assertEquals(expected.get(i).getMeasurementValue(), actual.get(i).getMeasurementValue());
+                assertEquals(expected.get(i).getRecordType(), actual.get(i).getRecordType());
+            }
+        }
+    }
+
+    //shards of many chunks are stored in parallel, but each patient still sees its readings in order
+    @Test
+    void parallelApply_keepsEachPatientInFileOrder() throws IOException {
+        StringBuilder csv = new StringBuilder("patientId,measurementValue,recordType,timestamp\n");
+        for (int i = 0; i < 50_000; i++) {
+            csv.append(1 + i % 53).append(",1.0,ECG,").append(1_700_000_000_000L + i).append('\n');
+        }
+        Path f = tmp.resolve("ordered.csv");
+        Files.writeString(f, csv.toString(), StandardCharsets.UTF_8);
+
+        DataStorage storage = new DataStorage();
+        Map<Integer, Long> last = new ConcurrentHashMap<>();
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        // called under the patient's lock, so each patient's readings arrive one at a time
+        storage.addListener((patientId, value, recordType, timestamp) -> {
+            Long previous = last.put(patientId, timestamp);
+            if (previous != null && previous > timestamp) {
+                outOfOrder.set(true);
+            }
+        });
+        new MappedFileDataReader(f.toString(), 4, 2048).readData(storage);
+
+        assertFalse(outOfOrder.get());
+        assertEquals(53, last.size());
+        int stored = 0;
+        for (Patient patient : storage.getAllPatients()) {
+            stored += storage.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(50_000, stored);
+    }
+
+    @Test
+    void headerOnlyAndEmptyFiles_importNothing() throws IOException {
+        Path header = tmp.resolve("header.csv");
+        Files.writeString(header, "patientId,measurementValue,recordType,timestamp", StandardCharsets.UTF_8);
+        Path empty = Files.createFile(tmp.resolve("empty.csv"));
+
+        DataStorage storage = new DataStorage();
+        new MappedFileDataReader(header.toString()).readData(storage);
+        new MappedFileDataReader(empty.toString()).readData(storage);
+
+        assertTrue(storage.getAllPatients().isEmpty());
+    }
+
+    @Test
+    void invalidNumber_throwsNumberFormatException() throws IOException {
+        Path f = tmp.resolve("bad.csv");
+        Files.writeString(f, "patientId,measurementValue,recordType,timestamp\n1,abc,ECG,1\n",
+                StandardCharsets.UTF_8);
+
+        assertThrows(NumberFormatException.class,
+                () -> new MappedFileDataReader(f.toString()).readData(new DataStorage()));
+    }
+
+    //the first stored reading stops the import, which then ends with an IOException
+    @Test
+    void stopReading_endsLargeImportPartWay() throws IOException {
+        StringBuilder csv = new StringBuilder("timestamp,recordType,patientId,measurementValue\n");
+        int rows = 200_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append(1_700_000_000_000L + i).append(",ECG,").append(1 + i % 50).append(',')
+                    .append(i % 100).append('\n');
+        }
+        Path f = tmp.resolve("large.csv");
+        Files.writeString(f, csv.toString(), StandardCharsets.UTF_8);
+
+        MappedFileDataReader reader = new MappedFileDataReader(f.toString(), 2, 4096);
+        DataStorage storage = new DataStorage();
+        AtomicBoolean stopRequested = new AtomicBoolean();
+        storage.addListener((patientId, measurementValue, recordType, timestamp) -> {
+            if (stopRequested.compareAndSet(false, true)) {
+                try {
+                    reader.stopReading();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        IOException e = assertThrows(IOException.class, () -> reader.readData(storage));
+        assertEquals("Import stopped", e.getMessage());
+        int stored = storage.getAllPatients().stream().mapToInt(Patient::getRecordCount).sum();
+        assertTrue(stored > 0 && stored < rows, "stored: " + stored);
+    }
+}
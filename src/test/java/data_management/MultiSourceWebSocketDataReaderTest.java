@@ -0,0 +1,185 @@
+package data_management;
+
+import com.cardioGenerator.outputs.SampleType;
+import com.cardioGenerator.outputs.WebSocketOutputStrategy;
+import com.dataManagement.DataStorage;
+import com.dataManagement.IngestionQueue;
+import com.dataManagement.MultiSourceWebSocketDataReader;
+import com.dataManagement.PatientRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code MultiSourceWebSocketDataReader}.
+ *
+ * This code verifies:
+ *
+ *   readings from several in-process simulator servers, text and binary, end up in one storage,
+ *   the reader does not start threads per source,
+ *   a source whose server is not up yet keeps retrying and connects once it is,
+ *   a full blocking queue pauses its source without holding up the other sources' reconnects,
+ *   stopping the reader closes every connection.
+ *
+ */
+
+class MultiSourceWebSocketDataReaderTest {
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static int readerThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("websocket-reader-"))
+                .count();
+    }
+
+    //six servers, each with its own patients, some batched, read by two shared threads
+    @Test
+    void feedsOfAllSources_areMergedIntoOneStorage() throws Exception {
+        for (boolean binary : new boolean[]{false, true}) {
+            List<WebSocketOutputStrategy> servers = new ArrayList<>();
+            List<URI> uris = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                int port = freePort();
+                servers.add(i % 2 == 0
+                        ? new WebSocketOutputStrategy(port)
+                        : new WebSocketOutputStrategy(port, 20, 10));
+                uris.add(new URI("ws://localhost:" + port));
+            }
+            int threadsBefore = readerThreads();
+            DataStorage storage = new DataStorage();
+            MultiSourceWebSocketDataReader reader = new MultiSourceWebSocketDataReader(uris, 2, binary, 50, 1_000);
+            try {
+                reader.readData(storage);
+                await(() -> servers.stream().allMatch(server -> server.getConnectionCount() == 1)
+                        && reader.getConnectedCount() == 6);
+                assertEquals(6, reader.getConnectedCount());
+                assertTrue(readerThreads() - threadsBefore <= 2, "threads: " + (readerThreads() - threadsBefore));
+                assertEquals(binary ? 1 : 0, servers.get(0).getBinaryConnectionCount());
+
+                for (int i = 0; i < servers.size(); i++) {
+                    for (int t = 0; t < 100; t++) {
+                        servers.get(i).output(100 + i, t, SampleType.ECG, t / 2.0);
+                    }
+                    servers.get(i).flush();
+                }
+                await(() -> reader.getReceivedCount() == 600);
+                assertTrue(reader.getIngestionQueue().awaitEmpty(5_000));
+                for (int i = 0; i < servers.size(); i++) {
+                    List<PatientRecord> records = storage.getRecords(100 + i, 0, Long.MAX_VALUE);
+                    assertEquals(100, records.size());
+                    assertEquals(49.5, records.get(99).getMeasurementValue());
+                }
+                assertEquals(0, reader.getMalformedCount());
+            } finally {
+                reader.stopReading();
+                servers.forEach(WebSocketOutputStrategy::close);
+            }
+        }
+    }
+
+    //the server comes up after the reader has failed to reach it
+    @Test
+    void unreachableSource_connectsOnceItsServerStarts() throws Exception {
+        int port = freePort();
+        DataStorage storage = new DataStorage();
+        MultiSourceWebSocketDataReader reader = new MultiSourceWebSocketDataReader(
+                List.of(new URI("ws://localhost:" + port)), 1, true, 20, 100);
+        WebSocketOutputStrategy server = null;
+        try {
+            reader.readData(storage);
+            await(() -> reader.getReconnectCount() >= 2);
+            assertEquals(0, reader.getConnectedCount());
+
+            server = new WebSocketOutputStrategy(port);
+            WebSocketOutputStrategy started = server;
+            await(() -> started.getConnectionCount() == 1 && reader.getConnectedCount() == 1);
+            assertEquals(1, reader.getConnectedCount());
+            server.output(7, 1_000L, SampleType.SATURATION, 96);
+            await(() -> reader.getReceivedCount() == 1);
+            assertTrue(reader.getIngestionQueue().awaitEmpty(5_000));
+            assertEquals(96.0, storage.getRecords(7, 0, 2_000L).get(0).getMeasurementValue());
+        } finally {
+            reader.stopReading();
+            assertEquals(0, reader.getConnectedCount());
+            if (server != null) {
+                WebSocketOutputStrategy closing = server;
+                await(() -> closing.getConnectionCount() == 0);
+                assertEquals(0, server.getConnectionCount());
+                server.close();
+            }
+        }
+    }
+
+    //the storage stalls until the queue is full; the only pool thread must still reconnect the other source
+    @Test
+    void fullBlockingQueue_doesNotHoldUpReconnects() throws Exception {
+        int busyPort = freePort();
+        int latePort = freePort();
+        WebSocketOutputStrategy busy = new WebSocketOutputStrategy(busyPort);
+        WebSocketOutputStrategy late = null;
+        DataStorage storage = new DataStorage();
+        CountDownLatch stall = new CountDownLatch(1);
+        storage.addListener((patientId, measurementValue, recordType, timestamp) -> {
+            try {
+                stall.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        MultiSourceWebSocketDataReader reader = new MultiSourceWebSocketDataReader(
+                List.of(new URI("ws://localhost:" + busyPort), new URI("ws://localhost:" + latePort)),
+                1, false, 20, 100, 8, 1, IngestionQueue.OverflowPolicy.BLOCK);
+        try {
+            reader.readData(storage);
+            await(() -> busy.getConnectionCount() == 1 && reader.getConnectedCount() == 1);
+            for (int t = 0; t < 100; t++) {
+                busy.output(1, t, SampleType.ECG, t);
+            }
+            await(() -> reader.getIngestionQueue().getDepth() == 8);
+            assertEquals(8, reader.getIngestionQueue().getDepth());
+
+            long reconnects = reader.getReconnectCount();
+            await(() -> reader.getReconnectCount() >= reconnects + 2);
+            late = new WebSocketOutputStrategy(latePort);
+            WebSocketOutputStrategy started = late;
+            await(() -> started.getConnectionCount() == 1 && reader.getConnectedCount() == 2);
+            assertEquals(2, reader.getConnectedCount());
+            late.output(2, 1_000L, SampleType.SATURATION, 97);
+
+            stall.countDown();
+            await(() -> reader.getReceivedCount() == 101);
+            assertTrue(reader.getIngestionQueue().awaitEmpty(5_000));
+            assertEquals(100, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+            assertEquals(1, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+            assertEquals(0, reader.getIngestionQueue().getDroppedSamples());
+        } finally {
+            stall.countDown();
+            reader.stopReading();
+            busy.close();
+            if (late != null) {
+                late.close();
+            }
+        }
+    }
+}
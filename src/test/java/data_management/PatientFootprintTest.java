@@ -0,0 +1,53 @@
+package data_management;
+
+import com.dataManagement.Patient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the memory footprint of the columnar storage in {@code Patient}.
+ *
+ * This code verifies:
+ *
+ *   the columns hold every sample in 16 bytes, with unused capacity below the bytes in use,
+ *   late samples keep the footprint within the same bound.
+ *
+ */
+
+class PatientFootprintTest {
+
+    private static final int SAMPLES = 1 << 20;
+    private static final long T0 = 1_700_000_000_000L;
+
+    //a timestamp and a value per sample, and growth by doubling at most wastes as much again
+    @Test
+    void footprint_isBoundedByCapacity() {
+        for (int samples : new int[] {1, 1_000, SAMPLES, SAMPLES + 1}) {
+            Patient patient = new Patient(1);
+            for (int i = 0; i < samples; i++) {
+                patient.addRecord(i, "ECG", T0 + i);
+            }
+            assertEquals(samples, patient.getRecordCount());
+            long bytes = patient.footprintBytes();
+            assertTrue(bytes >= 16L * samples, samples + " samples in " + bytes + " B");
+            // the initial capacity of 16 samples dominates tiny columns
+            assertTrue(bytes <= 32L * Math.max(samples, 16), samples + " samples in " + bytes + " B");
+        }
+    }
+
+    //late samples wait in a side buffer that is merged long before it rivals the column
+    @Test
+    void lateSamples_keepFootprintBounded() {
+        int samples = 1 << 16;
+        Patient patient = new Patient(2);
+        for (int i = 0; i < samples; i++) {
+            // every eighth sample is a few seconds late
+            patient.addRecord(i, "ECG", i % 8 == 0 ? T0 + i - 5_000 : T0 + i);
+        }
+        assertEquals(samples, patient.getRecordCount());
+        long bytes = patient.footprintBytes();
+        assertTrue(bytes >= 16L * samples, bytes + " B");
+        assertTrue(bytes <= 32L * samples, bytes + " B");
+    }
+}
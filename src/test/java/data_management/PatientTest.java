@@ -5,7 +5,10 @@ import com.dataManagement.PatientRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,7 +17,9 @@ import static org.junit.jupiter.api.Assertions.*;
  *
  * This code verifies:
  *
- *   method getRecords works.
+ *   method getRecords works,
+ *   records arriving out of order are returned in timestamp order,
+ *   many late records are kept in order, equal timestamps in arrival order, in every range.
  *
  */
 
@@ -70,4 +75,72 @@ class PatientGetRecordsTest {
         List<PatientRecord> recs = patient.getRecords(T2, T0);
         assertTrue(recs.isEmpty());
     }
+
+    //Late records are placed by timestamp, not arrival order.
+    @Test
+    void outOfOrderArrival_returnedSorted() {
+        Patient p = new Patient(78);
+        p.addRecord(1.0, "ECG", T2);
+        p.addRecord(2.0, "ECG", T0);
+        p.addRecord(3.0, "ECG", T1);
+        List<PatientRecord> recs = p.getRecords(T0, T2);
+        assertEquals(3, recs.size());
+        assertEquals(T0, recs.get(0).getTimestamp());
+        assertEquals(T1, recs.get(1).getTimestamp());
+        assertEquals(T2, recs.get(2).getTimestamp());
+    }
+
+    //Enough late records to fill the side buffer several times; ties keep their arrival order.
+    @Test
+    void manyLateRecords_returnedSortedInEveryRange() {
+        Patient p = new Patient(79);
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // mostly in order, every fourth one late, few distinct timestamps so many are equal
+            long timestamp = i % 4 == 0 ? T0 + random.nextInt(i + 1) / 2 : T0 + i / 2;
+            p.addRecord(i, "ECG", timestamp);
+            expected.add(new long[] {timestamp, i});
+        }
+        expected.sort(Comparator.comparingLong(e -> e[0]));
+
+        List<PatientRecord> all = p.getRecords(T0, T0 + 5_000);
+        assertEquals(expected.size(), all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(expected.get(i)[0], all.get(i).getTimestamp());
+            assertEquals(expected.get(i)[1], (long) all.get(i).getMeasurementValue());
+        }
+        for (int start = 0; start < 2_500; start += 97) {
+            long from = T0 + start;
+            List<PatientRecord> range = p.getRecords(from, from + 150);
+            long count = expected.stream().filter(e -> e[0] >= from && e[0] <= from + 150).count();
+            assertEquals(count, range.size());
+            for (int i = 1; i < range.size(); i++) {
+                assertTrue(range.get(i - 1).getTimestamp() <= range.get(i).getTimestamp());
+            }
+        }
+    }
+
+    //Records of different types are merged in timestamp order.
+    @Test
+    void mixedTypes_mergedByTimestamp() {
+        patient.addRecord(11.0, "HeartRate", T1 + 500);
+        List<PatientRecord> recs = patient.getRecords(T0, T2);
+        assertEquals(4, recs.size());
+        long previous = Long.MIN_VALUE;
+        for (PatientRecord record : recs) {
+            assertTrue(record.getTimestamp() >= previous);
+            previous = record.getTimestamp();
+        }
+        assertEquals("HeartRate", recs.get(2).getRecordType());
+    }
+
+    //Single type query only returns that type.
+    @Test
+    void byType_returnsOnlyThatType() {
+        List<PatientRecord> recs = patient.getRecords("SystolicPressure", T0, T2);
+        assertEquals(1, recs.size());
+        assertEquals(120.0, recs.get(0).getMeasurementValue());
+        assertTrue(patient.getRecords("Unknown", T0, T2).isEmpty());
+    }
 }
@@ -0,0 +1,209 @@
+package data_management;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.RetentionCompactor;
+import com.dataManagement.RetentionPolicy;
+import com.dataManagement.Rollup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code RetentionCompactor}.
+ *
+ * This code verifies:
+ *
+ *   samples older than the hot window are rolled up per minute,
+ *   getRecords serves rollup means for old ranges and raw samples for recent ones,
+ *   late samples are merged into an existing rollup,
+ *   data past the horizon is evicted,
+ *   queries running while a column is compacted see neither a gap nor an overlap,
+ *   samples added, in order or late, while a column is compacted are kept.
+ *
+ */
+
+class RetentionCompactorTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long T0 = 1_699_999_980_000L; // start of a minute
+
+    private DataStorage storage;
+    private RetentionCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        storage = new DataStorage();
+        // background passes are far apart, the tests drive compaction themselves
+        compactor = new RetentionCompactor(storage, new RetentionPolicy(HOUR, MINUTE, 24 * HOUR), HOUR);
+        // two hours of one sample every 10 seconds, values 0, 1, 2, ...
+        for (int i = 0; i < 720; i++) {
+            storage.addPatientData(1, i, "HeartRate", T0 + i * 10_000L);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        compactor.close();
+    }
+
+    private Patient patient() {
+        return storage.getAllPatients().get(0);
+    }
+
+    //the first hour is replaced by 60 rollups, the second stays raw
+    @Test
+    void oldSamples_areRolledUp() {
+        compactor.compact(T0 + 2 * HOUR);
+
+        List<Rollup> rollups = patient().getRollups("HeartRate", 0, Long.MAX_VALUE);
+        assertEquals(60, rollups.size());
+        Rollup first = rollups.get(0);
+        assertEquals(T0, first.getTimestamp());
+        assertEquals(0.0, first.getMin());
+        assertEquals(5.0, first.getMax());
+        assertEquals(2.5, first.getMean());
+        assertEquals(6, first.getCount());
+        assertEquals(60 + 360, patient().getRecordCount());
+    }
+
+    //queries over old ranges return rollup means, in timestamp order with raw samples
+    @Test
+    void getRecords_servesRollupsTransparently() {
+        compactor.compact(T0 + 2 * HOUR);
+
+        List<PatientRecord> records = storage.getRecords(1, T0 + HOUR - MINUTE, T0 + HOUR + 10_000);
+        assertEquals(3, records.size());
+        assertEquals(T0 + HOUR - MINUTE, records.get(0).getTimestamp());
+        assertEquals(356.5, records.get(0).getMeasurementValue());
+        assertEquals(360.0, records.get(1).getMeasurementValue());
+        assertEquals(361.0, records.get(2).getMeasurementValue());
+        assertEquals(3, patient().getRecords("HeartRate", T0 + HOUR - MINUTE, T0 + HOUR + 10_000).size());
+    }
+
+    //a sample arriving after its minute was rolled up joins that rollup
+    @Test
+    void lateSample_mergesIntoRollup() {
+        compactor.compact(T0 + 2 * HOUR);
+        storage.addPatientData(1, 100.0, "HeartRate", T0 + 5_000);
+        compactor.compact(T0 + 3 * HOUR);
+
+        Rollup first = patient().getRollups("HeartRate", T0, T0).get(0);
+        assertEquals(7, first.getCount());
+        assertEquals(100.0, first.getMax());
+        assertEquals((15.0 + 100.0) / 7, first.getMean(), 1e-9);
+    }
+
+    //nothing is kept past the horizon
+    @Test
+    void horizon_evictsEverything() {
+        compactor.compact(T0 + 2 * HOUR);
+        compactor.compact(T0 + 30 * HOUR);
+
+        assertEquals(0, patient().getRecordCount());
+        assertTrue(storage.getRecords(1, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    //a reader keeps querying the whole range while the hot window moves over it
+    @Test
+    void concurrentQueries_seeNoGapOrOverlap() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            DataStorage fresh = new DataStorage();
+            for (int i = 0; i < 720; i++) {
+                fresh.addPatientData(1, i, "HeartRate", T0 + i * 10_000L);
+            }
+            RetentionCompactor passes =
+                    new RetentionCompactor(fresh, new RetentionPolicy(HOUR, MINUTE, 24 * HOUR), HOUR);
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<String> failure = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                while (!done.get() && failure.get() == null) {
+                    List<PatientRecord> records = fresh.getRecords(1, 0, Long.MAX_VALUE);
+                    long previous = T0 - MINUTE;
+                    for (PatientRecord record : records) {
+                        long step = record.getTimestamp() - previous;
+                        if (step <= 0 || step > MINUTE) {
+                            failure.set("step of " + step + " ms at " + record.getTimestamp());
+                            break;
+                        }
+                        previous = record.getTimestamp();
+                    }
+                    if (previous != T0 + 719 * 10_000L) {
+                        failure.set("last record at " + previous);
+                    }
+                }
+            });
+            reader.start();
+            try {
+                for (long now = T0 + HOUR; now <= T0 + 2 * HOUR; now += MINUTE) {
+                    passes.compact(now);
+                }
+            } finally {
+                done.set(true);
+                reader.join();
+                passes.close();
+            }
+            assertNull(failure.get());
+        }
+    }
+
+    //a sample appended while the rollups are built, without the lock, is kept after the swap
+    @Test
+    void sampleAppendedDuringCompaction_isKept() {
+        compactWhileAdding(T0 + 7_200_000);
+
+        assertEquals(60 + 361, patient().getRecordCount());
+        List<PatientRecord> recent = storage.getRecords(1, T0 + 7_190_000, T0 + 7_200_000);
+        assertEquals(2, recent.size());
+        assertEquals(-1.0, recent.get(1).getMeasurementValue());
+    }
+
+    //a late sample arriving meanwhile makes the compaction start over under the lock
+    @Test
+    void lateSampleDuringCompaction_isKept() {
+        compactWhileAdding(T0 + 7_200_000, T0 + 7_185_000);
+
+        assertEquals(60, patient().getRollups("HeartRate", 0, Long.MAX_VALUE).size());
+        assertEquals(60 + 362, patient().getRecordCount());
+        List<PatientRecord> recent = storage.getRecords(1, T0 + 7_180_000, T0 + 7_200_000);
+        assertEquals(4, recent.size());
+        assertEquals(-2.0, recent.get(1).getMeasurementValue());
+        assertEquals(-1.0, recent.get(3).getMeasurementValue());
+    }
+
+    /** Runs one pass that adds samples with values -1, -2, ... while it rolls up the first hour. */
+    private void compactWhileAdding(long... timestamps) {
+        AtomicInteger calls = new AtomicInteger();
+        RetentionPolicy policy = new RetentionPolicy(HOUR, MINUTE, 24 * HOUR) {
+            @Override
+            public long bucketStart(long timestamp) {
+                // the first call aligns the cutoff; the second is made while the rollups are built
+                if (calls.incrementAndGet() == 2) {
+                    for (int i = 0; i < timestamps.length; i++) {
+                        storage.addPatientData(1, -1 - i, "HeartRate", timestamps[i]);
+                    }
+                }
+                return super.bucketStart(timestamp);
+            }
+        };
+        try (RetentionCompactor racing = new RetentionCompactor(storage, policy, HOUR)) {
+            racing.compact(T0 + 2 * HOUR);
+        }
+        assertTrue(calls.get() > 2);
+    }
+
+    //the policy rejects a horizon shorter than the hot window
+    @Test
+    void shortHorizon_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(HOUR, MINUTE, MINUTE));
+    }
+}
@@ -0,0 +1,110 @@
+package data_management;
+
+import com.dataManagement.DataReaderImpl;
+import com.dataManagement.DataStorage;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.SnapshotDataReader;
+import com.dataManagement.SnapshotWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code SnapshotWriter} and {@code SnapshotDataReader}.
+ *
+ * This code verifies:
+ *
+ *   a snapshot loads back exactly the samples that were written,
+ *   irregular timestamps and unusual values survive the compression,
+ *   a snapshot is an order of magnitude smaller than the same data as CSV,
+ *   files that are not snapshots are rejected.
+ *
+ */
+
+class SnapshotDataReaderTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @TempDir Path tmp;
+
+    private static void assertSameRecords(DataStorage expected, DataStorage actual) {
+        assertEquals(expected.getAllPatients().size(), actual.getAllPatients().size());
+        for (Patient patient : expected.getAllPatients()) {
+            List<PatientRecord> want = expected.getRecords(patient.getPatientId(), Long.MIN_VALUE, Long.MAX_VALUE);
+            List<PatientRecord> got = actual.getRecords(patient.getPatientId(), Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(want.size(), got.size());
+            for (int i = 0; i < want.size(); i++) {
+                assertEquals(want.get(i).getTimestamp(), got.get(i).getTimestamp());
+                assertEquals(Double.doubleToRawLongBits(want.get(i).getMeasurementValue()),
+                        Double.doubleToRawLongBits(got.get(i).getMeasurementValue()));
+                assertEquals(want.get(i).getRecordType(), got.get(i).getRecordType());
+            }
+        }
+    }
+
+    //random gaps, jumps and special values round-trip bit for bit
+    @Test
+    void irregularData_roundTrips() throws IOException {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(7);
+        double[] special = {0.0, -0.0, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, -1e-300, 98.6};
+        long timestamp = -5_000;
+        for (int i = 0; i < 5_000; i++) {
+            timestamp += random.nextInt(4) == 0 ? random.nextInt(1 << 20) : 1 + random.nextInt(3);
+            double value = i % 11 == 0 ? special[i % special.length] : random.nextGaussian() * 100;
+            storage.addPatientData(-3 + i % 7, value, i % 3 == 0 ? "ECG" : "Saturation", timestamp);
+        }
+        storage.addPatientData(Integer.MIN_VALUE, 1.0, "ECG", Long.MIN_VALUE);
+        storage.addPatientData(Integer.MAX_VALUE, 2.0, "ECG", Long.MAX_VALUE);
+        Path file = tmp.resolve("dump.snap");
+
+        assertEquals(5_002, SnapshotWriter.write(storage, file));
+        DataStorage loaded = new DataStorage();
+        new SnapshotDataReader(file.toString()).readData(loaded);
+
+        assertSameRecords(storage, loaded);
+    }
+
+    //regular monitoring data compresses far better than text
+    @Test
+    void regularData_muchSmallerThanCsv() throws IOException {
+        StringBuilder csv = new StringBuilder("patientId,measurementValue,recordType,timestamp\n");
+        for (int i = 0; i < 50_000; i++) {
+            csv.append(1 + i % 10).append(',')
+                    .append(95 + (i / 40) % 3).append(',')
+                    .append("OxygenSaturation").append(',')
+                    .append(T0 + (i / 10) * 1_000L).append('\n');
+        }
+        Path csvFile = tmp.resolve("dump.csv");
+        Files.writeString(csvFile, csv.toString(), StandardCharsets.UTF_8);
+        DataStorage storage = new DataStorage();
+        new DataReaderImpl(csvFile.toString()).readData(storage);
+        Path snapshot = tmp.resolve("dump.snap");
+
+        SnapshotWriter.write(storage, snapshot);
+        DataStorage loaded = new DataStorage();
+        new SnapshotDataReader(snapshot.toString()).readData(loaded);
+
+        assertSameRecords(storage, loaded);
+        assertTrue(Files.size(snapshot) * 10 < Files.size(csvFile),
+                "snapshot " + Files.size(snapshot) + " bytes, csv " + Files.size(csvFile) + " bytes");
+    }
+
+    //a CSV file is not mistaken for a snapshot
+    @Test
+    void notASnapshot_throws() throws IOException {
+        Path file = tmp.resolve("dump.csv");
+        Files.writeString(file, "patientId,measurementValue,recordType,timestamp\n", StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> new SnapshotDataReader(file.toString()).readData(new DataStorage()));
+    }
+}
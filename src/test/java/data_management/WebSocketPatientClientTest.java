@@ -0,0 +1,195 @@
+package data_management;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.IngestionQueue;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.WebSocketPatientClient;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code WebSocketPatientClient}.
+ *
+ * This code verifies:
+ *
+ *   single and batched messages are decoded into the storage, with fields trimmed,
+ *   decoded values equal {@code Double.parseDouble} for short and full-precision decimals,
+ *   malformed lines are skipped and counted while the valid lines of the same message are kept,
+ *   binary samples are decoded with the type names defined for their codes,
+ *   binary samples of undefined types and binary messages of a wrong length are skipped and counted,
+ *   a client with an ingestion queue hands its readings to the queue, which applies them to the storage.
+ *   readings of a feed that goes quiet reach the storage without another message or an explicit flush.
+ *
+ * Messages are passed to {@code onMessage} directly; the client never connects.
+ */
+
+class WebSocketPatientClientTest {
+
+    private static WebSocketPatientClient client(DataStorage storage) throws Exception {
+        return new WebSocketPatientClient(new URI("ws://localhost:1"), storage);
+    }
+
+    //padded fields, a batched frame and a trailing line break
+    @Test
+    void messages_areDecodedIntoStorage() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        client.onMessage(" 4 , 97.0 , Saturation , 1000 ");
+        client.onMessage("4,-0.125,ECG,2000\r\n4,120,SystolicPressure,3000\n");
+        client.flush();
+
+        List<PatientRecord> records = storage.getRecords(4, 0, 5000);
+        assertEquals(3, records.size());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals(97.0, records.get(0).getMeasurementValue());
+        assertEquals(-0.125, records.get(1).getMeasurementValue());
+        assertEquals("SystolicPressure", records.get(2).getRecordType());
+        assertEquals(3000, records.get(2).getTimestamp());
+        assertEquals(3, client.getReceivedCount());
+        assertEquals(0, client.getMalformedCount());
+    }
+
+    //values as the simulator formats them come back bit for bit
+    @Test
+    void decodedValues_matchParseDouble() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        Random random = new Random(11);
+        String[] texts = new String[2_000];
+        StringBuilder frame = new StringBuilder();
+        for (int i = 0; i < texts.length; i++) {
+            double value = i % 2 == 0
+                    ? random.nextDouble() * 200 - 100
+                    : Math.round(random.nextDouble() * 1e4) / 100.0;
+            texts[i] = i % 3 == 0 ? Double.toString(value) : String.format(Locale.ROOT, "%.3f", value);
+            frame.append(1).append(',').append(texts[i]).append(",ECG,").append(i).append('\n');
+        }
+        client.onMessage(frame.toString());
+        client.flush();
+
+        List<PatientRecord> records = storage.getRecords(1, 0, texts.length);
+        assertEquals(texts.length, records.size());
+        for (int i = 0; i < texts.length; i++) {
+            assertEquals(Double.parseDouble(texts[i]), records.get(i).getMeasurementValue(), texts[i]);
+        }
+    }
+
+    //every kind of broken line is skipped on its own
+    @Test
+    void malformedLines_areCountedAndSkipped() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        client.onMessage(String.join("\n",
+                "2,1.5,ECG,100",
+                "2,1.5,ECG",
+                "2,1.5,ECG,100,extra",
+                "x,1.5,ECG,100",
+                "2,abc,ECG,100",
+                "2,1.5, ,100",
+                "2,1.5,ECG,1e3",
+                "99999999999,1.5,ECG,100",
+                "2,2.5,ECG,200"));
+        client.flush();
+
+        List<PatientRecord> records = storage.getRecords(2, 0, 1000);
+        assertEquals(2, records.size());
+        assertEquals(2.5, records.get(1).getMeasurementValue());
+        assertEquals(2, client.getReceivedCount());
+        assertEquals(7, client.getMalformedCount());
+    }
+
+    private static ByteBuffer definitions(String... names) {
+        ByteBuffer message = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN).put((byte) 1);
+        for (int code = 0; code < names.length; code++) {
+            byte[] name = names[code].getBytes(StandardCharsets.UTF_8);
+            message.putShort((short) code).putShort((short) name.length).put(name);
+        }
+        return message.flip();
+    }
+
+    private static ByteBuffer samples(int patientId, int... typeCodes) {
+        ByteBuffer message = ByteBuffer.allocate(1 + typeCodes.length * 22).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte) 0);
+        for (int i = 0; i < typeCodes.length; i++) {
+            message.putInt(patientId).putShort((short) typeCodes[i]).putDouble(i + 0.5).putLong(100 + i);
+        }
+        return message.flip();
+    }
+
+    //packed samples take the names their codes were defined with
+    @Test
+    void binarySamples_areDecodedIntoStorage() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        client.onMessage(definitions("ECG", "Saturation"));
+        client.onMessage(samples(7, 0, 1, 0));
+        client.flush();
+
+        List<PatientRecord> records = storage.getRecords(7, 0, 1000);
+        assertEquals(3, records.size());
+        assertEquals("ECG", records.get(0).getRecordType());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(1.5, records.get(1).getMeasurementValue());
+        assertEquals(102, records.get(2).getTimestamp());
+        assertEquals(3, client.getReceivedCount());
+    }
+
+    //an undefined code skips one sample, a cut-off message is skipped as a whole
+    @Test
+    void malformedBinaryMessages_areCountedAndSkipped() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        client.onMessage(definitions("ECG"));
+        client.onMessage(samples(9, 0, 5, 0));
+        ByteBuffer truncated = samples(9, 0, 0);
+        truncated.limit(truncated.limit() - 1);
+        client.onMessage(truncated);
+        client.onMessage(ByteBuffer.allocate(0));
+        client.flush();
+
+        assertEquals(2, storage.getRecords(9, 0, 1000).size());
+        assertEquals(2, client.getReceivedCount());
+        assertEquals(3, client.getMalformedCount());
+    }
+
+    //nothing arrives after the reading, yet the timer gets it into the storage
+    @Test
+    void quietFeed_readingsAreFlushedByTimer() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = client(storage);
+        // the timed flushes start with the connection
+        client.onOpen(null);
+        client.onMessage("12,3.5,ECG,100");
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (storage.getRecords(12, 0, 1000).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, storage.getRecords(12, 0, 1000).size());
+        client.close();
+    }
+
+    //the read thread only fills the queue; its drain thread writes the storage
+    @Test
+    void ingestionQueue_appliesReceivedReadings() throws Exception {
+        DataStorage storage = new DataStorage();
+        IngestionQueue queue = new IngestionQueue(storage);
+        WebSocketPatientClient client = new WebSocketPatientClient(new URI("ws://localhost:1"), queue, false);
+        client.onMessage("10,1.5,ECG,100\n10,2.5,ECG,200");
+        client.flush();
+
+        assertTrue(queue.awaitEmpty(5_000));
+        assertEquals(2, storage.getRecords(10, 0, 1000).size());
+        assertEquals(2, queue.getAppliedSamples());
+        queue.close();
+    }
+}
@@ -0,0 +1,205 @@
+package data_management;
+
+import com.cardioGenerator.outputs.SampleType;
+import com.cardioGenerator.outputs.WebSocketOutputStrategy;
+import com.dataManagement.DataStorage;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.WebSocketPatientClient;
+import com.dataManagement.WebSocketPatientClient.ConnectionState;
+import org.java_websocket.framing.CloseFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for reconnecting {@code WebSocketPatientClient}s.
+ *
+ * This code verifies:
+ *
+ *   a client that loses its connection reconnects and gets the samples sent in the meantime replayed,
+ *   in text and in binary, and skips the replayed samples it had already received,
+ *   a client gives up after the configured number of failed attempts without starting threads for them,
+ *   and connects again when told to resume,
+ *   a client closed on purpose does not reconnect,
+ *   a replay of many chunks while samples keep coming is complete and in order, without duplicates,
+ *   a server created without a history replays nothing.
+ *
+ */
+
+class WebSocketReconnectTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void send(WebSocketOutputStrategy server, int from, int to) {
+        for (int i = from; i < to; i++) {
+            server.output(1, T0 + i, SampleType.ECG, i);
+        }
+        server.flush();
+    }
+
+    //50 samples before, 50 during and 50 after the outage are all stored once
+    @Test
+    void lostConnection_isResumedWithReplay() throws Exception {
+        for (boolean binary : new boolean[]{false, true}) {
+            int port = freePort();
+            WebSocketOutputStrategy server = new WebSocketOutputStrategy(port, 10, 10, 1_000);
+            DataStorage storage = new DataStorage();
+            WebSocketPatientClient client =
+                    new WebSocketPatientClient(new URI("ws://localhost:" + port), storage, binary);
+            client.setReconnectPolicy(400, 1_000, 5);
+            try {
+                assertTrue(client.connectBlocking());
+                await(() -> server.getConnectionCount() == 1);
+                send(server, 0, 50);
+                await(() -> client.getReceivedCount() == 50);
+
+                client.closeConnection(CloseFrame.ABNORMAL_CLOSE, "link lost");
+                await(() -> client.getConnectionState() == ConnectionState.WAITING);
+                // the first attempt is at least 200 ms away
+                send(server, 50, 100);
+                await(() -> client.getConnectionState() == ConnectionState.CONNECTED);
+                await(() -> server.getConnectionCount() == 1);
+                send(server, 100, 150);
+
+                // 50, then 100 replayed of which 50 are duplicates, then 50 live
+                await(() -> client.getReceivedCount() == 200);
+                client.flush();
+                List<PatientRecord> records = storage.getRecords(1, T0, T0 + 1_000);
+                assertEquals(150, records.size(), "binary: " + binary);
+                for (int i = 0; i < 150; i++) {
+                    assertEquals(T0 + i, records.get(i).getTimestamp());
+                }
+                assertEquals(50, client.getDuplicateCount());
+                assertEquals(0, client.getReconnectAttempts());
+            } finally {
+                client.closeBlocking();
+                server.close();
+            }
+        }
+    }
+
+    //three quick failures, then the server appears and the client is told to resume
+    @Test
+    void failedAttempts_giveUpAndResume() throws Exception {
+        int port = freePort();
+        WebSocketPatientClient client =
+                new WebSocketPatientClient(new URI("ws://localhost:" + port), new DataStorage());
+        client.setReconnectPolicy(10, 20, 3);
+        int threadsBefore = Thread.activeCount();
+        WebSocketOutputStrategy server = null;
+        try {
+            client.connect();
+            await(() -> client.getConnectionState() == ConnectionState.GAVE_UP);
+            assertEquals(ConnectionState.GAVE_UP, client.getConnectionState());
+            assertEquals(3, client.getReconnectAttempts());
+            int newThreads = Thread.activeCount() - threadsBefore;
+            assertTrue(newThreads <= 3, "threads: " + newThreads);
+
+            server = new WebSocketOutputStrategy(port);
+            assertTrue(client.resumeReconnecting());
+            await(() -> client.getConnectionState() == ConnectionState.CONNECTED);
+            assertEquals(ConnectionState.CONNECTED, client.getConnectionState());
+
+            client.closeBlocking();
+            assertEquals(ConnectionState.CLOSED, client.getConnectionState());
+            Thread.sleep(100);
+            assertEquals(ConnectionState.CLOSED, client.getConnectionState());
+            assertFalse(client.isOpen());
+        } finally {
+            client.closeBlocking();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    //20000 samples in the history, more generated until the client is live, 1000 after that
+    @Test
+    void replayDuringOutput_losesAndRepeatsNothing() throws Exception {
+        for (boolean binary : new boolean[]{false, true}) {
+            int port = freePort();
+            WebSocketOutputStrategy server = new WebSocketOutputStrategy(port, 100, 10, 200_000);
+            send(server, 0, 20_000);
+            DataStorage storage = new DataStorage();
+            WebSocketPatientClient client =
+                    new WebSocketPatientClient(new URI("ws://localhost:" + port), storage, binary);
+            client.addHeader(WebSocketPatientClient.REPLAY_HEADER, Long.toString(T0));
+            AtomicInteger sent = new AtomicInteger(20_000);
+            Thread generator = new Thread(() -> {
+                int live = -1;
+                // a sample every few microseconds keeps the history from wrapping before the client is live
+                for (int i = 20_000; i < 195_000 && (live < 0 || i < live + 1_000); i++) {
+                    server.output(1, T0 + i, SampleType.ECG, i);
+                    sent.set(i + 1);
+                    if (live < 0 && server.getConnectionCount() == 1) {
+                        live = i;
+                    }
+                    if (i % 100 == 0) {
+                        LockSupport.parkNanos(1_000_000);
+                    }
+                }
+                server.flush();
+            });
+            try {
+                generator.start();
+                assertTrue(client.connectBlocking());
+                generator.join();
+                int total = sent.get();
+                assertTrue(total < 195_000, "the client took too long to go live");
+                await(() -> client.getReceivedCount() >= total);
+                client.flush();
+                List<PatientRecord> records = storage.getRecords(1, T0, T0 + 200_000);
+                assertEquals(total, records.size(), "binary: " + binary);
+                for (int i = 0; i < total; i++) {
+                    assertEquals(T0 + i, records.get(i).getTimestamp());
+                }
+            } finally {
+                client.closeBlocking();
+                server.close();
+            }
+        }
+    }
+
+    //the default server keeps no history, so a replay request gets nothing
+    @Test
+    void serverWithoutHistory_replaysNothing() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy server = new WebSocketOutputStrategy(port, 10, 10);
+        send(server, 0, 50);
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = new WebSocketPatientClient(new URI("ws://localhost:" + port), storage);
+        client.addHeader(WebSocketPatientClient.REPLAY_HEADER, Long.toString(T0));
+        try {
+            assertTrue(client.connectBlocking());
+            await(() -> server.getConnectionCount() == 1);
+            send(server, 50, 60);
+            await(() -> client.getReceivedCount() == 10);
+            client.flush();
+            assertEquals(10, storage.getRecords(1, T0, T0 + 1_000).size());
+        } finally {
+            client.closeBlocking();
+            server.close();
+        }
+    }
+}
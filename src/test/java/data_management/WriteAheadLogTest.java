@@ -0,0 +1,434 @@
+package data_management;
+
+import com.dataManagement.DataStorage;
+import com.dataManagement.Patient;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.RetentionCompactor;
+import com.dataManagement.RetentionPolicy;
+import com.dataManagement.Rollup;
+import com.dataManagement.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code WriteAheadLog}.
+ *
+ * This code verifies:
+ *
+ *   readings written before a restart are recovered into a new storage,
+ *   readings written after a snapshot are replayed once, without duplicates,
+ *   identical repeated readings are all kept, also when ingestion runs during a snapshot,
+ *   readings are synced while a snapshot is being written,
+ *   a torn block at the end of the log is ignored,
+ *   a write or sync that fails is retried without losing readings or hiding later blocks,
+ *   a snapshot left unfinished by a crash is deleted,
+ *   rollups made by a RetentionCompactor are restored from the snapshot.
+ *
+ */
+
+class WriteAheadLogTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path dir;
+
+    /** A log that syncs only when asked and whose segments can be made to fail once. */
+    private static final class FailingLog extends WriteAheadLog {
+        volatile boolean tearNextWrite;
+        volatile boolean failNextForce;
+
+        FailingLog(DataStorage storage, Path dir) throws IOException {
+            super(storage, dir, HOUR, 1_000_000, HOUR);
+        }
+
+        @Override
+        protected FileChannel openSegmentChannel(Path file) throws IOException {
+            return new FailingChannel(super.openSegmentChannel(file), this);
+        }
+    }
+
+    /** Delegates to a real channel, except for the failures its log asks for. */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final FailingLog log;
+
+        FailingChannel(FileChannel delegate, FailingLog log) {
+            this.delegate = delegate;
+            this.log = log;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (log.tearNextWrite) {
+                log.tearNextWrite = false;
+                // the block header and a few bytes of the block reach the file
+                ByteBuffer part = srcs[offset + 1].duplicate();
+                part.limit(part.position() + Math.min(3, part.remaining()));
+                delegate.write(srcs[offset]);
+                delegate.write(part);
+                throw new IOException("injected torn write");
+            }
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (log.failNextForce) {
+                log.failNextForce = false;
+                throw new IOException("injected sync failure");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static WriteAheadLog open(DataStorage storage, Path dir) throws IOException {
+        // background snapshots are far apart, the tests take them explicitly
+        return new WriteAheadLog(storage, dir, 5, 100, HOUR);
+    }
+
+    //everything logged before close is back after reopening
+    @Test
+    void restart_recoversReadings() throws IOException {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog writer = open(storage, dir);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                storage.addPatientData(i % 10, i, i % 2 == 0 ? "ECG" : "Saturation", T0 + i);
+            }
+        } finally {
+            writer.close();
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(1000, log.getRecoveredRecords());
+        }
+        List<PatientRecord> records = recovered.getRecords(3, T0, T0 + 1000);
+        assertEquals(100, records.size());
+        assertEquals(3.0, records.get(0).getMeasurementValue());
+        assertEquals("Saturation", records.get(0).getRecordType());
+    }
+
+    //a snapshot replaces the old segments, later readings come from the new one
+    @Test
+    void snapshot_thenMoreReadings_recoveredOnce() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = open(storage, dir)) {
+            for (int i = 0; i < 500; i++) {
+                storage.addPatientData(1, i, "ECG", T0 + i);
+            }
+            log.snapshot();
+            for (int i = 500; i < 800; i++) {
+                storage.addPatientData(1, i, "ECG", T0 + i);
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(p -> p.toString().endsWith(".bin")).count());
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(800, log.getRecoveredRecords());
+        }
+        assertEquals(800, recovered.getRecords(1, T0, T0 + 1000).size());
+    }
+
+    //garbage after the last complete block is dropped
+    @Test
+    void tornTail_isIgnored() throws IOException {
+        DataStorage storage = new DataStorage();
+        WriteAheadLog writer = open(storage, dir);
+        try {
+            storage.addPatientData(1, 42.0, "ECG", T0);
+        } finally {
+            writer.close();
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".log"))
+                    .filter(p -> p.toFile().length() > 0)
+                    .findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(1, log.getRecoveredRecords());
+        }
+        assertEquals(42.0, recovered.getRecords(1, T0, T0).get(0).getMeasurementValue());
+    }
+
+    //the same reading, logged again after the snapshot, is a new reading and not a duplicate
+    @Test
+    void repeatedReadings_acrossSnapshot_allRecovered() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = open(storage, dir)) {
+            for (int i = 0; i < 3; i++) {
+                storage.addPatientData(1, 5.0, "ECG", T0);
+            }
+            log.snapshot();
+            for (int i = 0; i < 2; i++) {
+                storage.addPatientData(1, 5.0, "ECG", T0);
+            }
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(5, log.getRecoveredRecords());
+        }
+        assertEquals(5, recovered.getRecords(1, T0, T0).size());
+    }
+
+    //snapshots taken while readings keep coming in neither lose nor repeat any of them
+    @Test
+    void snapshotsDuringIngestion_recoverEveryReadingOnce() throws Exception {
+        int patients = 4;
+        int perPatient = 20_000;
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = open(storage, dir)) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < perPatient; i++) {
+                    for (int p = 0; p < patients; p++) {
+                        // few distinct values and timestamps, so many readings are identical
+                        storage.addPatientData(p, i % 3, "ECG", T0 + i / 10);
+                    }
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                log.snapshot();
+            }
+            writer.join();
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals((long) patients * perPatient, log.getRecoveredRecords());
+        }
+        for (int p = 0; p < patients; p++) {
+            assertEquals(perPatient, recovered.getRecords(p, T0, T0 + perPatient).size());
+        }
+    }
+
+    //a snapshot stuck copying a patient does not hold up syncing the readings of others
+    @Test
+    void sync_whileSnapshotIsWritten_completes() throws Exception {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = open(storage, dir)) {
+            storage.addPatientData(1, 0.5, "ECG", T0);
+            Patient patient = storage.getAllPatients().get(0);
+            Thread snapshot;
+            synchronized (patient) {
+                snapshot = new Thread(() -> {
+                    try {
+                        log.snapshot();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                snapshot.start();
+                while (snapshot.getState() != Thread.State.BLOCKED) {
+                    Thread.onSpinWait();
+                }
+                storage.addPatientData(2, 0.7, "ECG", T0);
+                CompletableFuture<Void> sync = CompletableFuture.runAsync(() -> {
+                    try {
+                        log.sync();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                sync.get(5, TimeUnit.SECONDS);
+            }
+            snapshot.join();
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(1, recovered.getRecords(1, T0, T0).size());
+            assertEquals(1, recovered.getRecords(2, T0, T0).size());
+        }
+    }
+
+    //a crash while writing a snapshot leaves a temporary file, which the next open removes
+    @Test
+    void unfinishedSnapshot_isDeletedOnOpen() throws IOException {
+        Path unfinished = dir.resolve("snapshot-3.tmp");
+        Files.write(unfinished, new byte[] {1, 2, 3});
+
+        try (WriteAheadLog log = open(new DataStorage(), dir)) {
+            assertEquals(0, log.getRecoveredRecords());
+        }
+        assertFalse(Files.exists(unfinished));
+    }
+
+    //a torn write and a failed sync are both retried; every block, before and after, is recovered once
+    @Test
+    void failedWrites_areRetriedWithoutLossOrTornBlocks() throws IOException {
+        DataStorage storage = new DataStorage();
+        FailingLog failing = new FailingLog(storage, dir);
+        try {
+            for (int i = 0; i < 400; i++) {
+                storage.addPatientData(1, i, "ECG", T0 + i);
+                if (i == 99) {
+                    failing.sync();
+                    failing.tearNextWrite = true;
+                } else if (i == 199) {
+                    assertThrows(IOException.class, failing::sync);
+                    failing.failNextForce = true;
+                } else if (i == 299) {
+                    assertThrows(IOException.class, failing::sync);
+                }
+            }
+            failing.sync();
+        } finally {
+            failing.close();
+        }
+
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            assertEquals(400, log.getRecoveredRecords());
+        }
+        List<PatientRecord> records = recovered.getRecords(1, T0, T0 + 1000);
+        assertEquals(400, records.size());
+        for (int i = 0; i < 400; i++) {
+            assertEquals(i, records.get(i).getMeasurementValue());
+        }
+    }
+
+    //two hours of samples, the first rolled up, then a snapshot: recovery brings back both tiers
+    @Test
+    void rollupsInSnapshot_surviveRecovery() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = open(storage, dir);
+             RetentionCompactor compactor = new RetentionCompactor(storage,
+                     new RetentionPolicy(HOUR, 60_000, 24 * HOUR), HOUR)) {
+            for (int i = 0; i < 720; i++) {
+                storage.addPatientData(1, i % 60, "ECG", T0 + i * 10_000L);
+            }
+            compactor.compact(T0 + 2 * HOUR);
+            log.snapshot();
+            storage.addPatientData(1, 99, "ECG", T0 + 2 * HOUR);
+        }
+
+        List<Rollup> expected = storage.getAllPatients().get(0).getRollups("ECG", 0, Long.MAX_VALUE);
+        List<PatientRecord> before = storage.getRecords(1, 0, Long.MAX_VALUE);
+        DataStorage recovered = new DataStorage();
+        try (WriteAheadLog log = open(recovered, dir)) {
+            // raw samples only; queries return each rollup as one record too
+            assertEquals(before.size() - expected.size(), log.getRecoveredRecords());
+        }
+        List<Rollup> actual = recovered.getAllPatients().get(0).getRollups("ECG", 0, Long.MAX_VALUE);
+        assertEquals(60, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getMin(), actual.get(i).getMin());
+            assertEquals(expected.get(i).getMax(), actual.get(i).getMax());
+            assertEquals(expected.get(i).getMean(), actual.get(i).getMean());
+            assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+        }
+        List<PatientRecord> after = recovered.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getTimestamp(), after.get(i).getTimestamp());
+            assertEquals(before.get(i).getMeasurementValue(), after.get(i).getMeasurementValue());
+        }
+    }
+}
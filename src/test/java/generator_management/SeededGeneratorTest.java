@@ -0,0 +1,93 @@
+package generator_management;
+
+import com.cardioGenerator.generators.AlertGenerator;
+import com.cardioGenerator.generators.BloodLevelsDataGenerator;
+import com.cardioGenerator.generators.BloodPressureDataGenerator;
+import com.cardioGenerator.generators.PatientDataGenerator;
+import com.cardioGenerator.outputs.OutputStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the seeded generators.
+ *
+ * This code verifies:
+ *
+ *   the same seed gives the same values for every patient, in whatever order patients are generated,
+ *   different seeds give different values,
+ *   measurements reach the output as numbers.
+ *
+ */
+
+class SeededGeneratorTest {
+
+    private static final int PATIENTS = 20;
+    private static final int ROUNDS = 10;
+
+    /** Records the values per patient, ignoring timestamps. */
+    private static final class RecordingOutput implements OutputStrategy {
+        final List<List<String>> values = new ArrayList<>();
+        int numeric;
+
+        RecordingOutput() {
+            for (int i = 0; i <= PATIENTS; i++) {
+                values.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, String data) {
+            values.get(patientId).add(label + "=" + data);
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, double value) {
+            numeric++;
+            values.get(patientId).add(label + "=" + value);
+        }
+    }
+
+    private static RecordingOutput run(PatientDataGenerator generator, boolean reverse) {
+        RecordingOutput output = new RecordingOutput();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 1; i <= PATIENTS; i++) {
+                generator.generate(reverse ? PATIENTS + 1 - i : i, output);
+            }
+        }
+        return output;
+    }
+
+    //per-patient sources make each patient's data independent of the order of generation
+    @Test
+    void sameSeed_sameValuesPerPatient() {
+        List<LongFunction<PatientDataGenerator>> generators = List.of(
+                seed -> new BloodPressureDataGenerator(PATIENTS, seed),
+                seed -> new BloodLevelsDataGenerator(PATIENTS, seed),
+                seed -> new AlertGenerator(PATIENTS, seed));
+        for (LongFunction<PatientDataGenerator> generator : generators) {
+            RecordingOutput forward = run(generator.apply(42), false);
+            RecordingOutput backward = run(generator.apply(42), true);
+            assertEquals(forward.values, backward.values);
+        }
+    }
+
+    //another seed gives other baselines
+    @Test
+    void differentSeed_differentValues() {
+        RecordingOutput first = run(new BloodLevelsDataGenerator(PATIENTS, 1), false);
+        RecordingOutput second = run(new BloodLevelsDataGenerator(PATIENTS, 2), false);
+        assertNotEquals(first.values, second.values);
+    }
+
+    //measurements use the numeric output, nothing is formatted by the generator
+    @Test
+    void measurements_areOutputAsNumbers() {
+        RecordingOutput output = run(new BloodPressureDataGenerator(PATIENTS, 7), false);
+        assertEquals(PATIENTS * ROUNDS * 2, output.numeric);
+    }
+}
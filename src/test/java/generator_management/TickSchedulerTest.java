@@ -0,0 +1,85 @@
+package generator_management;
+
+import com.cardioGenerator.TickScheduler;
+import com.cardioGenerator.generators.PatientDataGenerator;
+import com.cardioGenerator.outputs.OutputStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code TickScheduler}.
+ *
+ * This code verifies:
+ *
+ *   every patient of every group is generated repeatedly,
+ *   all generators of a group run for each patient,
+ *   the work runs on the configured number of worker threads only.
+ *
+ */
+
+class TickSchedulerTest {
+
+    private static final int PATIENTS = 10_000;
+
+    /** Counts calls per patient and remembers which threads made them. */
+    private static final class CountingGenerator implements PatientDataGenerator {
+        final AtomicIntegerArray calls = new AtomicIntegerArray(PATIENTS + 1);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void generate(int patientId, OutputStrategy outputStrategy) {
+            calls.incrementAndGet(patientId);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        boolean allCalledAtLeast(int times) {
+            for (int i = 1; i <= PATIENTS; i++) {
+                if (calls.get(i) < times) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    //10,000 patients and three generators on two worker threads
+    @Test
+    void manyPatients_allGeneratedOnFewThreads() throws InterruptedException {
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= PATIENTS; i++) {
+            patientIds.add(i);
+        }
+        CountingGenerator ecg = new CountingGenerator();
+        CountingGenerator saturation = new CountingGenerator();
+        CountingGenerator pressure = new CountingGenerator();
+        OutputStrategy discard = (patientId, timestamp, label, data) -> { };
+
+        try (TickScheduler scheduler = new TickScheduler(2, 10)) {
+            scheduler.schedule(List.of(ecg, saturation), 50, patientIds, new Random(1), discard);
+            scheduler.schedule(List.of(pressure), 100, patientIds, new Random(2), discard);
+            scheduler.start();
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!(ecg.allCalledAtLeast(2) && saturation.allCalledAtLeast(2) && pressure.allCalledAtLeast(1))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        assertTrue(ecg.allCalledAtLeast(2));
+        assertTrue(saturation.allCalledAtLeast(2));
+        assertTrue(pressure.allCalledAtLeast(1));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        threads.addAll(ecg.threads);
+        threads.addAll(pressure.threads);
+        assertTrue(threads.size() <= 2, threads.toString());
+    }
+}
@@ -0,0 +1,142 @@
+package output_management;
+
+import com.cardioGenerator.outputs.AsyncOutputStrategy;
+import com.cardioGenerator.outputs.AsyncOutputStrategy.BackpressurePolicy;
+import com.cardioGenerator.outputs.OutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code AsyncOutputStrategy}.
+ *
+ * This code verifies:
+ *
+ *   with BLOCK every event from many producers is delivered, in order per producer,
+ *   with DROP_NEWEST and DROP_OLDEST a stalled sink loses events and counts them,
+ *   DROP_OLDEST keeps the latest events,
+ *   typed, numeric and text values reach the matching output method unchanged,
+ *   close delivers what is buffered.
+ *
+ */
+
+class AsyncOutputStrategyTest {
+
+    /** Records events; can be held to simulate a stalled sink. */
+    private static final class RecordingOutput implements OutputStrategy {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release;
+
+        RecordingOutput(boolean stalled) {
+            release = new CountDownLatch(stalled ? 1 : 0);
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, String data) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(patientId + ":" + timestamp);
+        }
+    }
+
+    //a small buffer forces producers to wait, but nothing is lost
+    @Test
+    void block_deliversEverythingInProducerOrder() throws InterruptedException {
+        RecordingOutput sink = new RecordingOutput(false);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(sink, 16, BackpressurePolicy.BLOCK);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int patientId = p;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    async.output(patientId, i, "ECG", "0.1");
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        async.close();
+
+        assertEquals(20_000, sink.events.size());
+        assertEquals(0, async.getDroppedCount());
+        int[] next = new int[4];
+        for (String event : sink.events) {
+            String[] parts = event.split(":");
+            int patientId = Integer.parseInt(parts[0]);
+            assertEquals(next[patientId]++, Long.parseLong(parts[1]));
+        }
+    }
+
+    //producers never wait on a stalled sink, extra events are counted as dropped
+    @Test
+    void dropNewest_countsDrops() {
+        RecordingOutput sink = new RecordingOutput(true);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(sink, 8, BackpressurePolicy.DROP_NEWEST);
+        for (int i = 0; i < 100; i++) {
+            async.output(1, i, "ECG", "0.1");
+        }
+
+        assertTrue(async.getDroppedCount() >= 100 - 8 - 1);
+        assertTrue(async.getQueueDepth() <= 8);
+        sink.release.countDown();
+        async.close();
+        assertEquals(100, sink.events.size() + async.getDroppedCount());
+    }
+
+    //the newest events survive when the oldest are dropped
+    @Test
+    void dropOldest_keepsLatestEvents() {
+        RecordingOutput sink = new RecordingOutput(true);
+        AsyncOutputStrategy async = new AsyncOutputStrategy(sink, 8, BackpressurePolicy.DROP_OLDEST);
+        for (int i = 0; i < 100; i++) {
+            async.output(1, i, "ECG", "0.1");
+        }
+        sink.release.countDown();
+        async.close();
+
+        assertEquals(100, sink.events.size() + async.getDroppedCount());
+        assertEquals("1:99", sink.events.get(sink.events.size() - 1));
+        assertTrue(sink.events.contains("1:92"));
+    }
+
+    //numbers are buffered as numbers and only text stays text
+    @Test
+    void numericValues_reachNumericOutput() {
+        List<String> received = new ArrayList<>();
+        OutputStrategy sink = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                received.add("text " + data);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, String label, double value) {
+                received.add("number " + value);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, SampleType type, double value) {
+                received.add(type + " " + value);
+            }
+        };
+        AsyncOutputStrategy async = new AsyncOutputStrategy(sink, 8, BackpressurePolicy.BLOCK);
+        async.output(1, 1, "ECG", 0.25);
+        async.output(1, 2, "Alert", "triggered");
+        async.output(1, 3, "ECG", -1.5);
+        async.output(1, 4, SampleType.SATURATION, 97);
+        async.close();
+
+        assertEquals(List.of("number 0.25", "text triggered", "number -1.5", "SATURATION 97.0"), received);
+    }
+}
@@ -0,0 +1,125 @@
+package output_management;
+
+import com.cardioGenerator.outputs.FileOutputStrategy;
+import com.cardioGenerator.outputs.SampleType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code FileOutputStrategy}.
+ *
+ * This code verifies:
+ *
+ *   lines keep the previous format,
+ *   typed numeric samples are written in the same format under their label,
+ *   many threads writing one label produce whole, non-interleaved lines,
+ *   buffers are written when they reach the size limit, before close,
+ *   lines output while or after the output closes are either written or counted as dropped.
+ *
+ */
+
+class FileOutputStrategyTest {
+
+    @TempDir Path tmp;
+
+    //one line per call in the documented format
+    @Test
+    void output_writesFormattedLine() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tmp.toString());
+        strategy.output(7, 1_700_000_000_000L, "ECG", "0.25");
+        strategy.close();
+
+        List<String> lines = Files.readAllLines(tmp.resolve("ECG.txt"));
+        assertEquals(List.of("Patient ID: 7, Timestamp: 1700000000000, Label: ECG, Data: 0.25"), lines);
+    }
+
+    //a typed sample lands in its label's file, formatted like the text path
+    @Test
+    void typedOutput_writesSameLine() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tmp.toString());
+        strategy.output(7, 1_700_000_000_000L, SampleType.SATURATION, 97);
+        strategy.close();
+
+        List<String> lines = Files.readAllLines(tmp.resolve("Saturation.txt"));
+        assertEquals(List.of("Patient ID: 7, Timestamp: 1700000000000, Label: Saturation, Data: 97.0"), lines);
+    }
+
+    //8 threads share one label file and no line is lost or torn
+    @Test
+    void concurrentWriters_sameLabel_allLinesIntact() throws Exception {
+        FileOutputStrategy strategy = new FileOutputStrategy(tmp.toString(), 256, 5);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int patientId = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    strategy.output(patientId, i, "Saturation", Integer.toString(i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        strategy.close();
+
+        List<String> lines = Files.readAllLines(tmp.resolve("Saturation.txt"));
+        assertEquals(16_000, lines.size());
+        for (String line : lines) {
+            assertTrue(line.matches("Patient ID: \\d, Timestamp: (\\d+), Label: Saturation, Data: \\1"), line);
+        }
+    }
+
+    //a full buffer is written without waiting for the timer
+    @Test
+    void fullBuffer_isWrittenBeforeClose() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tmp.toString(), 100, 3_600_000);
+        for (int i = 0; i < 10; i++) {
+            strategy.output(1, i, "Alert", "triggered");
+        }
+
+        assertTrue(Files.size(tmp.resolve("Alert.txt")) >= 100);
+        strategy.close();
+        assertEquals(10, Files.readAllLines(tmp.resolve("Alert.txt")).size());
+    }
+
+    //writers racing close(), on labels opened before and during it, lose no line silently
+    @Test
+    void outputDuringClose_isWrittenOrCounted() throws Exception {
+        FileOutputStrategy strategy = new FileOutputStrategy(tmp.toString(), 256, 3_600_000);
+        int perThread = 5_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int patientId = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    // a new label every few lines, so files are opened while the output closes
+                    strategy.output(patientId, i, "Label" + i / 500, "x");
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        strategy.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long written = 0;
+        try (var files = Files.list(tmp)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                written += Files.readAllLines(file).size();
+            }
+        }
+        assertEquals(4L * perThread, written + strategy.getDroppedCount());
+        strategy.output(1, 1, "Late", "x");
+        assertEquals(4L * perThread + 1, written + strategy.getDroppedCount());
+    }
+}
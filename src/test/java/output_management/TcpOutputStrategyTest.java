@@ -0,0 +1,130 @@
+package output_management;
+
+import com.cardioGenerator.outputs.SampleType;
+import com.cardioGenerator.outputs.TcpOutputStrategy;
+import com.cardioGenerator.outputs.TcpOutputStrategy.SlowClientPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code TcpOutputStrategy}.
+ *
+ * This code verifies:
+ *
+ *   every connected client receives every line, in order and in the documented format,
+ *   a client that does not read is disconnected once its buffer is full,
+ *   with the drop policy such a client stays connected and its lost lines are counted.
+ *
+ */
+
+class TcpOutputStrategyTest {
+
+    private static final int LINES = 20_000;
+
+    private static Socket connect(TcpOutputStrategy strategy, int clients) throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("localhost", strategy.getPort()));
+        // the selector thread registers the client shortly after the connect returns
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (strategy.getClientCount() < clients && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(clients, strategy.getClientCount());
+        return socket;
+    }
+
+    //two readers each get the whole stream
+    @Test
+    void twoClients_receiveAllLines() throws Exception {
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0, 1 << 20, SlowClientPolicy.DISCONNECT);
+             Socket first = connect(strategy, 1);
+             Socket second = connect(strategy, 2)) {
+            List<List<String>> received = new ArrayList<>();
+            List<Thread> readers = new ArrayList<>();
+            for (Socket socket : List.of(first, second)) {
+                List<String> lines = new ArrayList<>();
+                received.add(lines);
+                Thread reader = new Thread(() -> {
+                    try (BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                        String line;
+                        while (lines.size() < LINES && (line = in.readLine()) != null) {
+                            lines.add(line);
+                        }
+                    } catch (IOException e) {
+                        // the test fails on the line count
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (int i = 0; i < LINES; i++) {
+                if (i % 2 == 0) {
+                    strategy.output(7, i, SampleType.ECG, 0.5);
+                } else {
+                    strategy.output(7, i, "Alert", "triggered");
+                }
+            }
+            for (Thread reader : readers) {
+                reader.join(10_000);
+            }
+
+            for (List<String> lines : received) {
+                assertEquals(LINES, lines.size());
+                assertEquals("7,0,ECG,0.5", lines.get(0));
+                assertEquals("7,1,Alert,triggered", lines.get(1));
+                assertEquals("7," + (LINES - 1) + ",Alert,triggered", lines.get(LINES - 1));
+            }
+            assertEquals(0, strategy.getDroppedLines());
+        }
+    }
+
+    //a client that never reads cannot hold up the generator and is cut off
+    @Test
+    void stalledClient_isDisconnected() throws Exception {
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0, 4096, SlowClientPolicy.DISCONNECT)) {
+            // never reads, so the server's buffer for it fills up
+            Socket stalled = connect(strategy, 1);
+            try {
+                for (int i = 0; i < 1_000_000 && strategy.getClientCount() > 0; i++) {
+                    strategy.output(1, i, SampleType.ECG, 0.123456789);
+                }
+
+                assertEquals(0, strategy.getClientCount());
+                assertEquals(1, strategy.getDisconnectedClients());
+            } finally {
+                stalled.close();
+            }
+        }
+    }
+
+    //with DROP the client stays and the lines it missed are counted
+    @Test
+    void stalledClient_dropPolicy_countsDroppedLines() throws Exception {
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0, 4096, SlowClientPolicy.DROP)) {
+            Socket stalled = connect(strategy, 1);
+            try {
+                for (int i = 0; i < 1_000_000 && strategy.getDroppedLines() == 0; i++) {
+                    strategy.output(1, i, SampleType.ECG, 0.123456789);
+                }
+
+                assertTrue(strategy.getDroppedLines() > 0);
+                assertEquals(1, strategy.getClientCount());
+                assertEquals(0, strategy.getDisconnectedClients());
+            } finally {
+                stalled.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package output_management;
+
+import com.cardioGenerator.outputs.SampleType;
+import com.cardioGenerator.outputs.WebSocketOutputStrategy;
+import com.dataManagement.DataStorage;
+import com.dataManagement.PatientRecord;
+import com.dataManagement.WebSocketPatientClient;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@code WebSocketOutputStrategy}.
+ *
+ * This code verifies:
+ *
+ *   samples sent by the strategy are stored by {@code WebSocketPatientClient} unchanged,
+ *   saturation arrives as a plain number,
+ *   in batching mode many samples share one message, and the client stores all of them in order,
+ *   a client asking for the binary subprotocol gets binary messages, including labels defined on the fly,
+ *   while a text client of the same server keeps getting text,
+ *   batches sent by several generators outside the batch lock keep their order, and new labels are defined first,
+ *   a binary client falls back to text against a server without the subprotocol.
+ *
+ */
+
+class WebSocketOutputStrategyTest {
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitConnection(WebSocketOutputStrategy strategy) throws InterruptedException {
+        awaitConnections(strategy, 1);
+    }
+
+    private static void awaitConnections(WebSocketOutputStrategy strategy, int count) throws InterruptedException {
+        // the server registers the connection on its own thread
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (strategy.getConnectionCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<PatientRecord> awaitRecords(WebSocketPatientClient client, DataStorage storage,
+                                                    int patientId, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        List<PatientRecord> records = List.of();
+        while (records.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            client.flush();
+            records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+        }
+        return records;
+    }
+
+    //the client parses what the simulator sends without any conversion in between
+    @Test
+    void typedSamples_reachClientStorage() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(port);
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = new WebSocketPatientClient(new URI("ws://localhost:" + port), storage);
+        try {
+            assertTrue(client.connectBlocking());
+            awaitConnection(strategy);
+            long deadline = System.currentTimeMillis() + 5_000;
+            strategy.output(3, 1_000L, SampleType.SATURATION, 97);
+            strategy.output(3, 2_000L, SampleType.ECG, -0.125);
+
+            List<PatientRecord> records = List.of();
+            while (records.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                client.flush();
+                records = storage.getRecords(3, 0, 3_000L);
+            }
+            assertEquals(2, records.size());
+            assertEquals("Saturation", records.get(0).getRecordType());
+            assertEquals(97.0, records.get(0).getMeasurementValue());
+            assertEquals("ECG", records.get(1).getRecordType());
+            assertEquals(-0.125, records.get(1).getMeasurementValue());
+        } finally {
+            client.closeBlocking();
+            strategy.close();
+        }
+    }
+
+    //250 samples in batches of 100 arrive in a handful of messages
+    @Test
+    void batchedSamples_reachClientInFewMessages() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(port, 100, 20);
+        DataStorage storage = new DataStorage();
+        AtomicInteger messages = new AtomicInteger();
+        WebSocketPatientClient client = new WebSocketPatientClient(new URI("ws://localhost:" + port), storage) {
+            @Override
+            public void onMessage(String message) {
+                messages.incrementAndGet();
+                super.onMessage(message);
+            }
+        };
+        try {
+            assertTrue(client.connectBlocking());
+            awaitConnection(strategy);
+            for (int i = 0; i < 250; i++) {
+                strategy.output(5, i, SampleType.ECG, i / 4.0);
+            }
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            List<PatientRecord> records = List.of();
+            while (records.size() < 250 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                client.flush();
+                records = storage.getRecords(5, 0, 250);
+            }
+            assertEquals(250, records.size());
+            for (int i = 0; i < 250; i++) {
+                assertEquals(i, records.get(i).getTimestamp());
+                assertEquals(i / 4.0, records.get(i).getMeasurementValue());
+            }
+            // 3 messages, or one more if the timer fired in the middle of the loop
+            assertTrue(messages.get() >= 3 && messages.get() <= 5, "messages: " + messages.get());
+        } finally {
+            client.closeBlocking();
+            strategy.close();
+        }
+    }
+
+    //one server, one binary and one text client: both store the same samples
+    @Test
+    void binaryAndTextClients_receiveTheSameSamples() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(port, 50, 20);
+        DataStorage binaryStorage = new DataStorage();
+        DataStorage textStorage = new DataStorage();
+        AtomicInteger binaryMessages = new AtomicInteger();
+        WebSocketPatientClient binaryClient =
+                new WebSocketPatientClient(new URI("ws://localhost:" + port), binaryStorage, true) {
+                    @Override
+                    public void onMessage(ByteBuffer bytes) {
+                        binaryMessages.incrementAndGet();
+                        super.onMessage(bytes);
+                    }
+                };
+        WebSocketPatientClient textClient = new WebSocketPatientClient(new URI("ws://localhost:" + port), textStorage);
+        try {
+            assertTrue(binaryClient.connectBlocking());
+            assertTrue(textClient.connectBlocking());
+            awaitConnections(strategy, 2);
+            assertTrue(binaryClient.isBinaryProtocol());
+            assertFalse(textClient.isBinaryProtocol());
+            assertEquals(1, strategy.getBinaryConnectionCount());
+
+            for (int i = 0; i < 100; i++) {
+                strategy.output(6, i, SampleType.ECG, i / 8.0);
+            }
+            // a label outside SampleType is defined for the binary client before its first sample
+            strategy.output(6, 100, "BodyTemperature", 37.25);
+            strategy.output(6, 101, SampleType.SATURATION, 95);
+
+            for (DataStorage storage : List.of(binaryStorage, textStorage)) {
+                WebSocketPatientClient client = storage == binaryStorage ? binaryClient : textClient;
+                List<PatientRecord> records = awaitRecords(client, storage, 6, 102);
+                assertEquals(102, records.size());
+                for (int i = 0; i < 100; i++) {
+                    assertEquals("ECG", records.get(i).getRecordType());
+                    assertEquals(i / 8.0, records.get(i).getMeasurementValue());
+                }
+                assertEquals("BodyTemperature", records.get(100).getRecordType());
+                assertEquals(37.25, records.get(100).getMeasurementValue());
+                assertEquals("Saturation", records.get(101).getRecordType());
+                assertEquals(0, client.getMalformedCount());
+            }
+            // the definitions on connect, two full batches, the new label and the rest
+            assertTrue(binaryMessages.get() >= 4 && binaryMessages.get() <= 7, "messages: " + binaryMessages.get());
+        } finally {
+            binaryClient.closeBlocking();
+            textClient.closeBlocking();
+            strategy.close();
+        }
+    }
+
+    //four generators share the server; whoever sends, every client gets each generator's samples in order
+    @Test
+    void concurrentGenerators_keepOrderAndDefinitions() throws Exception {
+        int port = freePort();
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(port, 10, 20);
+        DataStorage binaryStorage = new DataStorage();
+        DataStorage textStorage = new DataStorage();
+        WebSocketPatientClient binaryClient =
+                new WebSocketPatientClient(new URI("ws://localhost:" + port), binaryStorage, true);
+        WebSocketPatientClient textClient = new WebSocketPatientClient(new URI("ws://localhost:" + port), textStorage);
+        int samples = 300;
+        try {
+            assertTrue(binaryClient.connectBlocking());
+            assertTrue(textClient.connectBlocking());
+            awaitConnections(strategy, 2);
+
+            List<Thread> generators = new ArrayList<>();
+            for (int patient = 1; patient <= 4; patient++) {
+                int patientId = patient;
+                generators.add(new Thread(() -> {
+                    for (int i = 0; i < samples; i++) {
+                        // each generator defines its own label halfway through
+                        if (i < samples / 2) {
+                            strategy.output(patientId, i, SampleType.ECG, i);
+                        } else {
+                            strategy.output(patientId, i, "Label" + patientId, i);
+                        }
+                    }
+                }));
+            }
+            generators.forEach(Thread::start);
+            for (Thread generator : generators) {
+                generator.join();
+            }
+            strategy.flush();
+
+            for (DataStorage storage : List.of(binaryStorage, textStorage)) {
+                WebSocketPatientClient client = storage == binaryStorage ? binaryClient : textClient;
+                for (int patientId = 1; patientId <= 4; patientId++) {
+                    List<PatientRecord> records = awaitRecords(client, storage, patientId, samples);
+                    assertEquals(samples, records.size());
+                    for (int i = 0; i < samples; i++) {
+                        assertEquals(i, records.get(i).getTimestamp());
+                        assertEquals(i, records.get(i).getMeasurementValue());
+                        assertEquals(i < samples / 2 ? "ECG" : "Label" + patientId, records.get(i).getRecordType());
+                    }
+                }
+                assertEquals(0, client.getMalformedCount());
+            }
+        } finally {
+            binaryClient.closeBlocking();
+            textClient.closeBlocking();
+            strategy.close();
+        }
+    }
+
+    //a server that only knows text: the binary client connects and decodes text
+    @Test
+    void binaryClient_fallsBackToText() throws Exception {
+        int port = freePort();
+        CountDownLatch started = new CountDownLatch(1);
+        WebSocketServer textServer = new WebSocketServer(new InetSocketAddress(port)) {
+            @Override
+            public void onOpen(WebSocket conn, ClientHandshake handshake) {
+                conn.send("8,1.5,ECG,1000");
+            }
+
+            @Override
+            public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            }
+
+            @Override
+            public void onMessage(WebSocket conn, String message) {
+            }
+
+            @Override
+            public void onError(WebSocket conn, Exception ex) {
+            }
+
+            @Override
+            public void onStart() {
+                started.countDown();
+            }
+        };
+        textServer.start();
+        DataStorage storage = new DataStorage();
+        WebSocketPatientClient client = new WebSocketPatientClient(new URI("ws://localhost:" + port), storage, true);
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(client.connectBlocking());
+            assertFalse(client.isBinaryProtocol());
+            List<PatientRecord> records = awaitRecords(client, storage, 8, 1);
+            assertEquals(1, records.size());
+            assertEquals(1.5, records.get(0).getMeasurementValue());
+        } finally {
+            client.closeBlocking();
+            textServer.stop();
+        }
+    }
+}